@@ -0,0 +1,63 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * BENCHMARK DATA
+ * Builds reproducible messages shaped like the ones ChatApp creates: valid +27
+ * recipients, 10-digit IDs, texts of a few to 250 characters, and a mix of statuses.
+ * @author Chumisa Haya
+ */
+final class BenchmarkData {
+    private static final String[] STATUSES = {"Sent", "Stored", "Disregarded"};
+    private static final String[] WORDS = {"hello", "meeting", "tonight", "please", "call", "me", "back",
+        "where", "are", "you", "running", "late", "thanks", "see", "tomorrow", "ok"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param count - number of messages
+     * @return List<Message> - the same messages for the same count
+     */
+    static List<Message> messages(int count) {
+        Random random = new Random(42);
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Message message = new Message();
+            message.setMessageID(String.valueOf(MessageIDGenerator.MIN_ID + i * 7919L));
+            message.setRecipient("+2783" + String.format("%07d", random.nextInt(10_000_000)));
+            message.setMessageText(text(random));
+            message.setStatus(STATUSES[i % STATUSES.length]);
+            message.setMessageHash(MessageHasher.forCurrentThread().hash(message.getMessageID(), i, message.getMessageText()));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * @param random - source of word choices
+     * @return String - a message text of at most 250 characters
+     */
+    static String text(Random random) {
+        StringBuilder text = new StringBuilder();
+        int words = 1 + random.nextInt(30);
+        for (int w = 0; w < words; w++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (text.length() + word.length() + 1 > 250) {
+                break;
+            }
+            if (w > 0) {
+                text.append(' ');
+            }
+            text.append(word);
+        }
+        return text.toString();
+    }
+}
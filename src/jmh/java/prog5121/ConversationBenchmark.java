@@ -0,0 +1,76 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CONVERSATION BENCHMARK
+ * The last 20 messages to one recipient, and a page from deep in their history,
+ * from a 1M message store where that recipient has 1000 or 100000 messages, against
+ * collecting every message to the recipient and taking the end of the list.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ConversationBenchmark {
+    private static final int MESSAGES = 1_000_000;
+    private static final int PAGE = 20;
+
+    @Param({"1000", "100000"})
+    public int perRecipient;
+
+    private MessageStore store;
+    private ConversationIndex conversations;
+    private String busyRecipient;
+    private int middle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Message> messages = BenchmarkData.messages(MESSAGES);
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setRecipient("+2783" + (1_000_000 + i % (MESSAGES / perRecipient)));
+        }
+        busyRecipient = messages.get(0).getRecipient();
+        store = new MessageStore();
+        conversations = new ConversationIndex();
+        store.addListener(conversations);
+        store.addAll(messages);
+        middle = conversations.count(busyRecipient) / 2;
+    }
+
+    @Benchmark
+    public List<Message> lastPage() {
+        return conversations.lastMessages(busyRecipient, PAGE);
+    }
+
+    @Benchmark
+    public List<Message> middlePage() {
+        return conversations.newestFirst(busyRecipient, middle).nextPage(PAGE);
+    }
+
+    @Benchmark
+    public List<Message> findByRecipientBaseline() {
+        List<Message> all = store.findByRecipient(busyRecipient);
+        return all.subList(Math.max(0, all.size() - PAGE), all.size());
+    }
+}
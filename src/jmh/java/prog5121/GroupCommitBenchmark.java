@@ -0,0 +1,111 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GROUP COMMIT BENCHMARK
+ * Durable messages per second for 32 concurrent senders, each waiting until its own
+ * message is on disk: one fsync per message (the journal used directly) against the
+ * group committer at several batch limits.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(32)
+public class GroupCommitBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Journal {
+        @Param({"1", "64", "512"})
+        public int maxBatch;
+
+        Path file;
+        MessageJournal journal;
+        GroupCommitter committer;
+        Message message;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = Files.createTempFile("group-commit-bench", ".journal");
+            journal = MessageJournal.open(file.toString(), 1);
+            committer = new GroupCommitter(journal, 4096, maxBatch, 2);
+            message = BenchmarkData.messages(1).get(0);
+        }
+
+        @TearDown(Level.Iteration)
+        public void truncate() throws IOException {
+            // Keep the file small between iterations; no sender is running here
+            journal.reset();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            committer.close();
+            journal.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DirectJournal {
+        Path file;
+        MessageJournal journal;
+        Message message;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = Files.createTempFile("fsync-bench", ".journal");
+            journal = MessageJournal.open(file.toString(), 1);
+            message = BenchmarkData.messages(1).get(0);
+        }
+
+        @TearDown(Level.Iteration)
+        public void truncate() throws IOException {
+            journal.reset();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            journal.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public Message groupCommit(Journal state) {
+        return state.committer.submit(state.message).join();
+    }
+
+    @Benchmark
+    public Message fsyncPerMessage(DirectJournal state) throws IOException {
+        // syncEvery = 1: every append pays its own fsync; the lock stands in for a shared writer
+        synchronized (state.journal) {
+            state.journal.appendAdd(state.message);
+        }
+        return state.message;
+    }
+}
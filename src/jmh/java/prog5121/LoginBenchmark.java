@@ -0,0 +1,64 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LOGIN VALIDATION BENCHMARK
+ * Times the password and cell number checks with a valid and an invalid input each,
+ * and the pure MessageValidator cell number check for comparison.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoginBenchmark {
+
+    @Param({"valid", "invalid"})
+    public String input;
+
+    private Login login;
+    private String password;
+    private String cellNumber;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        login = new Login();
+        boolean valid = "valid".equals(input);
+        password = valid ? "Ch&&sec@ke99!" : "password";
+        cellNumber = valid ? "+27838968976" : "08966553";
+    }
+
+    @Benchmark
+    public boolean checkPasswordComplexity() {
+        return login.checkPasswordComplexity(password);
+    }
+
+    @Benchmark
+    public boolean checkCellPhoneNumber() {
+        return login.checkCellPhoneNumber(cellNumber);
+    }
+
+    @Benchmark
+    public boolean validatorCellNumber() {
+        return MessageValidator.isValidCellNumber(cellNumber);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MESSAGE OPERATIONS BENCHMARK
+ * Times the per-message work done on every send and every save/load: hashing,
+ * ID generation and conversion to and from JSON.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    private Message message;
+    private JSONObject json;
+    private final StringBuilder compact = new StringBuilder(512);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        message = BenchmarkData.messages(1).get(0);
+        message.setMessageText("Hi Mike, can you join us for dinner tonight");
+        json = message.toJSON();
+    }
+
+    @Benchmark
+    public String createMessageHash() {
+        return message.createMessageHash(7);
+    }
+
+    @Benchmark
+    public String generateMessageID() {
+        return message.generateMessageID();
+    }
+
+    @Benchmark
+    public JSONObject toJSON() {
+        return message.toJSON();
+    }
+
+    @Benchmark
+    public Message fromJSON() {
+        return Message.fromJSON(json);
+    }
+
+    @Benchmark
+    public int writeCompactJSON() throws IOException {
+        compact.setLength(0);
+        MessageJsonWriter.writeObject(compact, message, null);
+        return compact.length();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MESSAGE FILE BENCHMARK
+ * Times storeMessagesToJSON and loadMessagesFromJSON (eager and lazy) on files of
+ * 1K, 100K and 1M messages, against writing, opening and fully decoding the binary segment format.
+ * The fork gets a 2 GB heap so the 1M case fits.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MessageFileBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int messageCount;
+
+    private List<Message> messages;
+    private Path directory;
+    private String storeFile;
+    private String loadFile;
+    private Path segmentStoreFile;
+    private Path segmentLoadFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        messages = BenchmarkData.messages(messageCount);
+        directory = Files.createTempDirectory("chatapp-bench");
+        storeFile = directory.resolve("store.json").toString();
+        loadFile = directory.resolve("load.json").toString();
+        Message.storeMessagesToJSON(messages, loadFile);
+        segmentStoreFile = directory.resolve("store.seg");
+        segmentLoadFile = directory.resolve("load.seg");
+        MessageSegmentWriter.writeAtomically(messages, segmentLoadFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(storeFile));
+        Files.deleteIfExists(Path.of(loadFile));
+        Files.deleteIfExists(segmentStoreFile);
+        Files.deleteIfExists(segmentLoadFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public boolean storeMessagesToJSON() {
+        return Message.storeMessagesToJSON(messages, storeFile);
+    }
+
+    @Benchmark
+    public List<Message> loadMessagesFromJSON() {
+        return Message.loadMessagesFromJSON(loadFile);
+    }
+
+    @Benchmark
+    public List<Message> loadLazyMessagesFromJSON() {
+        return Message.loadLazyMessagesFromJSON(loadFile);
+    }
+
+    @Benchmark
+    public int writeSegment() throws IOException {
+        return MessageSegmentWriter.writeAtomically(messages, segmentStoreFile);
+    }
+
+    @Benchmark
+    public int openSegment() throws IOException {
+        try (MessageSegmentReader reader = MessageSegmentReader.open(segmentLoadFile)) {
+            return reader.size();
+        }
+    }
+
+    @Benchmark
+    public List<Message> loadSegment() throws IOException {
+        try (MessageSegmentReader reader = MessageSegmentReader.open(segmentLoadFile)) {
+            List<Message> loaded = new ArrayList<>(reader.size());
+            for (Message message : reader) {
+                loaded.add(message);
+            }
+            return loaded;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MESSAGE ID GENERATOR BENCHMARK
+ * Compares the random, snowflake and counter strategies (and the old Math.random()
+ * approach) on one thread and on every core, to show how each one scales.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageIDGeneratorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Generator {
+        @Param({"random", "snowflake", "counter"})
+        public String mode;
+
+        MessageIDGenerator generator;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            MessageStore store = new MessageStore();
+            // The random mode checks the store; reads of an unchanging store are safe to share
+            generator = MessageIDGenerator.forMode(mode, store::containsMessageID, MessageIDGenerator.MIN_ID);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long singleThread(Generator state) {
+        return state.generator.nextID();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long allCores(Generator state) {
+        return state.generator.nextID();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long mathRandomSingleThread() {
+        return (long) (Math.random() * 9000000000L) + 1000000000L;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long mathRandomAllCores() {
+        return (long) (Math.random() * 9000000000L) + 1000000000L;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PARALLEL LOAD BENCHMARK
+ * Loads a 1M message JSON file with the parallel loader on 1, 2, 4 and 8 threads,
+ * alone and followed by filling a MessageStore, against the single-threaded
+ * streaming load. Speed-up is bounded by the cores the machine actually has.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class ParallelLoadBenchmark {
+    private static final int MESSAGES = 1_000_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("chatapp-parallel", ".json");
+        Message.storeMessagesToJSON(BenchmarkData.messages(MESSAGES), file.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<Message> parallelLoad() {
+        return Message.loadLazyMessagesFromJSON(file.toString(), threads);
+    }
+
+    @Benchmark
+    public MessageStore parallelLoadIntoStore() {
+        MessageStore store = new MessageStore();
+        store.addAll(Message.loadLazyMessagesFromJSON(file.toString(), threads));
+        return store;
+    }
+
+    @Benchmark
+    public List<Message> streamingLoadBaseline() {
+        return Message.loadLazyMessagesFromJSON(file.toString());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PASSWORD HASHER BENCHMARK
+ * Logins per second against the PBKDF2 iteration count, verified directly and
+ * through the bounded verification pool from every core. Logins/sec for one core
+ * times the cores given to the pool is the login rate a deployment can sustain.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordHasherBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Hasher {
+        @Param({"10000", "100000", "310000", "600000"})
+        public int iterations;
+
+        PasswordHasher hasher;
+        String passwordHash;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            hasher = new PasswordHasher(iterations, cores, cores * 64);
+            passwordHash = hasher.hash("Ch&&sec@ke99!");
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean verifySingleThread(Hasher state) {
+        return state.hasher.verify("Ch&&sec@ke99!", state.passwordHash);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean verifyAsyncAllCores(Hasher state) {
+        return state.hasher.verifyAsync("Ch&&sec@ke99!", state.passwordHash).join();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TEXT INDEX BENCHMARK
+ * Queries a TextIndex over 1M benchmark messages. Their 16-word vocabulary makes
+ * every posting list long (each word is in roughly a third to half of the
+ * messages), which is the worst case for the index; one message in a thousand also
+ * mentions "birthday", for a typical selective query. Also times indexing them all.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TextIndexBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Query {
+        @Param({"tonight", "meeting tonight", "meeting OR tonight", "\"see you tomorrow\"", "birthday", "birthday tonight"})
+        public String text;
+    }
+
+    private List<Message> messages;
+    private TextIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messages = BenchmarkData.messages(1_000_000);
+        for (int i = 0; i < messages.size(); i += 1000) {
+            messages.get(i).setMessageText("happy birthday " + messages.get(i).getMessageText());
+        }
+        index = new TextIndex();
+        for (Message message : messages) {
+            index.messageAdded(message);
+        }
+    }
+
+    @Benchmark
+    public TextIndex.Result search(Query query) {
+        return index.search(query.text, 20);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public TextIndex buildIndex() {
+        TextIndex built = new TextIndex();
+        for (Message message : messages) {
+            built.messageAdded(message);
+        }
+        return built;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TOP LONGEST BENCHMARK
+ * Top-100 longest messages from a 1M message store, overall and for a recipient with
+ * about 1000 messages, against sorting every message. Also times filling the store
+ * one add() at a time against addAll() with its parallel ranking rebuild.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TopLongestBenchmark {
+    private static final int MESSAGES = 1_000_000;
+    private static final int RECIPIENTS = 1000;
+
+    @Param({"100"})
+    public int count;
+
+    private List<Message> messages;
+    private MessageStore store;
+    private String busyRecipient;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messages = BenchmarkData.messages(MESSAGES);
+        // Spread the messages over a fixed set of recipients so each has a history
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setRecipient("+2783" + (1_000_000 + i % RECIPIENTS));
+        }
+        busyRecipient = messages.get(0).getRecipient();
+        store = new MessageStore();
+        store.addAll(messages);
+    }
+
+    @Benchmark
+    public List<Message> topLongest() {
+        return store.findLongest(count);
+    }
+
+    @Benchmark
+    public List<Message> topLongestForRecipient() {
+        return store.findLongestForRecipient(busyRecipient, count);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public List<Message> fullSortBaseline() {
+        List<Message> sorted = new ArrayList<>(messages);
+        sorted.sort(Comparator.comparingInt(Message::getMessageTextLength).reversed());
+        return sorted.subList(0, count);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public MessageStore fillOneByOne() {
+        MessageStore filled = new MessageStore();
+        for (Message message : messages) {
+            filled.add(message);
+        }
+        return filled;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public MessageStore fillWithAddAll() {
+        MessageStore filled = new MessageStore();
+        filled.addAll(messages);
+        return filled;
+    }
+}
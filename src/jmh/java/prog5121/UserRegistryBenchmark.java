@@ -0,0 +1,99 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * USER REGISTRY BENCHMARK
+ * Concurrent registrations and logins against a registry that already holds 1M
+ * accounts, on one thread and on every core.
+ * @author Chumisa Haya
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserRegistryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Registry {
+        @Param({"1000000"})
+        public int users;
+
+        UserRegistry registry;
+        String[] usernames;
+        String passwordHash;
+        final AtomicLong nextNewUser = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // One PBKDF2 iteration: this measures the maps, PasswordHasherBenchmark measures the hashing
+            registry = new UserRegistry(users * 2, new PasswordHasher(1, 1, 1));
+            passwordHash = registry.getPasswordHasher().hash("Ch&&sec@ke99!");
+            usernames = new String[users];
+            for (int i = 0; i < users; i++) {
+                usernames[i] = "u" + i;
+                registry.register(new UserAccount(usernames[i], passwordHash, cellNumber(i), "First", "Last"));
+            }
+            nextNewUser.set(users);
+        }
+
+        static String cellNumber(long i) {
+            // Nine digits for up to 900M users, without String.format on the measured path
+            return "+27" + (100_000_000L + i);
+        }
+    }
+
+    private static UserRegistry.Result register(Registry state) {
+        long i = state.nextNewUser.getAndIncrement();
+        return state.registry.register(new UserAccount("u" + i, state.passwordHash, Registry.cellNumber(i), "First", "Last"));
+    }
+
+    private static UserAccount login(Registry state) {
+        String username = state.usernames[ThreadLocalRandom.current().nextInt(state.usernames.length)];
+        return state.registry.authenticate(username, "Ch&&sec@ke99!");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public UserRegistry.Result registerSingleThread(Registry state) {
+        return register(state);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public UserRegistry.Result registerAllCores(Registry state) {
+        return register(state);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public UserAccount loginSingleThread(Registry state) {
+        return login(state);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public UserAccount loginAllCores(Registry state) {
+        return login(state);
+    }
+}
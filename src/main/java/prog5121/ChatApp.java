@@ -19,27 +19,86 @@ package prog5121;
  *   https://github.com/stleary/JSON-java
  */
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Scanner;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JOptionPane;
 
 public class ChatApp {
     private static final Login loginSystem = new Login();
     private static final Scanner scanner = new Scanner(System.in);
-    private static final List<Message> allMessages = new ArrayList<>();
-    private static final List<Message> sentMessages = new ArrayList<>();
-    private static final List<Message> storedMessages = new ArrayList<>();
-    private static final List<Message> disregardedMessages = new ArrayList<>();
-    private static final List<String> messageHashes = new ArrayList<>();
-    private static final List<String> messageIDs = new ArrayList<>();
+    private static final MessageStore messageStore = new MessageStore();
+    // Full-text search over message contents, updated by the store on every change
+    private static final TextIndex textIndex = new TextIndex();
+    // Per-recipient message logs in the order sent, read a page at a time
+    private static final ConversationIndex conversations = new ConversationIndex();
+    private static final int RECIPIENT_PAGE_SIZE = 10;
+    // Answers "no such ID / hash" without a store lookup; saved beside each snapshot
+    private static final MessageBloomFilter existenceFilter = new MessageBloomFilter(
+        Long.getLong("chatapp.bloom.expectedMessages", 100_000),
+        Double.parseDouble(System.getProperty("chatapp.bloom.falsePositiveRate", "0.01")),
+        Long.getLong("chatapp.bloom.maxBytes", 16L << 20));
+    // Old messages in these statuses move to compressed cold storage on each save
+    private static final MessageArchive archive = new MessageArchive();
+    private static final List<String> ARCHIVE_STATUSES = List.of(
+        System.getProperty("chatapp.archive.statuses", "Disregarded,Sent").split(","));
+    private static final int ARCHIVE_KEEP_RECENT = Integer.getInteger("chatapp.archive.keepRecent", 10_000);
+    private static boolean archiveDamaged = false; // then its file is left alone and nothing is archived
+    
+    // Persistence: messages.json is the snapshot, messages.journal holds changes made since
+    private static final String MESSAGES_FILE = "messages.json";
+    private static final String JOURNAL_FILE = "messages.journal";
+    private static final String BLOOM_FILE = "messages.bloom";
+    private static final String ARCHIVE_FILE = "messages.archive";
+    private static final int LOAD_THREADS = Integer.getInteger("chatapp.load.threads",
+        Runtime.getRuntime().availableProcessors());
+    private static boolean snapshotDamaged = false; // then messages.json is never overwritten
+    private static final int JOURNAL_SYNC_EVERY = Integer.getInteger("chatapp.journal.syncEvery", 1);
+    private static final int JOURNAL_COMPACT_AFTER = Integer.getInteger("chatapp.journal.compactAfter", 1000);
+    private static MessageJournal journal;
+    
+    // Group commit for concurrent senders: one fsync per batch of up to MAX_BATCH or MAX_DELAY_MS
+    private static final int COMMIT_QUEUE = Integer.getInteger("chatapp.commit.queue", 4096);
+    private static final int COMMIT_MAX_BATCH = Integer.getInteger("chatapp.commit.maxBatch", 256);
+    private static final int COMMIT_MAX_DELAY_MS = Integer.getInteger("chatapp.commit.maxDelayMs", 2);
+    private static GroupCommitter groupCommitter;
+    
+    // Sessions: a login issues a token, later actions only look it up
+    private static final SessionManager sessions = new SessionManager(
+        Integer.getInteger("chatapp.session.max", 10_000),
+        Integer.getInteger("chatapp.session.ttlMinutes", 30), TimeUnit.MINUTES);
+    private static String sessionToken;
+    
+    // Message ID strategy: "random" (checked against the store), "snowflake" or "counter".
+    // Snowflake IDs pack only 21 bits of seconds, so the clock part wraps about every
+    // 24 days and a restart within one second repeats sequences; both modes that can
+    // repeat a value are checked against the store and archive below, and so is the
+    // counter, which starts after the highest stored ID but may meet archived ones.
+    private static final String ID_GENERATOR_MODE = System.getProperty("chatapp.idGenerator", "random");
     
     public static void main(String[] args) {
         System.out.println("✨ WELCOME TO ChatApp ✨");
         System.out.println("=".repeat(40));
         
         // Load messages from previous session if available
+        messageStore.addListener(textIndex);
+        messageStore.addListener(conversations);
+        messageStore.addListener(existenceFilter);
         loadMessagesFromJSON();
+        // The ingestion server generates IDs on many threads, so store reads are locked too
+        Message.setIDGenerator(MessageIDGenerator.forMode(ID_GENERATOR_MODE, id -> {
+            synchronized (messageStore) {
+                return messageStore.containsMessageID(id) || archive.findByID(String.valueOf(id)) != null;
+            }
+        }, messageStore.getHighestMessageID()));
         
         boolean running = true;
         while (running) {
@@ -82,13 +141,17 @@ public class ChatApp {
                     runUnitTests();
                     break;
                 case 12:
+                    runIngestionServer();
+                    break;
+                case 13:
                     // Save messages before exiting
                     saveMessagesToJSON();
+                    closeJournal();
                     running = false;
                     System.out.println("Thank you for using QuickChat! Goodbye! 👋");
                     break;
                 default:
-                    System.out.println("❌ Invalid option. Please choose 1-12.");
+                    System.out.println("❌ Invalid option. Please choose 1-13.");
             }
             
             System.out.println("\n" + "=".repeat(40));
@@ -111,8 +174,9 @@ public class ChatApp {
         System.out.println("9. Generate Reports");
         System.out.println("10. Load Test Data");
         System.out.println("11. Run Unit Tests");
-        System.out.println("12. Exit");
-        System.out.print("Choose an option (1-12): ");
+        System.out.println("12. Start Ingestion Server");
+        System.out.println("13. Exit");
+        System.out.print("Choose an option (1-13): ");
     }
     
     /**
@@ -173,12 +237,23 @@ public class ChatApp {
         System.out.print("Enter Username: ");
         String username = scanner.nextLine();
         
+        // The same user with a live session does not need to re-enter a password;
+        // anyone else logs in normally and replaces that session
+        if (username.equals(sessions.peek(sessionToken)) && sessions.lookup(sessionToken) != null) {
+            System.out.println("✅ Already logged in as " + username + " - session still active.");
+            return;
+        }
+        
         System.out.print("Enter Password: ");
         String password = scanner.nextLine();
         
         // Attempt login
         boolean loginResult = loginSystem.loginUser(username, password);
         String statusMessage = loginSystem.returnLoginStatus(loginResult);
+        if (loginResult) {
+            sessions.invalidate(sessionToken);
+            sessionToken = sessions.createSession(username);
+        }
         
         System.out.println("\n🔑 LOGIN RESULT:");
         System.out.println(statusMessage);
@@ -204,7 +279,7 @@ public class ChatApp {
         System.out.println("=".repeat(40));
         
         String username = loginSystem.getStoredUsername();
-        String password = loginSystem.getStoredPassword();
+        String passwordHash = loginSystem.getStoredPasswordHash();
         String cellPhone = loginSystem.getStoredCellPhone();
         String firstName = loginSystem.getStoredFirstName();
         String lastName = loginSystem.getStoredLastName();
@@ -217,15 +292,29 @@ public class ChatApp {
         System.out.println("First Name: " + firstName);
         System.out.println("Last Name: " + lastName);
         System.out.println("Username: " + username);
-        System.out.println("Password: " + "*".repeat(password.length()));
         System.out.println("Cell Phone: " + cellPhone);
         
-        // Show password requirements status
-        System.out.println("\n🔒 PASSWORD COMPLEXITY CHECK:");
-        System.out.println("Length >= 8: " + (password.length() >= 8));
-        System.out.println("Has capital: " + containsCapital(password));
-        System.out.println("Has number: " + containsNumber(password));
-        System.out.println("Has special char: " + containsSpecialChar(password));
+        // Only a salted hash is kept, so show how it is protected rather than the password
+        System.out.println("\n🔒 PASSWORD STORAGE:");
+        System.out.println("Salted PBKDF2 hash, " + PasswordHasher.iterationsOf(passwordHash) + " iterations");
+        
+        System.out.println("\n🎫 SESSION:");
+        System.out.println("Active: " + (sessions.peek(sessionToken) != null));
+        System.out.println("Cache: " + sessions.describeStats());
+    }
+    
+    /**
+     * Checks the session token instead of re-authenticating
+     * 
+     * @return boolean - true if a logged-in session is active
+     */
+    private static boolean hasActiveSession() {
+        if (sessions.lookup(sessionToken) == null) {
+            System.out.println("❌ Please register and login first! (no active session)");
+            sessionToken = null;
+            return false;
+        }
+        return true;
     }
     
     /**
@@ -233,8 +322,7 @@ public class ChatApp {
      * Handles the message sending workflow without Scanner conflicts
      */
     private static void sendMessages() {
-        if (loginSystem.getStoredUsername().isEmpty()) {
-            System.out.println("❌ Please register and login first!");
+        if (!hasActiveSession()) {
             return;
         }
         
@@ -268,19 +356,9 @@ public class ChatApp {
             boolean success = createMessageManual(message, i, messageScanner);
             
             if (success) {
-                // Add to appropriate arrays
-                allMessages.add(message);
-                messageIDs.add(message.getMessageID());
-                messageHashes.add(message.getMessageHash());
-                
-                // Add to status-specific arrays
-                if ("Sent".equals(message.getStatus())) {
-                    sentMessages.add(message);
-                } else if ("Stored".equals(message.getStatus())) {
-                    storedMessages.add(message);
-                } else {
-                    disregardedMessages.add(message);
-                }
+                // Add to the message store and its indexes
+                messageStore.add(message);
+                journalMessage(message, false);
                 
                 successfulMessages++;
                 System.out.println("✅ Message #" + i + " processed successfully!");
@@ -289,18 +367,75 @@ public class ChatApp {
             }
         }
         
-        // Save messages after sending
-        saveMessagesToJSON();
+        // Make this batch durable
+        commitJournal();
         
         System.out.println("\n📊 MESSAGING SUMMARY:");
         System.out.println("Total attempted: " + numMessages);
         System.out.println("Successful: " + successfulMessages);
-        System.out.println("Total sent messages: " + sentMessages.size());
-        System.out.println("Total all messages: " + allMessages.size());
+        System.out.println("Total sent messages: " + allStatistics().countByStatus("Sent"));
+        System.out.println("Total all messages: " + (messageStore.size() + archive.size()));
         
         messageScanner.close();
     }
     
+    /**
+     * INGESTION SERVER
+     * Accepts messages from local TCP clients until Enter is pressed. The console
+     * waits meanwhile, so only the server's connection threads touch the store.
+     */
+    private static void runIngestionServer() {
+        if (!hasActiveSession()) {
+            return;
+        }
+        scanner.nextLine(); // Clear buffer
+        
+        if (journal != null) {
+            groupCommitter = new GroupCommitter(journal, COMMIT_QUEUE, COMMIT_MAX_BATCH, COMMIT_MAX_DELAY_MS);
+        }
+        
+        int port = Integer.getInteger("chatapp.ingest.port", IngestionServer.DEFAULT_PORT);
+        try (IngestionServer server = IngestionServer.start(port, ChatApp::ingestMessage)) {
+            System.out.println("\n📡 Ingestion server listening on localhost:" + server.getPort());
+            System.out.println("Send lines like: SEND +27831234567 Hello there");
+            System.out.println("Press Enter to stop...");
+            scanner.nextLine();
+            
+            System.out.println("Connections served: " + server.getTotalConnections());
+            System.out.println("Messages accepted: " + server.getAcceptedMessages()
+                + " | rejected: " + server.getRejectedMessages());
+        } catch (IOException e) {
+            System.out.println("❌ Ingestion server error: " + e.getMessage());
+        }
+        
+        if (groupCommitter != null) {
+            groupCommitter.close();
+            System.out.println(String.format("Journal commits: %d fsyncs, %.1f messages each",
+                groupCommitter.getBatchCount(), groupCommitter.getAverageBatchSize()));
+            groupCommitter = null;
+        }
+        
+        // Make everything the server accepted durable
+        commitJournal();
+    }
+    
+    /**
+     * Stores one message from the ingestion server (any thread) once the group
+     * committer has made it durable
+     */
+    private static void ingestMessage(Message message) throws IOException {
+        if (groupCommitter != null) {
+            try {
+                groupCommitter.submit(message).join();
+            } catch (CompletionException e) {
+                throw new IOException("Journal write failed", e.getCause());
+            }
+        }
+        synchronized (messageStore) {
+            messageStore.add(message);
+        }
+    }
+    
     /**
      * MANUAL MESSAGE CREATION - Handles input without using Message.createMessage()
      */
@@ -309,9 +444,8 @@ public class ChatApp {
         System.out.print("Enter recipient's cell number (+27 format): ");
         String recipientInput = messageScanner.nextLine();
         
-        String recipientValidation = message.checkRecipientCell(recipientInput, loginSystem);
-        if (!recipientValidation.contains("successfully")) {
-            System.out.println("❌ " + recipientValidation);
+        if (!MessageValidator.isValidCellNumber(recipientInput)) {
+            System.out.println("❌ " + MessageValidator.describe(MessageValidator.INVALID_RECIPIENT, null));
             return false;
         }
         message.setRecipient(recipientInput);
@@ -320,9 +454,8 @@ public class ChatApp {
         System.out.print("Enter your message (max 250 chars): ");
         String messageInput = messageScanner.nextLine();
         
-        String messageValidation = message.checkMessageLength(messageInput);
-        if (!messageValidation.contains("ready to send")) {
-            System.out.println("❌ " + messageValidation);
+        if (!MessageValidator.isValidMessageLength(messageInput)) {
+            System.out.println("❌ " + MessageValidator.describe(MessageValidator.TEXT_TOO_LONG, messageInput));
             return false;
         }
         message.setMessageText(messageInput);
@@ -392,18 +525,23 @@ public class ChatApp {
         System.out.println("📈 MESSAGE STATISTICS");
         System.out.println("=".repeat(50));
         
-        System.out.println("Total messages processed: " + allMessages.size());
-        System.out.println("Sent messages: " + sentMessages.size());
-        System.out.println("Stored messages: " + storedMessages.size());
-        System.out.println("Disregarded messages: " + disregardedMessages.size());
+        // Archived messages still count; they are only stored differently
+        MessageStatistics statistics = allStatistics();
+        System.out.println("Total messages processed: " + statistics.getMessageCount());
+        System.out.println("Sent messages: " + statistics.countByStatus("Sent"));
+        System.out.println("Stored messages: " + statistics.countByStatus("Stored"));
+        System.out.println("Disregarded messages: " + statistics.countByStatus("Disregarded"));
+        System.out.println("ID/hash Bloom filter: " + existenceFilter.describe());
+        System.out.println("Archived: " + archive.describe());
         
-        if (!allMessages.isEmpty()) {
+        if (!messageStore.isEmpty()) {
             System.out.println("\n📋 RECENT MESSAGES:");
-            for (int i = Math.max(0, allMessages.size() - 5); i < allMessages.size(); i++) {
-                Message msg = allMessages.get(i);
-                String preview = msg.getMessageText().length() > 20 ? 
-                    msg.getMessageText().substring(0, 20) + "..." : msg.getMessageText();
-                System.out.println((i + 1) + ". To: " + msg.getRecipient() + " - " + preview);
+            List<Message> recent = messageStore.lastN(5);
+            int first = archive.size() + messageStore.size() - recent.size();
+            for (int i = 0; i < recent.size(); i++) {
+                Message msg = recent.get(i);
+                String preview = msg.getPreview(20);
+                System.out.println((first + i + 1) + ". To: " + msg.getRecipient() + " - " + preview);
             }
         }
     }
@@ -413,7 +551,10 @@ public class ChatApp {
      * Handles advanced message operations
      */
     private static void manageMessages() {
-        if (allMessages.isEmpty()) {
+        if (!hasActiveSession()) {
+            return;
+        }
+        if (messageStore.isEmpty() && archive.isEmpty()) {
             System.out.println("❌ No messages available. Please send messages first.");
             return;
         }
@@ -428,8 +569,10 @@ public class ChatApp {
             System.out.println("3. Search by Recipient");
             System.out.println("4. Delete Message by Hash");
             System.out.println("5. Show Longest Message");
-            System.out.println("6. Back to Main Menu");
-            System.out.print("Choose an option (1-6): ");
+            System.out.println("6. Show Top Longest Messages");
+            System.out.println("7. Search Message Text");
+            System.out.println("8. Back to Main Menu");
+            System.out.print("Choose an option (1-8): ");
             
             int choice = getMenuChoice();
             scanner.nextLine(); // Clear buffer
@@ -451,6 +594,12 @@ public class ChatApp {
                     showLongestMessage();
                     break;
                 case 6:
+                    showTopLongestMessages();
+                    break;
+                case 7:
+                    searchMessageText();
+                    break;
+                case 8:
                     managing = false;
                     break;
                 default:
@@ -463,14 +612,16 @@ public class ChatApp {
      * DISPLAYS ALL MESSAGES
      */
     private static void displayAllMessages() {
-        System.out.println("\n📨 ALL MESSAGES (" + allMessages.size() + "):");
+        System.out.println("\n📨 ALL MESSAGES (" + messageStore.size() + "):");
         System.out.println("=".repeat(80));
-        for (int i = 0; i < allMessages.size(); i++) {
-            Message msg = allMessages.get(i);
-            String preview = msg.getMessageText().length() > 30 ? 
-                msg.getMessageText().substring(0, 30) + "..." : msg.getMessageText();
+        int i = 0;
+        for (Message msg : messageStore) {
+            String preview = msg.getPreview(30);
             System.out.printf("%2d. To: %-15s | Status: %-12s | %s\n", 
-                (i + 1), msg.getRecipient(), msg.getStatus(), preview);
+                ++i, msg.getRecipient(), msg.getStatus(), preview);
+        }
+        if (!archive.isEmpty()) {
+            System.out.println("🗄️ " + archive.size() + " older messages are archived; search by recipient, ID or text to see them.");
         }
     }
     
@@ -481,21 +632,19 @@ public class ChatApp {
         System.out.print("Enter Message ID to search: ");
         String searchID = scanner.nextLine();
         
-        boolean found = false;
-        for (Message msg : allMessages) {
-            if (msg.getMessageID().equals(searchID)) {
-                System.out.println("✅ Found message:");
-                System.out.println("ID: " + msg.getMessageID());
-                System.out.println("Hash: " + msg.getMessageHash());
-                System.out.println("Recipient: " + msg.getRecipient());
-                System.out.println("Message: " + msg.getMessageText());
-                System.out.println("Status: " + msg.getStatus());
-                found = true;
-                break;
-            }
+        // A definite miss never reaches the store
+        Message msg = existenceFilter.mightContainID(searchID) ? messageStore.findByID(searchID) : null;
+        if (msg == null) {
+            msg = archive.findByID(searchID);
         }
-        
-        if (!found) {
+        if (msg != null) {
+            System.out.println("✅ Found message:");
+            System.out.println("ID: " + msg.getMessageID());
+            System.out.println("Hash: " + msg.getMessageHash());
+            System.out.println("Recipient: " + msg.getRecipient());
+            System.out.println("Message: " + msg.getMessageText());
+            System.out.println("Status: " + msg.getStatus());
+        } else {
             System.out.println("❌ No message found with ID: " + searchID);
         }
     }
@@ -510,12 +659,8 @@ private static void loadTestData() {
     System.out.println("=".repeat(60));
     
     // Clear existing data to start fresh
-    allMessages.clear();
-    sentMessages.clear();
-    storedMessages.clear();
-    disregardedMessages.clear();
-    messageHashes.clear();
-    messageIDs.clear();
+    messageStore.clear();
+    archive.clear();
     
     // Test Data Message 1: +27834557896 | "Did you get the cake?" | Sent
     Message msg1 = new Message();
@@ -524,7 +669,7 @@ private static void loadTestData() {
     msg1.setRecipient("+27834557896");
     msg1.setMessageText("Did you get the cake?");
     msg1.setStatus("Sent");
-    addTestMessageToArrays(msg1);
+    messageStore.add(msg1);
     
     // Test Data Message 2: +27838884567 | Long message | Stored
     Message msg2 = new Message();
@@ -533,7 +678,7 @@ private static void loadTestData() {
     msg2.setRecipient("+27838884567");
     msg2.setMessageText("Where are you? You are late! I have asked you to be on time.");
     msg2.setStatus("Stored");
-    addTestMessageToArrays(msg2);
+    messageStore.add(msg2);
     
     // Test Data Message 3: +27834484567 | "Yohoooo, I am at your gate." | Disregarded
     Message msg3 = new Message();
@@ -542,7 +687,7 @@ private static void loadTestData() {
     msg3.setRecipient("+27834484567");
     msg3.setMessageText("Yohoooo, I am at your gate.");
     msg3.setStatus("Disregarded");
-    addTestMessageToArrays(msg3);
+    messageStore.add(msg3);
     
     // Test Data Message 4: 0838884567 | "It is dinner time!" | Sent (invalid format)
     Message msg4 = new Message();
@@ -551,7 +696,7 @@ private static void loadTestData() {
     msg4.setRecipient("0838884567");
     msg4.setMessageText("It is dinner time!");
     msg4.setStatus("Sent");
-    addTestMessageToArrays(msg4);
+    messageStore.add(msg4);
     
     // Test Data Message 5: +27838884567 | "Ok, I am leaving without you." | Stored
     Message msg5 = new Message();
@@ -560,56 +705,59 @@ private static void loadTestData() {
     msg5.setRecipient("+27838884567");
     msg5.setMessageText("Ok, I am leaving without you.");
     msg5.setStatus("Stored");
-    addTestMessageToArrays(msg5);
+    messageStore.add(msg5);
     
     System.out.println("✅ Test data loaded successfully!");
-    System.out.println("Total messages: " + allMessages.size());
-    System.out.println("Sent: " + sentMessages.size() + " | Stored: " + storedMessages.size() + 
-                      " | Disregarded: " + disregardedMessages.size());
+    System.out.println("Total messages: " + messageStore.size());
+    System.out.println("Sent: " + messageStore.countByStatus("Sent") + " | Stored: " + messageStore.countByStatus("Stored") + 
+                      " | Disregarded: " + messageStore.countByStatus("Disregarded"));
 }
 
-/**
- * HELPER METHOD: Adds a test message to all appropriate arrays
- */
-private static void addTestMessageToArrays(Message message) {
-    allMessages.add(message);
-    messageIDs.add(message.getMessageID());
-    messageHashes.add(message.getMessageHash());
-    
-    switch (message.getStatus()) {
-        case "Sent":
-            sentMessages.add(message);
-            break;
-        case "Stored":
-            storedMessages.add(message);
-            break;
-        case "Disregarded":
-            disregardedMessages.add(message);
-            break;
-    }
-}
-    
-    
     /**
      * SEARCHES MESSAGES BY RECIPIENT
+     * Shows the conversation a page at a time, newest first
      */
     private static void searchByRecipient() {
         System.out.print("Enter recipient number to search: ");
         String recipient = scanner.nextLine();
         
-        List<Message> foundMessages = new ArrayList<>();
-        for (Message msg : allMessages) {
-            if (msg.getRecipient().equals(recipient)) {
-                foundMessages.add(msg);
-            }
+        int archived = archive.countForRecipient(recipient);
+        int total = conversations.count(recipient) + archived;
+        if (total == 0) {
+            System.out.println("❌ No messages found for recipient: " + recipient);
+            return;
         }
         
-        if (foundMessages.isEmpty()) {
-            System.out.println("❌ No messages found for recipient: " + recipient);
-        } else {
-            System.out.println("✅ Found " + foundMessages.size() + " messages for " + recipient + ":");
-            for (Message msg : foundMessages) {
-                System.out.println("• " + msg.getMessageText() + " (" + msg.getStatus() + ")");
+        System.out.println("✅ Found " + total + " messages for " + recipient + " (newest first):");
+        // Archived messages are older than the store's, so they follow once its pages run out
+        ConversationIndex.Cursor cursor = conversations.newestFirst(recipient);
+        List<Message> older = null; // inflated only if the user pages that far
+        int olderShown = 0;
+        int shown = 0;
+        while (true) {
+            for (int i = 0; i < RECIPIENT_PAGE_SIZE; i++) {
+                Message msg;
+                if (cursor.hasNext()) {
+                    msg = cursor.next();
+                } else {
+                    if (older == null) {
+                        older = new ArrayList<>(archived);
+                        archive.forRecipient(recipient, older::add);
+                        Collections.reverse(older);
+                    }
+                    if (olderShown == older.size()) {
+                        break;
+                    }
+                    msg = older.get(olderShown++);
+                }
+                System.out.printf("%3d. %s (%s)\n", ++shown, msg.getMessageText(), msg.getStatus());
+            }
+            if (!cursor.hasNext() && (older == null ? archived == 0 : olderShown == older.size())) {
+                return;
+            }
+            System.out.print("Show " + Math.min(RECIPIENT_PAGE_SIZE, total - shown) + " older messages? (y/n): ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                return;
             }
         }
     }
@@ -621,30 +769,20 @@ private static void addTestMessageToArrays(Message message) {
         System.out.print("Enter Message Hash to delete: ");
         String hashToDelete = scanner.nextLine();
         
-        Message messageToDelete = null;
-        for (Message msg : allMessages) {
-            if (msg.getMessageHash().equalsIgnoreCase(hashToDelete)) {
-                messageToDelete = msg;
-                break;
-            }
+        Message messageToDelete = existenceFilter.mightContainHash(hashToDelete)
+            ? messageStore.findByHash(hashToDelete) : null;
+        if (messageToDelete == null) {
+            messageToDelete = archive.findByHash(hashToDelete);
         }
         
         if (messageToDelete != null) {
-            allMessages.remove(messageToDelete);
-            messageIDs.remove(messageToDelete.getMessageID());
-            messageHashes.remove(messageToDelete.getMessageHash());
-            
-            // Remove from status-specific arrays
-            if ("Sent".equals(messageToDelete.getStatus())) {
-                sentMessages.remove(messageToDelete);
-            } else if ("Stored".equals(messageToDelete.getStatus())) {
-                storedMessages.remove(messageToDelete);
-            } else {
-                disregardedMessages.remove(messageToDelete);
+            if (!messageStore.remove(messageToDelete)) {
+                archive.remove(messageToDelete.getMessageID(), messageToDelete.getMessageHash());
             }
             
             System.out.println("✅ Message '" + messageToDelete.getMessageText() + "' successfully deleted.");
-            saveMessagesToJSON(); // Save changes
+            journalMessage(messageToDelete, true);
+            commitJournal(); // Save changes
         } else {
             System.out.println("❌ No message found with hash: " + hashToDelete);
         }
@@ -654,25 +792,111 @@ private static void addTestMessageToArrays(Message message) {
      * SHOWS LONGEST MESSAGE
      */
     private static void showLongestMessage() {
-        if (allMessages.isEmpty()) {
+        if (messageStore.isEmpty() && archive.isEmpty()) {
             System.out.println("❌ No messages available.");
             return;
         }
         
-        Message longestMessage = allMessages.get(0);
-        for (Message msg : allMessages) {
-            if (msg.getMessageText().length() > longestMessage.getMessageText().length()) {
-                longestMessage = msg;
-            }
-        }
+        Message longestMessage = longestOf(messageStore.findLongest(1), archive.findLongest(1), 1).get(0);
         
-        System.out.println("📏 LONGEST MESSAGE (" + longestMessage.getMessageText().length() + " chars):");
+        System.out.println("📏 LONGEST MESSAGE (" + longestMessage.getMessageTextLength() + " chars):");
         System.out.println("To: " + longestMessage.getRecipient());
         System.out.println("Message: " + longestMessage.getMessageText());
         System.out.println("Status: " + longestMessage.getStatus());
         System.out.println("Hash: " + longestMessage.getMessageHash());
     }
     
+    /**
+     * SEARCHES MESSAGE CONTENTS
+     * Words must all appear; OR between alternatives; quotes for an exact phrase
+     */
+    private static void searchMessageText() {
+        System.out.println("Search words (all must match), OR for alternatives, \"quotes\" for a phrase");
+        System.out.print("Search: ");
+        String query = scanner.nextLine().trim();
+        if (query.isEmpty()) {
+            System.out.println("❌ Please enter something to search for.");
+            return;
+        }
+        
+        long started = System.nanoTime();
+        TextIndex.Result result = textIndex.search(query, 20);
+        // The archive has no inverted index; it skips blocks whose word filter rules the query out
+        TextIndex.Result archived = archive.search(new TextIndex.Query(query), 20 - result.getMessages().size());
+        double millis = (System.nanoTime() - started) / 1e6;
+        int totalMatches = result.getTotalMatches() + archived.getTotalMatches();
+        if (totalMatches == 0) {
+            System.out.println("❌ No messages match: " + query);
+            return;
+        }
+        
+        System.out.printf("\n🔎 %d MATCHING MESSAGES (%.2f ms):\n", totalMatches, millis);
+        List<Message> shown = new ArrayList<>(result.getMessages());
+        shown.addAll(archived.getMessages());
+        int i = 0;
+        for (Message msg : shown) {
+            System.out.printf("%2d. ID: %s | To: %-15s | %s\n",
+                ++i, msg.getMessageID(), msg.getRecipient(), msg.getPreview(40));
+        }
+        if (totalMatches > shown.size()) {
+            System.out.println("... and " + (totalMatches - shown.size()) + " more");
+        }
+    }
+    
+    /**
+     * SHOWS THE TOP K LONGEST MESSAGES
+     * Across all messages, or for one recipient
+     */
+    private static void showTopLongestMessages() {
+        System.out.print("How many messages? ");
+        int count = getMenuChoice();
+        scanner.nextLine(); // Clear buffer
+        if (count < 1) {
+            System.out.println("❌ Please enter a number greater than 0.");
+            return;
+        }
+        System.out.print("Recipient (leave blank for all): ");
+        String recipient = scanner.nextLine().trim();
+        
+        List<Message> longest = recipient.isEmpty()
+            ? longestOf(messageStore.findLongest(count), archive.findLongest(count), count)
+            : longestOf(messageStore.findLongestForRecipient(recipient, count),
+                        archive.findLongestForRecipient(recipient, count), count);
+        if (longest.isEmpty()) {
+            System.out.println("❌ No messages found for recipient: " + recipient);
+            return;
+        }
+        
+        System.out.println("\n📏 TOP " + longest.size() + " LONGEST MESSAGES" + (recipient.isEmpty() ? "" : " TO " + recipient) + ":");
+        int rank = 0;
+        for (Message msg : longest) {
+            System.out.printf("%3d. %3d chars | To: %-15s | %s\n",
+                ++rank, msg.getMessageTextLength(), msg.getRecipient(), msg.getPreview(30));
+        }
+    }
+    
+    /**
+     * @return MessageStatistics - counts and lengths over the store and the archive together
+     */
+    private static MessageStatistics allStatistics() {
+        return MessageStatistics.combined(messageStore.getStatistics(), archive.getStatistics());
+    }
+    
+    /**
+     * Merges the store's and the archive's longest messages
+     * 
+     * @param stored - longest messages from the store, longest first
+     * @param archived - longest messages from the archive, longest first
+     * @param count - how many to keep
+     * @return List<Message> - the overall longest, longest first (stored first on ties)
+     */
+    private static List<Message> longestOf(List<Message> stored, List<Message> archived, int count) {
+        List<Message> longest = new ArrayList<>(stored);
+        longest.addAll(archived);
+        longest.sort(Comparator.comparingInt(Message::getMessageTextLength).reversed());
+        return longest.subList(0, Math.min(count, longest.size()));
+    }
+    
     /**
      * GENERATES REPORTS
      */
@@ -712,78 +936,288 @@ private static void addTestMessageToArrays(Message message) {
         System.out.println("📈 COMPREHENSIVE MESSAGE REPORT");
         System.out.println("=".repeat(60));
         
-        System.out.println("Total Messages: " + allMessages.size());
-        System.out.println("Sent Messages: " + sentMessages.size());
-        System.out.println("Stored Messages: " + storedMessages.size());
-        System.out.println("Disregarded Messages: " + disregardedMessages.size());
+        MessageStatistics statistics = allStatistics();
+        System.out.println("Total Messages: " + statistics.getMessageCount());
+        System.out.println("Sent Messages: " + statistics.countByStatus("Sent"));
+        System.out.println("Stored Messages: " + statistics.countByStatus("Stored"));
+        System.out.println("Disregarded Messages: " + statistics.countByStatus("Disregarded"));
         
         System.out.println("\n🔍 MESSAGE HASHES:");
-        for (int i = 0; i < Math.min(messageHashes.size(), 10); i++) {
-            System.out.println("• " + messageHashes.get(i));
+        int shown = 0;
+        for (Message msg : messageStore) {
+            if (shown == 10) {
+                break;
+            }
+            System.out.println("• " + msg.getMessageHash());
+            shown++;
         }
-        if (messageHashes.size() > 10) {
-            System.out.println("... and " + (messageHashes.size() - 10) + " more");
+        if (messageStore.size() > 10) {
+            System.out.println("... and " + (messageStore.size() - 10) + " more");
         }
         
         System.out.println("\n💬 MESSAGE LENGTH ANALYSIS:");
-        int totalChars = 0;
-        int shortest = allMessages.isEmpty() ? 0 : Integer.MAX_VALUE;
-        int longest = 0;
+        System.out.println("Shortest message: " + statistics.getShortestLength() + " characters");
+        System.out.println("Longest message: " + statistics.getLongestLength() + " characters");
+        System.out.println("Average message length: " + String.format("%.1f", statistics.getAverageLength()) + " characters");
+    }
+    
+    /**
+     * SAVES MESSAGES TO JSON FILE
+     * Writes a fresh snapshot and then empties the journal it now contains
+     */
+    private static void saveMessagesToJSON() {
+        if (snapshotDamaged) {
+            System.out.println("⚠️ Not saving: " + MESSAGES_FILE + " failed to load and is kept as it is. "
+                + "Changes stay in " + JOURNAL_FILE + "; repair or remove the file and load it again.");
+            return;
+        }
+        if (!archiveColdMessages()) {
+            return; // Keep the journal so no change is lost
+        }
+        if (!Message.storeMessagesToJSON(messageStore, MESSAGES_FILE, false)) {
+            return; // Keep the journal so no change is lost
+        }
+        System.out.println("✅ All messages saved to " + MESSAGES_FILE);
         
-        for (Message msg : allMessages) {
-            int length = msg.getMessageText().length();
-            totalChars += length;
-            shortest = Math.min(shortest, length);
-            longest = Math.max(longest, length);
+        try {
+            existenceFilter.save(Path.of(BLOOM_FILE), Path.of(MESSAGES_FILE));
+        } catch (IOException e) {
+            System.out.println("⚠️ Could not save message Bloom filter: " + e.getMessage());
         }
         
-        double avgLength = allMessages.isEmpty() ? 0 : (double) totalChars / allMessages.size();
-        System.out.println("Shortest message: " + shortest + " characters");
-        System.out.println("Longest message: " + longest + " characters");
-        System.out.println("Average message length: " + String.format("%.1f", avgLength) + " characters");
+        if (journal != null) {
+            try {
+                journal.reset();
+            } catch (IOException e) {
+                System.out.println("❌ Error clearing message journal: " + e.getMessage());
+            }
+        }
     }
     
     /**
-     * SAVES MESSAGES TO JSON FILE
+     * MOVES COLD MESSAGES INTO THE ARCHIVE
+     * Archives every message in an ARCHIVE_STATUSES status except the newest
+     * ARCHIVE_KEEP_RECENT, saves the archive, and only then takes them out of the
+     * store, so a crash before the next snapshot leaves them in both files
+     * 
+     * @return boolean - false if the archive could not be saved (nothing is moved)
      */
-    private static void saveMessagesToJSON() {
-        Message.storeMessagesToJSON(allMessages, "messages.json");
-        System.out.println("✅ All messages saved to messages.json");
+    private static boolean archiveColdMessages() {
+        List<Message> cold = new ArrayList<>();
+        int position = 0;
+        int keepFrom = messageStore.size() - ARCHIVE_KEEP_RECENT;
+        for (Message message : messageStore) {
+            if (position++ >= keepFrom) {
+                break;
+            }
+            if (ARCHIVE_STATUSES.contains(message.getStatus())) {
+                cold.add(message);
+            }
+        }
+        if (archiveDamaged || (cold.isEmpty() && archive.isEmpty() && !Files.exists(Path.of(ARCHIVE_FILE)))) {
+            return true;
+        }
+        
+        archive.archive(cold);
+        try {
+            archive.save(Path.of(ARCHIVE_FILE));
+        } catch (IOException e) {
+            System.out.println("❌ Error saving message archive: " + e.getMessage());
+            for (Message message : cold) {
+                archive.remove(message.getMessageID(), message.getMessageHash());
+            }
+            return false;
+        }
+        messageStore.removeAll(cold);
+        if (!cold.isEmpty()) {
+            System.out.println("🗄️ Archived " + cold.size() + " old messages to " + ARCHIVE_FILE);
+        }
+        return true;
     }
     
     /**
-     * LOADS MESSAGES FROM JSON FILE
+     * APPENDS ONE CHANGE TO THE JOURNAL
+     * 
+     * @param message - the message that was added or deleted
+     * @param deleted - true for a delete record
      */
-    private static void loadMessagesFromJSON() {
-        List<Message> loadedMessages = Message.loadMessagesFromJSON("messages.json");
-        if (!loadedMessages.isEmpty()) {
-            // Clear existing messages
-            allMessages.clear();
-            sentMessages.clear();
-            storedMessages.clear();
-            disregardedMessages.clear();
-            messageHashes.clear();
-            messageIDs.clear();
-            
-            // Add loaded messages
-            allMessages.addAll(loadedMessages);
+    private static void journalMessage(Message message, boolean deleted) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (deleted) {
+                journal.appendDelete(message);
+            } else {
+                journal.appendAdd(message);
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Error writing message journal: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * MAKES JOURNALLED CHANGES DURABLE
+     * Syncs the journal and compacts it into a new snapshot once it grows large
+     */
+    private static void commitJournal() {
+        if (journal == null) {
+            saveMessagesToJSON(); // No journal available, fall back to a full save
+            return;
+        }
+        
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            System.out.println("❌ Error syncing message journal: " + e.getMessage());
+        }
+        
+        if (journal.getRecordCount() >= JOURNAL_COMPACT_AFTER) {
+            System.out.println("🗜️ Compacting " + journal.getRecordCount() + " journal records into " + MESSAGES_FILE);
+            saveMessagesToJSON();
+        }
+    }
+    
+    /**
+     * REPLAYS THE JOURNAL ON TOP OF THE LOADED SNAPSHOT
+     */
+    private static void replayJournal() {
+        try {
+            if (journal == null) {
+                journal = MessageJournal.open(JOURNAL_FILE, JOURNAL_SYNC_EVERY);
+            }
             
-            // Populate status-specific arrays
-            for (Message msg : loadedMessages) {
-                messageIDs.add(msg.getMessageID());
-                messageHashes.add(msg.getMessageHash());
+            int replayed = journal.replay(new MessageJournal.Listener() {
+                @Override
+                public void messageAdded(Message message) {
+                    // Records already in the snapshot or archive (compaction interrupted) are skipped
+                    if (messageStore.find(message.getMessageID(), message.getMessageHash()) == null
+                            && archive.find(message.getMessageID(), message.getMessageHash()) == null) {
+                        messageStore.add(message);
+                    }
+                }
                 
-                if ("Sent".equals(msg.getStatus())) {
-                    sentMessages.add(msg);
-                } else if ("Stored".equals(msg.getStatus())) {
-                    storedMessages.add(msg);
-                } else {
-                    disregardedMessages.add(msg);
+                @Override
+                public void messageDeleted(String messageID, String messageHash) {
+                    Message message = messageStore.find(messageID, messageHash);
+                    if (message != null) {
+                        messageStore.remove(message);
+                    } else {
+                        archive.remove(messageID, messageHash);
+                    }
                 }
+            });
+            
+            if (replayed > 0) {
+                System.out.println("✅ Replayed " + replayed + " journal records from " + JOURNAL_FILE);
+            }
+        } catch (IOException e) {
+            System.out.println("❌ Error opening message journal: " + e.getMessage());
+            journal = null;
+        }
+    }
+    
+    /**
+     * Syncs and closes the journal on exit
+     */
+    private static void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("❌ Error closing message journal: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+    
+    /**
+     * LOADS MESSAGES FROM JSON FILE
+     * Parses the file into lazy message views on LOAD_THREADS threads, validates
+     * every message in one batch, then fills the store
+     */
+    private static void loadMessagesFromJSON() {
+        loadArchive();
+        List<Message> loaded;
+        try {
+            loaded = Message.readLazyMessagesFromJSON(MESSAGES_FILE, LOAD_THREADS);
+            snapshotDamaged = false;
+        } catch (NoSuchFileException e) {
+            System.out.println("❌ Error loading messages from JSON: " + MESSAGES_FILE + " (No such file or directory)");
+            loaded = List.of();
+            snapshotDamaged = false;
+        } catch (IOException e) {
+            // Saving over it would keep only what loaded; leave it for repair and stop saving
+            System.out.println("❌ Error loading messages from JSON: " + e.getMessage());
+            System.out.println("⚠️ " + MESSAGES_FILE + " is left untouched and will not be overwritten until it loads");
+            loaded = List.of();
+            snapshotDamaged = true;
+        }
+        
+        // Only replace existing messages once the file actually has some
+        if (!loaded.isEmpty()) {
+            int invalid = MessageValidator.countInvalid(MessageValidator.validate(loaded));
+            if (invalid > 0) {
+                System.out.println("⚠️ " + invalid + " loaded messages have an invalid recipient or are over 250 characters");
             }
             
+            // A filter saved with this snapshot already holds its keys, so it skips the refill
+            boolean restored = restoreExistenceFilter();
+            if (restored) {
+                messageStore.removeListener(existenceFilter);
+            } else if (loaded.size() > existenceFilter.getCapacity()) {
+                existenceFilter.resize(2L * loaded.size());
+            }
+            messageStore.clear();
+            messageStore.addAll(loaded);
+            if (!archive.isEmpty()) {
+                // Archived just before a snapshot that was never written: the snapshot copy wins
+                for (Message message : loaded) {
+                    archive.remove(message.getMessageID(), message.getMessageHash());
+                }
+            }
+            if (restored) {
+                messageStore.addListener(existenceFilter);
+            }
             System.out.println("✅ Messages loaded successfully into application");
         }
+        
+        // Apply changes made after the snapshot was written
+        replayJournal();
+    }
+    
+    /**
+     * LOADS THE MESSAGE ARCHIVE, IF THERE IS ONE
+     */
+    private static void loadArchive() {
+        if (!Files.exists(Path.of(ARCHIVE_FILE))) {
+            return;
+        }
+        try {
+            archive.load(Path.of(ARCHIVE_FILE));
+            System.out.println("✅ Message archive loaded: " + archive.describe());
+        } catch (IOException e) {
+            System.out.println("❌ Error loading message archive, archiving is off until it is repaired: " + e.getMessage());
+            archiveDamaged = true;
+        }
+    }
+    
+    /**
+     * RESTORES THE BLOOM FILTER SAVED WITH THE SNAPSHOT
+     * 
+     * @return boolean - true if it matched the snapshot and was restored
+     */
+    private static boolean restoreExistenceFilter() {
+        if (!Files.exists(Path.of(BLOOM_FILE))) {
+            return false;
+        }
+        try {
+            existenceFilter.restore(Path.of(BLOOM_FILE), Path.of(MESSAGES_FILE));
+            return true;
+        } catch (IOException e) {
+            System.out.println("⚠️ Rebuilding message Bloom filter: " + e.getMessage());
+            return false;
+        }
     }
     
     /**
@@ -806,26 +1240,4 @@ private static void runUnitTests() {
     System.out.println("ALL UNIT TESTS COMPLETED");
     System.out.println("=".repeat(60));
 }
-    
-    // Helper methods for password analysis
-    private static boolean containsCapital(String str) {
-        for (char c : str.toCharArray()) {
-            if (Character.isUpperCase(c)) return true;
-        }
-        return false;
-    }
-    
-    private static boolean containsNumber(String str) {
-        for (char c : str.toCharArray()) {
-            if (Character.isDigit(c)) return true;
-        }
-        return false;
-    }
-    
-    private static boolean containsSpecialChar(String str) {
-        for (char c : str.toCharArray()) {
-            if (!Character.isLetterOrDigit(c)) return true;
-        }
-        return false;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,301 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * CONVERSATION INDEX
+ * Keeps, for every recipient, an append-only log of the messages sent to them in
+ * the order they were added, so "the last 20 messages to +27..." reads 20 entries
+ * instead of scanning or copying the whole history. Kept current as a MessageStore
+ * listener.
+ *
+ * Each log is a list of fixed-size chunks (the first one grows from 2 entries, so a
+ * recipient with one message costs little). Every message has a position in its
+ * log that never changes: a delete leaves a hole, and a chunk whose messages are
+ * all deleted is released. A Cursor walks a log in either direction from any
+ * position without copying it, and its position can be kept to fetch the next page.
+ *
+ * Like MessageStore it is not thread-safe: update and read it under the same lock
+ * as the store.
+ * @author Chumisa Haya
+ */
+public class ConversationIndex implements MessageStore.Listener {
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * One recipient's log
+     */
+    private static final class Conversation {
+        Message[][] chunks = {new Message[2]};
+        int length = 0; // positions handed out, including holes
+        int live = 0;   // messages not deleted
+
+        void append(Message message) {
+            int chunk = length >>> CHUNK_SHIFT;
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new Message[CHUNK_SIZE];
+            } else if (chunk == 0 && length == chunks[0].length) {
+                chunks[0] = Arrays.copyOf(chunks[0], Math.min(CHUNK_SIZE, length * 2));
+            }
+            chunks[chunk][length & CHUNK_MASK] = message;
+            length++;
+            live++;
+        }
+
+        Message get(int position) {
+            Message[] chunk = chunks[position >>> CHUNK_SHIFT];
+            return chunk == null ? null : chunk[position & CHUNK_MASK];
+        }
+
+        boolean remove(Message message) {
+            // Deletes are rare and usually recent, so search from the newest end
+            for (int position = length - 1; position >= 0; position--) {
+                Message[] chunk = chunks[position >>> CHUNK_SHIFT];
+                if (chunk == null) {
+                    position &= ~CHUNK_MASK; // skip the released chunk
+                    continue;
+                }
+                if (chunk[position & CHUNK_MASK] == message) {
+                    chunk[position & CHUNK_MASK] = null;
+                    live--;
+                    releaseIfEmpty(position >>> CHUNK_SHIFT);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Removes every message in the set with one pass over the log
+         *
+         * @return int - how many were found
+         */
+        int removeAll(Set<Message> messages) {
+            int removed = 0;
+            for (int chunk = 0; chunk < chunks.length && removed < messages.size(); chunk++) {
+                Message[] entries = chunks[chunk];
+                if (entries == null) {
+                    continue;
+                }
+                int before = removed;
+                for (int i = 0; i < entries.length; i++) {
+                    if (entries[i] != null && messages.contains(entries[i])) {
+                        entries[i] = null;
+                        removed++;
+                    }
+                }
+                if (removed > before) {
+                    releaseIfEmpty(chunk);
+                }
+            }
+            live -= removed;
+            return removed;
+        }
+
+        private void releaseIfEmpty(int chunk) {
+            // The chunk still being filled is kept, so appends never land in a hole
+            if (chunk == length >>> CHUNK_SHIFT) {
+                return;
+            }
+            for (Message message : chunks[chunk]) {
+                if (message != null) {
+                    return;
+                }
+            }
+            chunks[chunk] = null;
+        }
+    }
+
+    /**
+     * CONVERSATION CURSOR
+     * Walks one recipient's log from a position, newest first or oldest first,
+     * skipping deleted messages. getPosition() is where the next call would resume.
+     */
+    public static final class Cursor implements Iterator<Message> {
+        private final Conversation conversation;
+        private final boolean newestFirst;
+        private int position;
+        private Message next;
+
+        private Cursor(Conversation conversation, boolean newestFirst, int position) {
+            this.conversation = conversation;
+            this.newestFirst = newestFirst;
+            this.position = position;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            if (conversation == null) {
+                return;
+            }
+            while (next == null && (newestFirst ? position >= 0 : position < conversation.length)) {
+                if (conversation.chunks[position >>> CHUNK_SHIFT] == null) {
+                    // Released chunk: jump past all of it
+                    position = newestFirst ? (position & ~CHUNK_MASK) - 1 : (position | CHUNK_MASK) + 1;
+                    continue;
+                }
+                next = conversation.get(position);
+                position += newestFirst ? -1 : 1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Message next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Message message = next;
+            advance();
+            return message;
+        }
+
+        /**
+         * @return int - position to pass to newestFirst/oldestFirst to continue after
+         *         the messages returned so far
+         */
+        public int getPosition() {
+            if (next == null) {
+                return newestFirst ? -1 : (conversation == null ? 0 : conversation.length);
+            }
+            return newestFirst ? position + 1 : position - 1;
+        }
+
+        /**
+         * READS THE NEXT PAGE
+         *
+         * @param pageSize - most messages to return
+         * @return List<Message> - up to pageSize messages in cursor order
+         */
+        public List<Message> nextPage(int pageSize) {
+            List<Message> page = new ArrayList<>(Math.max(0, Math.min(pageSize, 64)));
+            while (page.size() < pageSize && hasNext()) {
+                page.add(next());
+            }
+            return page;
+        }
+    }
+
+    private final Map<String, Conversation> conversations = new HashMap<>();
+
+    @Override
+    public void messageAdded(Message message) {
+        conversations.computeIfAbsent(message.getRecipient(), recipient -> new Conversation()).append(message);
+    }
+
+    @Override
+    public void messageRemoved(Message message) {
+        String recipient = message.getRecipient();
+        Conversation conversation = conversations.get(recipient);
+        if (conversation != null && conversation.remove(message) && conversation.live == 0) {
+            conversations.remove(recipient);
+        }
+    }
+
+    @Override
+    public void messagesRemoved(Collection<? extends Message> messages) {
+        Map<String, Set<Message>> byRecipient = new HashMap<>();
+        for (Message message : messages) {
+            byRecipient.computeIfAbsent(message.getRecipient(),
+                recipient -> Collections.newSetFromMap(new IdentityHashMap<>())).add(message);
+        }
+        for (Map.Entry<String, Set<Message>> entry : byRecipient.entrySet()) {
+            Conversation conversation = conversations.get(entry.getKey());
+            if (conversation != null && conversation.removeAll(entry.getValue()) > 0 && conversation.live == 0) {
+                conversations.remove(entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void storeCleared() {
+        conversations.clear();
+    }
+
+    /**
+     * @param recipient - the recipient cell number
+     * @return int - messages to that recipient
+     */
+    public int count(String recipient) {
+        Conversation conversation = conversations.get(recipient);
+        return conversation == null ? 0 : conversation.live;
+    }
+
+    /**
+     * @return int - recipients with at least one message
+     */
+    public int recipientCount() {
+        return conversations.size();
+    }
+
+    /**
+     * WALKS A CONVERSATION FROM ITS NEWEST MESSAGE
+     *
+     * @param recipient - the recipient cell number
+     * @return Cursor - newest first
+     */
+    public Cursor newestFirst(String recipient) {
+        Conversation conversation = conversations.get(recipient);
+        return new Cursor(conversation, true, conversation == null ? -1 : conversation.length - 1);
+    }
+
+    /**
+     * WALKS A CONVERSATION BACKWARDS FROM A POSITION
+     *
+     * @param recipient - the recipient cell number
+     * @param position - a position from Cursor.getPosition(); that message comes first
+     * @return Cursor - newest first
+     */
+    public Cursor newestFirst(String recipient, int position) {
+        Conversation conversation = conversations.get(recipient);
+        return new Cursor(conversation, true, conversation == null ? -1 : Math.min(position, conversation.length - 1));
+    }
+
+    /**
+     * WALKS A CONVERSATION FORWARDS FROM A POSITION
+     *
+     * @param recipient - the recipient cell number
+     * @param position - 0 for the oldest message, or a position from Cursor.getPosition()
+     * @return Cursor - oldest first
+     */
+    public Cursor oldestFirst(String recipient, int position) {
+        return new Cursor(conversations.get(recipient), false, Math.max(0, position));
+    }
+
+    /**
+     * GETS THE MOST RECENT MESSAGES TO A RECIPIENT
+     *
+     * @param recipient - the recipient cell number
+     * @param count - how many messages to return at most
+     * @return List<Message> - the newest messages, oldest first
+     */
+    public List<Message> lastMessages(String recipient, int count) {
+        List<Message> recent = newestFirst(recipient).nextPage(count);
+        Collections.reverse(recent);
+        return recent;
+    }
+}
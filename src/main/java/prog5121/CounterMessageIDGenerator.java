@@ -0,0 +1,44 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * MONOTONIC COUNTER MESSAGE ID GENERATOR
+ * Hands out consecutive IDs from one shared counter, one increment per ID, so a
+ * connection that sends a single message uses a single ID. IDs already in use (for
+ * example ones written after the highest ID seen at start-up) are skipped.
+ * @author Chumisa Haya
+ */
+public class CounterMessageIDGenerator implements MessageIDGenerator {
+    private final AtomicLong nextID;
+    private final LongPredicate inUse;
+
+    /**
+     * @param firstID - the first ID to hand out (at least MIN_ID)
+     * @param inUse - returns true for IDs that already exist (must be thread-safe if shared)
+     */
+    public CounterMessageIDGenerator(long firstID, LongPredicate inUse) {
+        if (firstID < MIN_ID || firstID > MAX_ID) {
+            throw new IllegalArgumentException("First ID must have 10 digits: " + firstID);
+        }
+        this.nextID = new AtomicLong(firstID);
+        this.inUse = inUse;
+    }
+
+    @Override
+    public long nextID() {
+        long id;
+        do {
+            id = nextID.getAndIncrement();
+            if (id > MAX_ID) {
+                throw new IllegalStateException("All 10-digit message IDs have been used");
+            }
+        } while (inUse.test(id));
+        return id;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * DIAGNOSTIC LOG
+ * Leveled, asynchronous replacement for the System.out.println tracing in the
+ * validation methods. A call below the current level returns after one comparison.
+ * An enabled call stores the template and its arguments in a ring buffer; a single
+ * background thread formats the "{}" placeholders and writes whole batches to stdout,
+ * so callers never wait on the stdout lock. Strings, numbers, booleans and enums are
+ * kept as they are; any other argument is turned into a String when it is logged, so
+ * later changes to it cannot show up in the output.
+ *
+ * Every logging method checks the level itself, so callers just call it; there is no
+ * need to wrap calls in isEnabled(). An int argument has its own overloads so it is
+ * boxed only once the level check passes; booleans need none, since autoboxing hands
+ * back the two cached Boolean constants.
+ *
+ * The level comes from -Dchatapp.log.level (TRACE, DEBUG, INFO, WARN, ERROR, OFF) and
+ * defaults to INFO, which hides the per-field validation traces.
+ * @author Chumisa Haya
+ */
+public final class DiagnosticLog {
+
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final int CAPACITY = 8192; // power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private static volatile Level threshold = parseLevel(System.getProperty("chatapp.log.level", "INFO"));
+
+    // Bounded multi-producer ring: a slot is free for position p when its sequence is p,
+    // and holds a published entry for the writer when its sequence is p + 1
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final Level[] levels = new Level[CAPACITY];
+    private static final String[] templates = new String[CAPACITY];
+    private static final Object[][] arguments = new Object[CAPACITY][3];
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static volatile long head = 0;
+    private static volatile Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    private DiagnosticLog() {
+    }
+
+    /**
+     * @param level - the level to check
+     * @return boolean - true if messages at this level are written
+     */
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold.ordinal();
+    }
+
+    /**
+     * @param level - the new minimum level to write
+     */
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    public static Level getLevel() {
+        return threshold;
+    }
+
+    public static void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, message, null, null, null);
+        }
+    }
+
+    public static void debug(String template, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, template, arg, null, null);
+        }
+    }
+
+    public static void debug(String template, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, template, arg1, arg2, null);
+        }
+    }
+
+    public static void debug(String template, int arg) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, template, arg, null, null);
+        }
+    }
+
+    public static void debug(String template, int arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, template, arg1, arg2, null);
+        }
+    }
+
+    public static void debug(String template, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, template, arg1, arg2, arg3);
+        }
+    }
+
+    public static void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, message, null, null, null);
+        }
+    }
+
+    public static void info(String template, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, template, arg, null, null);
+        }
+    }
+
+    public static void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            enqueue(Level.WARN, message, null, null, null);
+        }
+    }
+
+    public static void warn(String template, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            enqueue(Level.WARN, template, arg, null, null);
+        }
+    }
+
+    /**
+     * WAITS FOR THE WRITER
+     * Blocks until every message logged so far has been written
+     */
+    public static void flush() {
+        long target = tail.get();
+        while (head < target && writer != null && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return long - messages discarded because the ring was full
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private static void enqueue(Level level, String template, Object arg1, Object arg2, Object arg3) {
+        ensureWriter();
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & MASK);
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (available < 0) {
+                // Ring is full: drop rather than make the caller wait on the console
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+
+        levels[index] = level;
+        templates[index] = template;
+        Object[] args = arguments[index];
+        args[0] = snapshot(arg1);
+        args[1] = snapshot(arg2);
+        args[2] = snapshot(arg3);
+        sequences.set(index, position + 1); // publish
+    }
+
+    /**
+     * @param arg - a logging argument
+     * @return Object - the argument if it cannot change, otherwise its text as of now
+     */
+    private static Object snapshot(Object arg) {
+        if (arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Long
+                || arg instanceof Boolean || arg instanceof Character || arg instanceof Enum) {
+            return arg;
+        }
+        return String.valueOf(arg);
+    }
+
+    private static synchronized void ensureWriterSlow() {
+        if (writer == null) {
+            Thread thread = new Thread(DiagnosticLog::drainLoop, "diagnostic-log-writer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(DiagnosticLog::flush));
+            writer = thread;
+        }
+    }
+
+    private static void ensureWriter() {
+        if (writer == null) {
+            ensureWriterSlow();
+        }
+    }
+
+    /**
+     * Background loop: formats and writes every published entry in order
+     */
+    private static void drainLoop() {
+        StringBuilder batch = new StringBuilder(4096);
+        long reportedDrops = 0;
+        while (true) {
+            long position = head;
+            int written = 0;
+            while (written < CAPACITY) {
+                int index = (int) (position & MASK);
+                if (sequences.get(index) != position + 1) {
+                    break;
+                }
+
+                format(batch, levels[index], templates[index], arguments[index]);
+                Object[] args = arguments[index];
+                args[0] = null;
+                args[1] = null;
+                args[2] = null;
+                templates[index] = null;
+                sequences.set(index, position + CAPACITY); // free the slot for the next lap
+
+                position++;
+                written++;
+            }
+
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                batch.append("[WARN] ").append(drops - reportedDrops).append(" diagnostic messages dropped\n");
+                reportedDrops = drops;
+            }
+
+            if (batch.length() > 0) {
+                PrintStream out = System.out;
+                out.print(batch);
+                out.flush();
+                batch.setLength(0);
+            }
+            head = position;
+
+            if (written == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private static void format(StringBuilder out, Level level, String template, Object[] args) {
+        if (level != Level.INFO) {
+            out.append('[').append(level).append("] ");
+        }
+        int argIndex = 0;
+        int start = 0;
+        int marker;
+        while ((marker = template.indexOf("{}", start)) >= 0) {
+            out.append(template, start, marker);
+            out.append(argIndex < args.length ? args[argIndex++] : "{}");
+            start = marker + 2;
+        }
+        out.append(template, start, template.length()).append('\n');
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GROUP COMMITTER
+ * Makes messages from many concurrent senders durable in shared batches. Senders put
+ * their message on a bounded queue and get a future; one writer thread takes
+ * everything that arrives within maxDelayMillis of the first message (or up to
+ * maxBatch messages), appends it to the journal in one write and one fsync, then
+ * completes every future in the batch. Durable throughput therefore grows with the
+ * batch size instead of being capped at one fsync per message.
+ *
+ * When the queue is full, submit() waits for space, which slows producers to the
+ * rate the disk can sustain. The committer must be the journal's only writer while
+ * it is open.
+ * @author Chumisa Haya
+ */
+public class GroupCommitter implements AutoCloseable {
+
+    /**
+     * A message waiting to be written, with the future its sender is waiting on
+     */
+    private static final class Pending {
+        final Message message;
+        final CompletableFuture<Message> durable = new CompletableFuture<>();
+
+        Pending(Message message) {
+            this.message = message;
+        }
+    }
+
+    // Queued by close() to tell the writer to finish
+    private static final Pending STOP = new Pending(null);
+
+    private final MessageJournal journal;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+
+    /**
+     * @param journal - the journal to append to
+     * @param queueCapacity - messages that may wait for the writer before senders block
+     * @param maxBatch - most messages written per fsync
+     * @param maxDelayMillis - longest a batch stays open after its first message
+     */
+    public GroupCommitter(MessageJournal journal, int queueCapacity, int maxBatch, long maxDelayMillis) {
+        if (queueCapacity < 1 || maxBatch < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive, delay not negative");
+        }
+        this.journal = journal;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.writer = new Thread(this::writeLoop, "group-commit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * QUEUES A MESSAGE FOR THE NEXT BATCH
+     * Waits while the queue is full
+     *
+     * @param message - the message to make durable
+     * @return CompletableFuture<Message> - completes with the message once it is on disk,
+     *         or exceptionally if the batch could not be written
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        Pending pending = new Pending(message);
+        if (closed) {
+            pending.durable.completeExceptionally(new IOException("Group committer is closed"));
+            return pending.durable;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.durable.completeExceptionally(e);
+            return pending.durable;
+        }
+        // close() may have drained the queue between the check above and the put. If the
+        // message is still queued nobody will take it, so fail it here; if it is gone, the
+        // writer or close() has it and will complete the future.
+        if (closed && queue.remove(pending)) {
+            pending.durable.completeExceptionally(new IOException("Group committer is closed"));
+        }
+        return pending.durable;
+    }
+
+    /**
+     * Writer thread: collects a batch, writes and syncs it, completes its futures
+     */
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        List<Message> messages = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Pending first = queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                batch.add(first);
+
+                // Keep the batch open until it is full or its time is up
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    Pending next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+
+            if (!batch.isEmpty()) {
+                commit(batch, messages);
+            }
+        }
+
+        // Anything submitted while closing is written in one last batch
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.remove(STOP);
+        if (!rest.isEmpty()) {
+            commit(rest, messages);
+        }
+    }
+
+    private void commit(List<Pending> batch, List<Message> messages) {
+        messages.clear();
+        for (Pending pending : batch) {
+            messages.add(pending.message);
+        }
+        try {
+            journal.appendAll(messages);
+            batches.incrementAndGet();
+            committed.addAndGet(batch.size());
+            for (Pending pending : batch) {
+                pending.durable.complete(pending.message);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Pending pending : batch) {
+                pending.durable.completeExceptionally(e);
+            }
+        }
+        batch.clear();
+    }
+
+    public long getBatchCount() { return batches.get(); }
+    public long getCommittedCount() { return committed.get(); }
+
+    /**
+     * @return double - average messages per fsync so far
+     */
+    public double getAverageBatchSize() {
+        long batchCount = batches.get();
+        return batchCount == 0 ? 0.0 : (double) committed.get() / batchCount;
+    }
+
+    /**
+     * STOPS THE COMMITTER
+     * Writes everything already queued, then stops the writer thread
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(STOP);
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+
+        // A sender that raced with close() must not wait forever
+        List<Pending> late = new ArrayList<>();
+        queue.drainTo(late);
+        for (Pending pending : late) {
+            if (pending != STOP) {
+                pending.durable.completeExceptionally(new IOException("Group committer is closed"));
+            }
+        }
+    }
+}
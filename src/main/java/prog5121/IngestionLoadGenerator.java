@@ -0,0 +1,175 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * INGESTION LOAD GENERATOR
+ * Opens many concurrent client connections to an IngestionServer on localhost, each
+ * on a virtual thread. Every client connects first and waits until all of them are
+ * connected, then sends its messages one request at a time. Reports throughput and
+ * latency percentiles.
+ *
+ * Usage: java prog5121.IngestionLoadGenerator [clients] [messagesPerClient] [port]
+ * Without a port an in-process server with a counting sink is started, so the
+ * harness runs on its own. Each connection needs a file descriptor on both ends;
+ * raise "ulimit -n" above twice the client count when the server is in-process.
+ * @author Chumisa Haya
+ */
+public class IngestionLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int messagesPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        IngestionServer server = null;
+        int port;
+        AtomicLong sunk = new AtomicLong();
+        if (args.length > 2) {
+            port = Integer.parseInt(args[2]);
+        } else {
+            server = IngestionServer.start(0, message -> sunk.incrementAndGet());
+            port = server.getPort();
+        }
+
+        System.out.println("Driving " + clients + " clients x " + messagesPerClient + " messages against port " + port);
+        String report = run(port, clients, messagesPerClient);
+        System.out.println(report);
+
+        if (server != null) {
+            System.out.println("Server accepted " + server.getAcceptedMessages() + ", rejected "
+                + server.getRejectedMessages() + ", sink received " + sunk.get());
+            server.close();
+        }
+    }
+
+    /**
+     * RUNS ONE LOAD TEST
+     *
+     * @param port - loopback port of the server
+     * @param clients - concurrent connections
+     * @param messagesPerClient - SEND requests per connection
+     * @return String - throughput and latency summary
+     * @throws InterruptedException - if interrupted while waiting for clients
+     */
+    public static String run(int port, int clients, int messagesPerClient) throws InterruptedException {
+        CountDownLatch connected = new CountDownLatch(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failedClients = new AtomicInteger();
+        AtomicInteger peakConnected = new AtomicInteger();
+        AtomicInteger openNow = new AtomicInteger();
+        List<long[]> latencies = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            latencies.add(new long[messagesPerClient]);
+        }
+
+        long startNanos;
+        long endNanos;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                long[] clientLatencies = latencies.get(c);
+                executor.execute(() -> {
+                    boolean counted = false;
+                    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                        socket.setTcpNoDelay(true);
+                        peakConnected.accumulateAndGet(openNow.incrementAndGet(), Math::max);
+                        connected.countDown();
+                        counted = true;
+                        start.await();
+                        runClient(socket, clientLatencies);
+                    } catch (IOException | InterruptedException e) {
+                        failedClients.incrementAndGet();
+                        Arrays.fill(clientLatencies, -1);
+                    } finally {
+                        openNow.decrementAndGet();
+                        if (!counted) {
+                            connected.countDown();
+                        }
+                    }
+                });
+            }
+            connected.await();
+            startNanos = System.nanoTime();
+            start.countDown();
+        } // close() waits for every client to finish
+        endNanos = System.nanoTime();
+
+        return summarize(latencies, clients - failedClients.get(), failedClients.get(),
+            peakConnected.get(), endNanos - startNanos);
+    }
+
+    private static void runClient(Socket socket, long[] latencies) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < latencies.length; i++) {
+            String recipient = "+2783" + (1_000_000 + random.nextInt(9_000_000));
+            long sent = System.nanoTime();
+            out.write("SEND " + recipient + " Load test message " + i + " from the ingestion harness\n");
+            out.flush();
+            String response = in.readLine();
+            if (response == null || !response.startsWith("OK ")) {
+                throw new IOException("Unexpected response: " + response);
+            }
+            latencies[i] = System.nanoTime() - sent;
+        }
+        out.write("QUIT\n");
+        out.flush();
+        in.readLine();
+    }
+
+    private static String summarize(List<long[]> latencies, int okClients, int failedClients,
+                                    int peakConnected, long elapsedNanos) {
+        int total = 0;
+        for (long[] clientLatencies : latencies) {
+            if (clientLatencies.length > 0 && clientLatencies[0] >= 0) {
+                total += clientLatencies.length;
+            }
+        }
+        long[] all = new long[total];
+        int n = 0;
+        for (long[] clientLatencies : latencies) {
+            if (clientLatencies.length > 0 && clientLatencies[0] >= 0) {
+                System.arraycopy(clientLatencies, 0, all, n, clientLatencies.length);
+                n += clientLatencies.length;
+            }
+        }
+        Arrays.sort(all);
+
+        double seconds = elapsedNanos / 1e9;
+        return String.format("Clients: %d ok, %d failed, %d connected at once%n"
+                + "Messages: %,d in %.2f s = %,.0f msg/s%n"
+                + "Latency ms: p50 %.2f | p99 %.2f | p99.9 %.2f | max %.2f",
+            okClients, failedClients, peakConnected, total, seconds, total / Math.max(seconds, 1e-9),
+            percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999),
+            all.length == 0 ? 0.0 : all[all.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MESSAGE INGESTION SERVER
+ * Accepts messages over TCP on the loopback interface, one line per request, and
+ * serves every connection on its own virtual thread, so thousands of mostly idle
+ * clients cost a few KB each instead of a platform thread each.
+ *
+ * Protocol (UTF-8, newline terminated):
+ *   SEND|STORE|DISREGARD recipient text  ->  OK messageID messageHash
+ *                                        ->  ERR reason
+ *   PING                                 ->  PONG
+ *   QUIT                                 ->  BYE (then the server closes the connection)
+ *
+ * A line longer than MAX_LINE_CHARS is answered with ERR and the connection is
+ * closed, so a client that never sends a newline cannot fill the heap.
+ *
+ * Each message gets the same checks, ID and hash as one typed into the console; the
+ * hash's message number counts messages on that connection, as sendMessages counts
+ * them per batch. Accepted messages go to the MessageSink, which may be called from
+ * many threads at once.
+ * @author Chumisa Haya
+ */
+public class IngestionServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 5121;
+    private static final int ACCEPT_BACKLOG = 4096;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+    // Far above the 250-character text plus operation and recipient
+    static final int MAX_LINE_CHARS = 1024;
+
+    /**
+     * Receives every accepted message; must be thread-safe
+     */
+    public interface MessageSink {
+        void accept(Message message) throws IOException;
+    }
+
+    private final ServerSocket serverSocket;
+    private final MessageSink sink;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread acceptor;
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicLong totalConnections = new AtomicLong();
+    private final AtomicLong acceptedMessages = new AtomicLong();
+    private final AtomicLong rejectedMessages = new AtomicLong();
+
+    private IngestionServer(ServerSocket serverSocket, MessageSink sink) {
+        this.serverSocket = serverSocket;
+        this.sink = sink;
+        this.acceptor = Thread.ofVirtual().name("ingestion-acceptor").unstarted(this::acceptLoop);
+    }
+
+    /**
+     * STARTS THE SERVER
+     *
+     * @param port - loopback port to listen on (0 picks a free port)
+     * @param sink - receives accepted messages
+     * @return IngestionServer - the running server
+     * @throws IOException - if the port cannot be bound
+     */
+    public static IngestionServer start(int port, MessageSink sink) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, ACCEPT_BACKLOG, InetAddress.getLoopbackAddress());
+        IngestionServer server = new IngestionServer(serverSocket, sink);
+        server.acceptor.start();
+        return server;
+    }
+
+    private void acceptLoop() {
+        long backoffMillis = 0;
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                backoffMillis = 0;
+                totalConnections.incrementAndGet();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                // A failure that keeps repeating (e.g. out of file descriptors) must not spin
+                backoffMillis = Math.min(MAX_ACCEPT_BACKOFF_MILLIS, Math.max(1, backoffMillis * 2));
+                System.out.println("❌ Ingestion server accept failed: " + e.getMessage()
+                    + " - retrying in " + backoffMillis + " ms");
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles one client until it sends QUIT or disconnects
+     */
+    private void serve(Socket socket) {
+        activeConnections.incrementAndGet();
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            int messageNum = 0;
+            StringBuilder request = new StringBuilder(128);
+            while (readLine(in, request)) {
+                if (request.length() > MAX_LINE_CHARS) {
+                    rejectedMessages.incrementAndGet();
+                    out.write("ERR Request longer than " + MAX_LINE_CHARS + " characters\n");
+                    break;
+                }
+                String line = request.toString();
+                if (line.equals("QUIT")) {
+                    out.write("BYE\n");
+                    break;
+                }
+                if (line.equals("PING")) {
+                    out.write("PONG\n");
+                } else {
+                    messageNum++;
+                    out.write(handleSafely(line, messageNum));
+                }
+                // Pipelined requests are answered in one write once the input runs dry
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Client went away; nothing to answer
+        } finally {
+            activeConnections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reads one line like BufferedReader.readLine, but stops after MAX_LINE_CHARS + 1
+     * characters, so an over-long line is seen without being held in full
+     *
+     * @param in - the client's input
+     * @param line - cleared, then filled with the line without its terminator
+     * @return boolean - false at end of input with nothing read
+     */
+    private static boolean readLine(BufferedReader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n') {
+                return true;
+            }
+            if (c == '\r') {
+                in.mark(1);
+                if (in.read() != '\n') {
+                    in.reset();
+                }
+                return true;
+            }
+            line.append((char) c);
+            if (line.length() > MAX_LINE_CHARS) {
+                return true;
+            }
+        }
+        return line.length() > 0;
+    }
+
+    /**
+     * Answers ERR instead of dropping the connection when a request fails unexpectedly
+     */
+    private String handleSafely(String line, int messageNum) {
+        try {
+            return handle(line, messageNum);
+        } catch (RuntimeException e) {
+            rejectedMessages.incrementAndGet();
+            return "ERR Internal error: " + e.getClass().getSimpleName() + "\n";
+        }
+    }
+
+    /**
+     * PROCESSES ONE REQUEST LINE
+     *
+     * @param line - "OPERATION recipient text"
+     * @param messageNum - the message's number on this connection
+     * @return String - the response line
+     */
+    private String handle(String line, int messageNum) {
+        int firstSpace = line.indexOf(' ');
+        int secondSpace = firstSpace < 0 ? -1 : line.indexOf(' ', firstSpace + 1);
+        if (secondSpace < 0) {
+            rejectedMessages.incrementAndGet();
+            return "ERR Expected: SEND|STORE|DISREGARD recipient text\n";
+        }
+
+        String status = statusFor(line.substring(0, firstSpace));
+        if (status == null) {
+            rejectedMessages.incrementAndGet();
+            return "ERR Unknown operation " + line.substring(0, firstSpace) + "\n";
+        }
+
+        String recipient = line.substring(firstSpace + 1, secondSpace);
+        String text = line.substring(secondSpace + 1);
+        byte code = MessageValidator.validate(recipient, text);
+        if (code != MessageValidator.VALID) {
+            rejectedMessages.incrementAndGet();
+            return "ERR " + MessageValidator.describe(code, text) + "\n";
+        }
+
+        Message message = new Message();
+        message.setRecipient(recipient);
+        message.setMessageText(text);
+        message.setStatus(status);
+        message.generateMessageID();
+        message.createMessageHash(messageNum);
+
+        try {
+            sink.accept(message);
+        } catch (IOException e) {
+            rejectedMessages.incrementAndGet();
+            return "ERR Message could not be saved: " + e.getMessage() + "\n";
+        }
+        acceptedMessages.incrementAndGet();
+        return "OK " + message.getMessageID() + " " + message.getMessageHash() + "\n";
+    }
+
+    private static String statusFor(String operation) {
+        switch (operation) {
+            case "SEND":
+                return "Sent";
+            case "STORE":
+                return "Stored";
+            case "DISREGARD":
+                return "Disregarded";
+            default:
+                return null;
+        }
+    }
+
+    public int getPort() { return serverSocket.getLocalPort(); }
+    public int getActiveConnections() { return activeConnections.get(); }
+    public long getTotalConnections() { return totalConnections.get(); }
+    public long getAcceptedMessages() { return acceptedMessages.get(); }
+    public long getRejectedMessages() { return rejectedMessages.get(); }
+
+    /**
+     * STOPS THE SERVER
+     * Stops accepting, then waits briefly for open connections to finish
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdown();
+        try {
+            if (!connections.awaitTermination(5, TimeUnit.SECONDS)) {
+                connections.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            connections.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * LAZY MESSAGE VIEW
+ * A Message whose fields stay encoded in a shared MessageRecords source (a
+ * MessageArena filled from JSON, or a mapped MessageSegment) until they are read.
+ * Each view costs one small object instead of five Strings, and the text length,
+ * status and preview are answered without decoding the whole text.
+ *
+ * Decoded fields are not kept: caching them would rebuild the Strings the view is
+ * meant to avoid. A field set through a setter replaces the stored one for good.
+ * @author Chumisa Haya
+ */
+public class LazyMessage extends Message {
+    // Bits of the fields replaced through a setter
+    private static final byte REPLACED_ID = 1;
+    private static final byte REPLACED_HASH = 2;
+    private static final byte REPLACED_RECIPIENT = 4;
+    private static final byte REPLACED_TEXT = 8;
+    private static final byte REPLACED_STATUS = 16;
+
+    private final MessageRecords records;
+    private final long record;
+    private byte replaced = 0;
+
+    /**
+     * @param records - the source holding the encoded message
+     * @param record - which record of the source this view shows
+     */
+    LazyMessage(MessageRecords records, long record) {
+        this.records = records;
+        this.record = record;
+    }
+
+    @Override
+    public String getMessageID() {
+        return (replaced & REPLACED_ID) != 0 ? super.getMessageID() : records.field(record, MessageRecords.ID);
+    }
+
+    @Override
+    public String getMessageHash() {
+        return (replaced & REPLACED_HASH) != 0 ? super.getMessageHash() : records.field(record, MessageRecords.HASH);
+    }
+
+    @Override
+    public String getRecipient() {
+        return (replaced & REPLACED_RECIPIENT) != 0 ? super.getRecipient() : records.field(record, MessageRecords.RECIPIENT);
+    }
+
+    @Override
+    public String getMessageText() {
+        return (replaced & REPLACED_TEXT) != 0 ? super.getMessageText() : records.field(record, MessageRecords.TEXT);
+    }
+
+    @Override
+    public String getStatus() {
+        return (replaced & REPLACED_STATUS) != 0 ? super.getStatus() : records.status(record);
+    }
+
+    @Override
+    public int getMessageTextLength() {
+        return (replaced & REPLACED_TEXT) != 0 ? super.getMessageTextLength() : records.textLength(record);
+    }
+
+    @Override
+    public String getPreview(int maxChars) {
+        return (replaced & REPLACED_TEXT) != 0 ? super.getPreview(maxChars) : records.preview(record, maxChars);
+    }
+
+    @Override
+    public void setMessageID(String messageID) {
+        super.setMessageID(messageID);
+        replaced |= REPLACED_ID;
+    }
+
+    @Override
+    public void setMessageHash(String messageHash) {
+        super.setMessageHash(messageHash);
+        replaced |= REPLACED_HASH;
+    }
+
+    @Override
+    public void setRecipient(String recipient) {
+        super.setRecipient(recipient);
+        replaced |= REPLACED_RECIPIENT;
+    }
+
+    @Override
+    public void setMessageText(String messageText) {
+        super.setMessageText(messageText);
+        replaced |= REPLACED_TEXT;
+    }
+
+    @Override
+    public void setStatus(String status) {
+        super.setStatus(status);
+        replaced |= REPLACED_STATUS;
+    }
+
+    /**
+     * DECODES A PREVIEW FROM UTF-8
+     * Walks the encoded text only as far as the preview needs
+     *
+     * @param utf8 - bytes holding the text
+     * @param offset - where the text starts
+     * @param length - encoded length of the text (or of a prefix covering maxChars)
+     * @param textChars - length of the whole text in chars
+     * @param maxChars - most characters to show
+     * @return String - as Message.getPreview(maxChars)
+     */
+    static String preview(byte[] utf8, int offset, int length, int textChars, int maxChars) {
+        if (textChars <= maxChars) {
+            return new String(utf8, offset, length, StandardCharsets.UTF_8);
+        }
+        int end = offset;
+        int limit = offset + length;
+        int chars = 0;
+        while (end < limit) {
+            int lead = utf8[end] & 0xFF;
+            int size = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+            int units = size == 4 ? 2 : 1; // four-byte sequences are surrogate pairs
+            if (chars + units > maxChars) {
+                break;
+            }
+            chars += units;
+            end += size;
+        }
+        return new String(utf8, offset, end - offset, StandardCharsets.UTF_8) + "...";
+    }
+}
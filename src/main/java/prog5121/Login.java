@@ -4,6 +4,9 @@
  */
 package prog5121;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * @author Chumisa Haya.
  * ChatApp APPLICATION - REGISTRATION AND LOGIN.
@@ -19,20 +22,23 @@ package prog5121;
 
 
 public class Login {
-    // User information storage, these strings will store the registered user's information.
-    private String username;
-    private String password;
-    private String cellPhoneNumber;
-    private String firstName;
-    private String lastName;
+    // Every registered account, shared by all threads using this registry
+    private final UserRegistry registry;
+    
+    // The user who last registered or logged in through this Login (null until then)
+    private UserAccount currentUser;
     
-    // Default constructor - initializes empty user data
+    // Default constructor - starts with an empty registry
     public Login() {
-        this.username = "";
-        this.password = "";
-        this.cellPhoneNumber = "";
-        this.firstName = "";
-        this.lastName = "";
+        this(new UserRegistry());
+    }
+    
+    /**
+     * @param registry - the accounts to register into and authenticate against
+     */
+    public Login(UserRegistry registry) {
+        this.registry = registry;
+        this.currentUser = null;
         System.out.println("Login system initialized - ready for user registration");
     }
     
@@ -46,19 +52,17 @@ public class Login {
      * @return boolean - true if valid, false if invalid
      */
     public boolean checkUserName(String username) {
-        System.out.println("Validating username: " + username);
-        
         // Check if username contains underscore
         boolean hasUnderscore = username.contains("_");
-        System.out.println("Has underscore: " + hasUnderscore);
         
         // Check if username length is 5 characters or less
         boolean validLength = username.length() <= 5;
-        System.out.println("Valid length (<=5 chars): " + validLength);
         
         // Return true only if both conditions are met
         boolean isValid = hasUnderscore && validLength;
-        System.out.println("Username validation result: " + isValid);
+        DiagnosticLog.debug("Validating username: {} | Has underscore: {} | Valid length (<=5 chars): {}",
+            username, hasUnderscore, validLength);
+        DiagnosticLog.debug("Username validation result: {}", isValid);
         
         return isValid;
     }
@@ -74,11 +78,8 @@ public class Login {
      * boolean will return true if valid, false if invalid
      */
     public boolean checkPasswordComplexity(String password) {
-        System.out.println("Validating password complexity...");
-        
         // Check 1: Minimum length of 8 characters
         boolean hasMinLength = password.length() >= 8;
-        System.out.println("Minimum 8 characters: " + hasMinLength);
         
         // Initialize flags for complexity requirements
         boolean hasCapital = false;
@@ -103,13 +104,11 @@ public class Login {
             }
         }
         
-        System.out.println("Contains capital letter: " + hasCapital);
-        System.out.println("Contains number: " + hasNumber);
-        System.out.println("Contains special character: " + hasSpecial);
-        
         // All requirements must be met
         boolean isValid = hasMinLength && hasCapital && hasNumber && hasSpecial;
-        System.out.println("Password validation result: " + isValid);
+        DiagnosticLog.debug("Validating password complexity... Minimum 8 characters: {} | Contains capital letter: {} | Contains number: {}",
+            hasMinLength, hasCapital, hasNumber);
+        DiagnosticLog.debug("Contains special character: {} | Password validation result: {}", hasSpecial, isValid);
         
         return isValid;
     }
@@ -121,41 +120,16 @@ public class Login {
      * 2. Must be exactly 12 characters long (+27 + 9 digits = 12 chars)
      * 3. Must contain only numbers after +27
      * 
-     * This method uses basic string validation instead of regex
+     * The rule lives in MessageValidator.isValidCellNumber, which message recipients
+     * are checked with too
      * 
      * @param cellPhoneNumber - the phone number to validate
      * @return boolean - true if valid, false if invalid
      */
     public boolean checkCellPhoneNumber(String cellPhoneNumber) {
-        System.out.println("Validating cell phone number: " + cellPhoneNumber);
-        
-        // Check 1: Must start with +27
-        boolean startsWithPlus27 = cellPhoneNumber.startsWith("+27");
-        System.out.println("Starts with +27: " + startsWithPlus27);
-        
-        // Check 2: Total length must be 12 characters (+27 + 9 digits)
-        boolean validLength = cellPhoneNumber.length() == 12;
-        System.out.println("Valid length (12 chars): " + validLength);
-        
-        // Check 3: All characters after +27 must be digits
-        boolean allDigitsAfterCode = true;
-        if (startsWithPlus27 && validLength) {
-            // Get the part after +27 (should be 9 digits)
-            String numberPart = cellPhoneNumber.substring(3);
-            for (int i = 0; i < numberPart.length(); i++) {
-                if (!Character.isDigit(numberPart.charAt(i))) {
-                    allDigitsAfterCode = false;
-                    break;
-                }
-            }
-        } else {
-            allDigitsAfterCode = false;
-        }
-        System.out.println("All digits after +27: " + allDigitsAfterCode);
-        
-        // All conditions must be true
-        boolean isValid = startsWithPlus27 && validLength && allDigitsAfterCode;
-        System.out.println("Cell phone validation result: " + isValid);
+        // Must start with +27, be 12 characters long and have only digits after +27
+        boolean isValid = MessageValidator.isValidCellNumber(cellPhoneNumber);
+        DiagnosticLog.debug("Validating cell phone number: {} | Cell phone validation result: {}", cellPhoneNumber, isValid);
         
         return isValid;
     }
@@ -210,12 +184,31 @@ public class Login {
         resultMessage.append("Cell phone number successfully added.\n");
         System.out.println("Cell phone validation passed");
         
-        // All validations passed - store user data
-        this.username = username;
-        this.password = password;
-        this.cellPhoneNumber = cellPhoneNumber;
-        this.firstName = firstName;
-        this.lastName = lastName;
+        // All validations passed - add the account unless its username or number is in use.
+        // Check first so a taken name is refused without paying for a password hash;
+        // register() checks again atomically in case another user took it meanwhile.
+        UserAccount account = null;
+        UserRegistry.Result registration;
+        if (registry.containsUsername(username)) {
+            registration = UserRegistry.Result.USERNAME_TAKEN;
+        } else if (registry.containsCellPhoneNumber(cellPhoneNumber)) {
+            registration = UserRegistry.Result.CELL_NUMBER_TAKEN;
+        } else {
+            String passwordHash = registry.getPasswordHasher().hash(password);
+            account = new UserAccount(username, passwordHash, cellPhoneNumber, firstName, lastName);
+            registration = registry.register(account);
+        }
+        if (registration == UserRegistry.Result.USERNAME_TAKEN) {
+            String errorMsg = "Username is already taken, please choose a different username.";
+            System.out.println("REGISTRATION FAILED: " + errorMsg);
+            return errorMsg;
+        }
+        if (registration == UserRegistry.Result.CELL_NUMBER_TAKEN) {
+            String errorMsg = "Cell phone number is already registered to another account.";
+            System.out.println("REGISTRATION FAILED: " + errorMsg);
+            return errorMsg;
+        }
+        this.currentUser = account;
         
         resultMessage.append("User registered successfully!");
         System.out.println("=== USER REGISTRATION COMPLETED SUCCESSFULLY ===");
@@ -225,7 +218,8 @@ public class Login {
     
     /**
      * USER LOGIN METHOD
-     * Compares input credentials with stored registration data
+     * Looks the username up in the registry and verifies the password hash,
+     * waiting for the verification pool
      * 
      * @param inputUsername - username entered at login
      * @param inputPassword - password entered at login
@@ -234,17 +228,37 @@ public class Login {
     public boolean loginUser(String inputUsername, String inputPassword) {
         System.out.println("\n=== ATTEMPTING USER LOGIN ===");
         System.out.println("Input username: " + inputUsername);
-        System.out.println("Stored username: " + this.username);
-        System.out.println("Password match: " + this.password.equals(inputPassword));
         
-        // Check if username and password match stored values
-        boolean isAuthenticated = this.username.equals(inputUsername) && 
-                                this.password.equals(inputPassword);
+        boolean isAuthenticated;
+        try {
+            isAuthenticated = loginUserAsync(inputUsername, inputPassword).join();
+        } catch (CompletionException e) {
+            System.out.println("Login could not be verified: " + e.getCause().getMessage());
+            isAuthenticated = false;
+        }
         
         System.out.println("Login result: " + (isAuthenticated ? "SUCCESS" : "FAILED"));
         return isAuthenticated;
     }
     
+    /**
+     * ASYNCHRONOUS LOGIN METHOD
+     * Verifies the password on the registry's verification pool without blocking
+     * 
+     * @param inputUsername - username entered at login
+     * @param inputPassword - password entered at login
+     * @return CompletableFuture<Boolean> - completes with true if credentials match
+     */
+    public CompletableFuture<Boolean> loginUserAsync(String inputUsername, String inputPassword) {
+        return registry.authenticateAsync(inputUsername, inputPassword).thenApply(account -> {
+            if (account == null) {
+                return false;
+            }
+            this.currentUser = account;
+            return true;
+        });
+    }
+    
     /**
      * LOGIN STATUS MESSAGE METHOD
      * Returns appropriate message based on login success/failure
@@ -254,7 +268,7 @@ public class Login {
      */
     public String returnLoginStatus(boolean isLoggedIn) {
         if (isLoggedIn) {
-            String welcomeMsg = "Welcome " + firstName + "," + lastName + " It is great to see you again.";
+            String welcomeMsg = "Welcome " + getStoredFirstName() + "," + getStoredLastName() + " It is great to see you again.";
             System.out.println("Returning welcome message: " + welcomeMsg);
             return welcomeMsg;
         } else {
@@ -293,10 +307,11 @@ public class Login {
         System.out.println("=".repeat(50));
     }
     
-    // Getter methods for testing purposes
-    public String getStoredUsername() { return username; }
-    public String getStoredPassword() { return password; }
-    public String getStoredCellPhone() { return cellPhoneNumber; }
-    public String getStoredFirstName() { return firstName; }
-    public String getStoredLastName() { return lastName; }
+    // Getter methods for the current user; empty until someone registers or logs in
+    public String getStoredUsername() { return currentUser == null ? "" : currentUser.getUsername(); }
+    public String getStoredPasswordHash() { return currentUser == null ? "" : currentUser.getPasswordHash(); }
+    public String getStoredCellPhone() { return currentUser == null ? "" : currentUser.getCellPhoneNumber(); }
+    public String getStoredFirstName() { return currentUser == null ? "" : currentUser.getFirstName(); }
+    public String getStoredLastName() { return currentUser == null ? "" : currentUser.getLastName(); }
+    public UserRegistry getRegistry() { return registry; }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@
  */
 package prog5121;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * UNIT TESTS FOR LOGIN CLASS
  * Tests all validation methods and registration/login functionality
@@ -133,6 +135,86 @@ public class LoginTest {
         System.out.println("=".repeat(40));
     }
     
+    /**
+     * TEST: Several users register and each can log in
+     */
+    public void testRegistryMultipleUsers() {
+        System.out.println("Testing registration and login of several users:");
+        Login multiUser = new Login();
+        String first = multiUser.registerUser("ann_1", "Ch&&sec@ke99!", "+27831111111", "Ann", "Lee");
+        String second = multiUser.registerUser("ben_2", "Pa$$word12", "+27832222222", "Ben", "Moyo");
+        String sameName = multiUser.registerUser("ann_1", "Ch&&sec@ke99!", "+27833333333", "Ann", "Other");
+        String sameCell = multiUser.registerUser("cat_3", "Ch&&sec@ke99!", "+27832222222", "Cat", "Other");
+        
+        boolean success = first.contains("successfully") && second.contains("successfully")
+            && sameName.contains("already taken") && sameCell.contains("already registered")
+            && multiUser.loginUser("ann_1", "Ch&&sec@ke99!")
+            && multiUser.returnLoginStatus(true).contains("Ann,Lee")
+            && multiUser.loginUser("ben_2", "Pa$$word12")
+            && !multiUser.loginUser("ben_2", "Ch&&sec@ke99!")
+            && multiUser.getStoredUsername().equals("ben_2")
+            && multiUser.getRegistry().size() == 2
+            && multiUser.getRegistry().findByCellPhoneNumber("+27832222222").getUsername().equals("ben_2")
+            && !multiUser.getRegistry().containsCellPhoneNumber("+27833333333");
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Passwords are stored as salted hashes and verified asynchronously
+     */
+    public void testPasswordHashing() {
+        System.out.println("Testing salted password hashing:");
+        PasswordHasher hasher = new PasswordHasher(1000, 2, 8);
+        String first = hasher.hash("Ch&&sec@ke99!");
+        String second = hasher.hash("Ch&&sec@ke99!");
+        System.out.println("Stored hash: " + first);
+        
+        boolean success = !first.contains("Ch&&sec@ke99!") && !first.equals(second)
+            && PasswordHasher.iterationsOf(first) == 1000
+            && hasher.verify("Ch&&sec@ke99!", first)
+            && !hasher.verify("Ch&&sec@ke98!", first)
+            && !hasher.verify("Ch&&sec@ke99!", null)
+            && hasher.verifyAsync("Ch&&sec@ke99!", second).join()
+            && !hasher.verifyAsync("wrong", second).join();
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Session tokens expire and the least recently used is evicted
+     */
+    public void testSessionCache() {
+        System.out.println("Testing session token cache:");
+        long[] now = {0};
+        SessionManager sessions = new SessionManager(2, 10, TimeUnit.SECONDS, () -> now[0]);
+        String ann = sessions.createSession("ann_1");
+        String ben = sessions.createSession("ben_2");
+        
+        boolean success = "ann_1".equals(sessions.lookup(ann));   // ann is now most recently used
+        String cat = sessions.createSession("cat_3");               // evicts ben
+        success = success && sessions.lookup(ben) == null && "cat_3".equals(sessions.lookup(cat))
+            && sessions.getEvictions() == 1;
+        
+        now[0] = TimeUnit.SECONDS.toNanos(9);
+        success = success && "ann_1".equals(sessions.lookup(ann)); // renews ann's TTL
+        now[0] = TimeUnit.SECONDS.toNanos(15);
+        success = success && "ann_1".equals(sessions.lookup(ann)) && sessions.lookup(cat) == null
+            && sessions.getExpirations() == 1;
+        
+        // Peeking shows the session without renewing it or counting a hit
+        long hits = sessions.getHits();
+        now[0] = TimeUnit.SECONDS.toNanos(24);
+        success = success && "ann_1".equals(sessions.peek(ann)) && sessions.getHits() == hits;
+        now[0] = TimeUnit.SECONDS.toNanos(26);
+        success = success && sessions.peek(ann) == null;
+        success = success && sessions.invalidate(ann) && sessions.lookup(ann) == null
+            && !ann.equals(cat) && ann.length() >= 40;
+        System.out.println(sessions.describeStats());
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
     /**
      * RUN ALL LOGIN TESTS
      */
@@ -151,6 +233,9 @@ public class LoginTest {
         testRegisterUserInvalidUsername();
         testRegisterUserInvalidPassword();
         testRegisterUserInvalidCellPhone();
+        testRegistryMultipleUsers();
+        testPasswordHashing();
+        testSessionCache();
         
         System.out.println("=".repeat(60));
         System.out.println("LOGIN TESTS COMPLETED");
@@ -0,0 +1,206 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.Arrays;
+
+/**
+ * LONG -> SLOT INDEX
+ * Open-addressing hash map from primitive long keys (numeric message IDs) to int slot
+ * numbers. Keys and values live in two flat arrays with linear probing, so there is
+ * no boxing and no per-entry object; removal uses backward shifting instead of
+ * tombstones so probe chains stay short.
+ * @author Chumisa Haya
+ */
+public class LongSlotIndex {
+    public static final int NO_SLOT = -1;
+
+    private static final long EMPTY = Long.MIN_VALUE; // never a valid key
+    private static final float MAX_LOAD = 0.75f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+    private int resizeAt;
+
+    public LongSlotIndex() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize - number of keys to hold before the first resize
+     */
+    public LongSlotIndex(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * LOOKS UP A KEY
+     *
+     * @param key - the key to find
+     * @return int - its slot, or NO_SLOT if absent
+     */
+    public int get(long key) {
+        if (key == EMPTY) {
+            return NO_SLOT;
+        }
+        for (int i = indexFor(key); ; i = (i + 1) & mask) {
+            long current = keys[i];
+            if (current == key) {
+                return values[i];
+            }
+            if (current == EMPTY) {
+                return NO_SLOT;
+            }
+        }
+    }
+
+    /**
+     * @param key - the key to check
+     * @return boolean - true if the key is present
+     */
+    public boolean containsKey(long key) {
+        return get(key) != NO_SLOT;
+    }
+
+    /**
+     * MAPS A KEY TO A SLOT
+     *
+     * @param key - the key (any value except Long.MIN_VALUE)
+     * @param slot - the slot to store (must not be negative)
+     * @return int - the slot previously mapped to the key, or NO_SLOT
+     */
+    public int put(long key, int slot) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + key + " is reserved");
+        }
+        for (int i = indexFor(key); ; i = (i + 1) & mask) {
+            long current = keys[i];
+            if (current == key) {
+                int previous = values[i];
+                values[i] = slot;
+                return previous;
+            }
+            if (current == EMPTY) {
+                keys[i] = key;
+                values[i] = slot;
+                if (++size >= resizeAt) {
+                    rehash(keys.length * 2);
+                }
+                return NO_SLOT;
+            }
+        }
+    }
+
+    /**
+     * REMOVES A KEY
+     *
+     * @param key - the key to remove
+     * @return int - the slot it was mapped to, or NO_SLOT
+     */
+    public int remove(long key) {
+        if (key == EMPTY) {
+            return NO_SLOT;
+        }
+        int i = indexFor(key);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) {
+                return NO_SLOT;
+            }
+            i = (i + 1) & mask;
+        }
+        int removed = values[i];
+
+        // Shift later entries of the probe run back so lookups never stop early
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = indexFor(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return removed;
+    }
+
+    public int size() { return size; }
+
+    /**
+     * Removes every key, keeping the current table
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * @return long - approximate heap bytes used by this index
+     */
+    public long footprintBytes() {
+        // Object header and fields, plus the two arrays with their own headers
+        return 40 + (16 + 8L * keys.length) + (16 + 4L * values.length);
+    }
+
+    /**
+     * MEMORY FOOTPRINT COMPARISON
+     * Estimates the heap needed to hold n message IDs the old way (a List<String>
+     * of IDs, as ChatApp.messageIDs was) against this index, assuming a 64-bit JVM
+     * with compressed references
+     *
+     * @param messages - number of message IDs
+     * @return String - a short report of both estimates
+     */
+    public static String describeFootprint(int messages) {
+        // ArrayList slot (4) + String object (24) + byte[] of 10 Latin-1 digits (16 + 10, padded to 32)
+        long perStringID = 4 + 24 + 32;
+        long listBytes = 40 + 16 + (long) (messages * 1.5) * 4 + (long) messages * (perStringID - 4);
+
+        long indexBytes = new LongSlotIndex(messages).footprintBytes();
+
+        return String.format("%,d IDs: List<String> ~%,d bytes (%.1f/ID) | LongSlotIndex ~%,d bytes (%.1f/ID)",
+            messages, listBytes, (double) listBytes / Math.max(1, messages),
+            indexBytes, (double) indexBytes / Math.max(1, messages));
+    }
+
+    private int indexFor(long key) {
+        // Fibonacci hashing spreads sequential and random IDs evenly
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int j = indexFor(key);
+                while (keys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = key;
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 4) / MAX_LOAD) + 1;
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+}
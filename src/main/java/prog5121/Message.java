@@ -6,12 +6,12 @@ package prog5121;
 
 import java.util.Scanner;
 import javax.swing.JOptionPane;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -34,19 +34,23 @@ public class Message {
     // Message properties
     private String messageID;
     private String messageHash;
-    private String recipient;
+    private int recipientCode; // in RecipientDictionary.SHARED
+    private String otherRecipient; // only for RecipientDictionary.UNSHARED
     private String messageText;
-    private String status; // "Sent", "Stored", "Disregarded"
+    private byte statusCode; // MessageSegment status code: "Sent", "Stored", "Disregarded"
+    private String otherStatus; // only for STATUS_OTHER
     private static int totalMessages = 0;
     private static int sentMessagesCount = 0;
+    // Random IDs until the application plugs in a generator that knows existing IDs
+    private static volatile MessageIDGenerator idGenerator = new RandomMessageIDGenerator(id -> false);
     
     // Default constructor
     public Message() {
         this.messageID = "";
         this.messageHash = "";
-        this.recipient = "";
+        encodeRecipient("");
         this.messageText = "";
-        this.status = "";
+        this.statusCode = MessageSegment.STATUS_NONE;
     }
     
     /**
@@ -57,17 +61,13 @@ public class Message {
      * @return String - validation result message
      */
     public String checkMessageLength(String message) {
-        System.out.println("Validating message length...");
-        System.out.println("Message length: " + message.length() + " characters");
-        
-        if (message.length() <= 250) {
-            String successMsg = "Message ready to send.";
-            System.out.println("Message validation: SUCCESS - " + successMsg);
+        if (MessageValidator.isValidMessageLength(message)) {
+            String successMsg = MessageValidator.describe(MessageValidator.VALID, message);
+            DiagnosticLog.debug("Message length: {} characters | Message validation: SUCCESS - {}", message.length(), successMsg);
             return successMsg;
         } else {
-            int excessChars = message.length() - 250;
-            String errorMsg = "Message exceeds 250 characters by " + excessChars + ", please reduce size.";
-            System.out.println("Message validation: FAILED - " + errorMsg);
+            String errorMsg = MessageValidator.describe(MessageValidator.TEXT_TOO_LONG, message);
+            DiagnosticLog.debug("Message length: {} characters | Message validation: FAILED - {}", message.length(), errorMsg);
             return errorMsg;
         }
     }
@@ -81,31 +81,51 @@ public class Message {
      * @return String - validation result message
      */
     public String checkRecipientCell(String recipient, Login loginSystem) {
-        System.out.println("Validating recipient cell number: " + recipient);
-        
         if (loginSystem.checkCellPhoneNumber(recipient)) {
             String successMsg = "Cell phone number successfully captured.";
-            System.out.println("Recipient validation: SUCCESS - " + successMsg);
+            DiagnosticLog.debug("Validating recipient cell number: {} | Recipient validation: SUCCESS - {}", recipient, successMsg);
             return successMsg;
         } else {
-            String errorMsg = "Cell phone number is incorrectly formatted or does not contain an international code. Please correct the number and try again.";
-            System.out.println("Recipient validation: FAILED - " + errorMsg);
+            String errorMsg = MessageValidator.describe(MessageValidator.INVALID_RECIPIENT, null);
+            DiagnosticLog.debug("Validating recipient cell number: {} | Recipient validation: FAILED - {}", recipient, errorMsg);
             return errorMsg;
         }
     }
     
     /**
      * MESSAGE ID GENERATION METHOD
-     * Creates a unique 10-digit message ID
+     * Creates a unique 10-digit message ID using the configured MessageIDGenerator
      * 
      * @return String - generated message ID
      */
     public String generateMessageID() {
-        // Generate random 10-digit number
-        long randomID = (long) (Math.random() * 9000000000L) + 1000000000L;
-        this.messageID = String.valueOf(randomID);
-        System.out.println("Generated Message ID: " + this.messageID);
-        return this.messageID;
+        // Ask the configured generator for a 10-digit number
+        setMessageID(String.valueOf(idGenerator.nextID()));
+        DiagnosticLog.debug("Generated Message ID: {}", getMessageID());
+        return getMessageID();
+    }
+    
+    /**
+     * NUMERIC MESSAGE ID CONVERSION
+     * Turns a digits-only message ID into a long so it can be indexed without Strings
+     * 
+     * @param messageID - the message ID text
+     * @return long - the numeric ID, or -1 if the ID is not a plain number
+     */
+    public static long messageIDToLong(String messageID) {
+        int length = messageID.length();
+        if (length == 0 || length > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = messageID.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
     
     /**
@@ -116,25 +136,18 @@ public class Message {
      * @return String - generated message hash in uppercase
      */
     public String createMessageHash(int messageNum) {
-        if (this.messageID.isEmpty() || this.messageText.isEmpty()) {
-            System.out.println("Cannot create hash - missing message ID or text");
+        String id = getMessageID();
+        String text = getMessageText();
+        if (id.isEmpty() || text.isEmpty()) {
+            DiagnosticLog.warn("Cannot create hash - missing message ID or text");
             return "";
         }
         
-        // Get first 2 digits of message ID
-        String firstTwoDigits = this.messageID.substring(0, 2);
-        
-        // Get first and last words from message
-        String[] words = this.messageText.trim().split("\\s+");
-        String firstWord = words.length > 0 ? words[0] : "";
-        String lastWord = words.length > 1 ? words[words.length - 1] : firstWord;
+        // Create hash format: 00:0:FIRSTLAST in a single pass over the text
+        setMessageHash(MessageHasher.forCurrentThread().hash(id, messageNum, text));
         
-        // Create hash format: 00:0:FIRSTLAST
-        this.messageHash = firstTwoDigits + ":" + messageNum + ":" + firstWord + lastWord;
-        this.messageHash = this.messageHash.toUpperCase();
-        
-        System.out.println("Generated Message Hash: " + this.messageHash);
-        return this.messageHash;
+        DiagnosticLog.debug("Generated Message Hash: {}", getMessageHash());
+        return getMessageHash();
     }
     
     /**
@@ -161,25 +174,25 @@ public class Message {
         
         switch (choice) {
             case 1:
-                this.status = "Sent";
+                setStatus("Sent");
                 sentMessagesCount++;
                 totalMessages++;
                 System.out.println("Message status: SENT");
                 return "Message successfully sent.";
                 
             case 2:
-                this.status = "Stored";
+                setStatus("Stored");
                 totalMessages++;
                 System.out.println("Message status: STORED");
                 return "Message successfully stored.";
                 
             case 3:
-                this.status = "Disregarded";
+                setStatus("Disregarded");
                 System.out.println("Message status: DISREGARDED");
                 return "Press 0 to delete message.";
                 
             default:
-                this.status = "Disregarded";
+                setStatus("Disregarded");
                 System.out.println("Invalid choice. Message disregarded.");
                 return "Press 0 to delete message.";
         }
@@ -191,11 +204,11 @@ public class Message {
      */
     public void displayMessageDetails() {
         String details = "📋 MESSAGE DETAILS:\n" +
-                       "Message ID: " + this.messageID + "\n" +
-                       "Message Hash: " + this.messageHash + "\n" +
-                       "Recipient: " + this.recipient + "\n" +
-                       "Message: " + this.messageText + "\n" +
-                       "Status: " + this.status + "\n" +
+                       "Message ID: " + getMessageID() + "\n" +
+                       "Message Hash: " + getMessageHash() + "\n" +
+                       "Recipient: " + getRecipient() + "\n" +
+                       "Message: " + getMessageText() + "\n" +
+                       "Status: " + getStatus() + "\n" +
                        "Total Messages: " + totalMessages;
         
         JOptionPane.showMessageDialog(null, details, "Message Information", JOptionPane.INFORMATION_MESSAGE);
@@ -226,7 +239,7 @@ public class Message {
             System.out.println("❌ " + recipientValidation);
             return false;
         }
-        this.recipient = recipientInput;
+        encodeRecipient(recipientInput);
         
         // Get message text
         System.out.print("Enter your message (max 250 chars): ");
@@ -255,33 +268,34 @@ public class Message {
     
     /**
      * STORES MESSAGES TO JSON FILE
-     * Uses AI-assisted JSON implementation for message storage
+     * Streams every message into the file with 4-space indentation
      * 
      * @param messages - list of messages to store
      * @param filename - the JSON file name
+     * @return boolean - true if the file was written
      */
-    public static void storeMessagesToJSON(List<Message> messages, String filename) {
+    public static boolean storeMessagesToJSON(List<Message> messages, String filename) {
+        return storeMessagesToJSON(messages, filename, false);
+    }
+    
+    /**
+     * STORES MESSAGES TO JSON FILE
+     * Writes each message straight to a buffered file channel, then atomically
+     * replaces the old file so a crash mid-save cannot truncate it
+     * 
+     * @param messages - messages to store, in order
+     * @param filename - the JSON file name
+     * @param compact - true to write without indentation
+     * @return boolean - true if the file was written
+     */
+    public static boolean storeMessagesToJSON(Iterable<Message> messages, String filename, boolean compact) {
         try {
-            JSONArray jsonArray = new JSONArray();
-            
-            for (Message message : messages) {
-                JSONObject jsonMessage = new JSONObject();
-                jsonMessage.put("messageID", message.getMessageID());
-                jsonMessage.put("messageHash", message.getMessageHash());
-                jsonMessage.put("recipient", message.getRecipient());
-                jsonMessage.put("messageText", message.getMessageText());
-                jsonMessage.put("status", message.getStatus());
-                
-                jsonArray.put(jsonMessage);
-            }
-            
-            try (FileWriter file = new FileWriter(filename)) {
-                file.write(jsonArray.toString(4)); // 4 spaces for indentation
-                System.out.println("✅ Messages successfully stored in " + filename);
-            }
-            
+            MessageJsonWriter.writeAtomically(messages, Paths.get(filename), compact);
+            System.out.println("✅ Messages successfully stored in " + filename);
+            return true;
         } catch (IOException e) {
             System.out.println("❌ Error storing messages to JSON: " + e.getMessage());
+            return false;
         }
     }
     
@@ -290,42 +304,116 @@ public class Message {
      * Reads messages from JSON file back into application
      * 
      * @param filename - the JSON file name
-     * @return List<Message> - list of loaded messages
+     * @return List<Message> - list of loaded messages; empty if the file is missing or
+     *         damaged, never just the records before the damage
      */
     public static List<Message> loadMessagesFromJSON(String filename) {
         List<Message> loadedMessages = new ArrayList<>();
-        
+        if (forEachMessageInJSON(filename, loadedMessages::add) < 0) {
+            return new ArrayList<>();
+        }
+        return loadedMessages;
+    }
+    
+    /**
+     * LOADS MESSAGES FROM JSON FILE AS LAZY VIEWS
+     * Packs each record into a shared MessageArena as it is parsed; the returned
+     * messages decode their fields only when they are read
+     * 
+     * @param filename - the JSON file name
+     * @return List<Message> - list of loaded messages; empty if the file is missing or damaged
+     */
+    public static List<Message> loadLazyMessagesFromJSON(String filename) {
+        List<Message> loadedMessages = new ArrayList<>();
+        MessageArena arena = new MessageArena();
+        if (forEachMessageInJSON(filename, message -> loadedMessages.add(arena.add(message))) < 0) {
+            return new ArrayList<>();
+        }
+        arena.trim();
+        return loadedMessages;
+    }
+    
+    /**
+     * LOADS MESSAGES FROM JSON FILE AS LAZY VIEWS ON SEVERAL THREADS
+     * Cuts the file between records and parses the pieces in parallel; the result
+     * is the same list, in the same order, as loadLazyMessagesFromJSON(filename)
+     * 
+     * @param filename - the JSON file name
+     * @param threads - parser threads to use
+     * @return List<Message> - list of loaded messages; empty if the file is missing or damaged
+     */
+    public static List<Message> loadLazyMessagesFromJSON(String filename, int threads) {
         try {
-            String content = new String(Files.readAllBytes(Paths.get(filename)));
-            JSONArray jsonArray = new JSONArray(content);
-            
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject jsonMessage = jsonArray.getJSONObject(i);
-                Message message = new Message();
-                
-                message.setMessageID(jsonMessage.getString("messageID"));
-                message.setMessageHash(jsonMessage.getString("messageHash"));
-                message.setRecipient(jsonMessage.getString("recipient"));
-                message.setMessageText(jsonMessage.getString("messageText"));
-                message.setStatus(jsonMessage.getString("status"));
-                
-                loadedMessages.add(message);
-                
-                // Update static counters based on loaded messages
-                totalMessages++;
+            return readLazyMessagesFromJSON(filename, threads);
+        } catch (NoSuchFileException e) {
+            System.out.println("❌ Error loading messages from JSON: " + filename + " (No such file or directory)");
+        } catch (IOException e) {
+            System.out.println("❌ Error loading messages from JSON: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    /**
+     * READS MESSAGES FROM JSON FILE AS LAZY VIEWS ON SEVERAL THREADS
+     * As loadLazyMessagesFromJSON, but tells the caller why nothing was loaded
+     * 
+     * @param filename - the JSON file name
+     * @param threads - parser threads to use
+     * @return List<Message> - every message in the file
+     * @throws NoSuchFileException - if there is no such file
+     * @throws IOException - if the file cannot be read or is damaged
+     */
+    public static List<Message> readLazyMessagesFromJSON(String filename, int threads) throws IOException {
+        List<Message> loadedMessages = new ArrayList<>();
+        ParallelMessageLoader.load(Paths.get(filename), threads, loadedMessages);
+        System.out.println("✅ Loaded " + loadedMessages.size() + " messages from " + filename);
+        
+        // Update static counters based on loaded messages
+        for (Message message : loadedMessages) {
+            totalMessages++;
+            if ("Sent".equals(message.getStatus())) {
+                sentMessagesCount++;
+            }
+        }
+        return loadedMessages;
+    }
+    
+    /**
+     * STREAMS MESSAGES FROM JSON FILE
+     * Hands each message to the callback as soon as it has been parsed, so no
+     * intermediate copy of the file or JSON tree is ever held in memory. A damaged
+     * file has already delivered the records before the damage when this returns -1,
+     * so callers must throw those away rather than keep a truncated set.
+     * 
+     * @param filename - the JSON file name
+     * @param action - receives every loaded message in file order
+     * @return int - number of messages delivered, or -1 if the file is missing or damaged
+     */
+    public static int forEachMessageInJSON(String filename, Consumer<Message> action) {
+        int count = 0;
+        int sent = 0;
+        
+        try (MessageJsonReader reader = MessageJsonReader.open(filename)) {
+            Message message;
+            while ((message = reader.readMessage()) != null) {
                 if ("Sent".equals(message.getStatus())) {
-                    sentMessagesCount++;
+                    sent++;
                 }
+                action.accept(message);
+                count++;
             }
-            
-            System.out.println("✅ Loaded " + loadedMessages.size() + " messages from " + filename);
-            
         } catch (IOException e) {
             System.out.println("❌ Error loading messages from JSON: " + e.getMessage());
+            return -1;
         }
         
-        return loadedMessages;
+        // Update static counters once the whole file has loaded
+        totalMessages += count;
+        sentMessagesCount += sent;
+        System.out.println("✅ Loaded " + count + " messages from " + filename);
+        return count;
     }
+
     
     /**
      * CONVERTS MESSAGE TO JSON OBJECT
@@ -335,11 +423,11 @@ public class Message {
      */
     public JSONObject toJSON() {
         JSONObject jsonMessage = new JSONObject();
-        jsonMessage.put("messageID", this.messageID);
-        jsonMessage.put("messageHash", this.messageHash);
-        jsonMessage.put("recipient", this.recipient);
-        jsonMessage.put("messageText", this.messageText);
-        jsonMessage.put("status", this.status);
+        jsonMessage.put("messageID", getMessageID());
+        jsonMessage.put("messageHash", getMessageHash());
+        jsonMessage.put("recipient", getRecipient());
+        jsonMessage.put("messageText", getMessageText());
+        jsonMessage.put("status", getStatus());
         return jsonMessage;
     }
     
@@ -351,12 +439,13 @@ public class Message {
      * @return Message - the created Message object
      */
     public static Message fromJSON(JSONObject jsonMessage) {
+        // Members left out for null values come back as null
         Message message = new Message();
-        message.setMessageID(jsonMessage.getString("messageID"));
-        message.setMessageHash(jsonMessage.getString("messageHash"));
-        message.setRecipient(jsonMessage.getString("recipient"));
-        message.setMessageText(jsonMessage.getString("messageText"));
-        message.setStatus(jsonMessage.getString("status"));
+        message.setMessageID(jsonMessage.optString("messageID", null));
+        message.setMessageHash(jsonMessage.optString("messageHash", null));
+        message.setRecipient(jsonMessage.optString("recipient", null));
+        message.setMessageText(jsonMessage.optString("messageText", null));
+        message.setStatus(jsonMessage.optString("status", null));
         return message;
     }
     
@@ -378,18 +467,60 @@ public class Message {
     // Getter methods
     public String getMessageID() { return messageID; }
     public String getMessageHash() { return messageHash; }
-    public String getRecipient() { return recipient; }
+    public String getRecipient() {
+        return recipientCode == RecipientDictionary.UNSHARED ? otherRecipient : RecipientDictionary.SHARED.name(recipientCode);
+    }
     public String getMessageText() { return messageText; }
-    public String getStatus() { return status; }
+    public String getStatus() { return statusCode == MessageSegment.STATUS_OTHER ? otherStatus : MessageSegment.statusName(statusCode); }
     public static int getTotalMessages() { return totalMessages; }
+    
+    /**
+     * @return int - length of the message text in characters
+     */
+    public int getMessageTextLength() { return getMessageText().length(); }
+    
+    /**
+     * MESSAGE PREVIEW
+     * 
+     * @param maxChars - most characters of the text to show
+     * @return String - the whole text if it fits, else its first maxChars characters and "..."
+     */
+    public String getPreview(int maxChars) {
+        String text = getMessageText();
+        return text.length() > maxChars ? text.substring(0, maxChars) + "..." : text;
+    }
     public static int getSentMessagesCount() { return sentMessagesCount; }
+    public static MessageIDGenerator getIDGenerator() { return idGenerator; }
     
     // Setter methods
     public void setMessageID(String messageID) { this.messageID = messageID; }
     public void setMessageHash(String messageHash) { this.messageHash = messageHash; }
-    public void setRecipient(String recipient) { this.recipient = recipient; }
+    public void setRecipient(String recipient) { encodeRecipient(recipient); }
     public void setMessageText(String messageText) { this.messageText = messageText; }
-    public void setStatus(String status) { this.status = status; }
+    
+    /**
+     * Keeps the three usual statuses as a one-byte code and only other text as a String
+     * 
+     * @param status - the new status
+     */
+    public void setStatus(String status) {
+        byte code = status == null ? MessageSegment.STATUS_OTHER : MessageSegment.statusCode(status);
+        this.statusCode = code;
+        this.otherStatus = code == MessageSegment.STATUS_OTHER ? status : null;
+    }
+    public static void setIDGenerator(MessageIDGenerator generator) { idGenerator = generator; }
+    
+    /**
+     * Keeps the recipient as its shared dictionary code, or as a String of its own
+     * once the dictionary is full
+     * 
+     * @param recipient - the new recipient
+     */
+    private void encodeRecipient(String recipient) {
+        int code = RecipientDictionary.SHARED.code(recipient);
+        this.recipientCode = code;
+        this.otherRecipient = code == RecipientDictionary.UNSHARED ? recipient : null;
+    }
     
     /**
      * MANUAL TESTING METHOD
@@ -420,9 +551,9 @@ public class Message {
         System.out.println("\n--- TEST 4: JSON CONVERSION ---");
         this.messageID = "9876543210";
         this.messageHash = "98:1:TESTEXAMPLE";
-        this.recipient = "+27839876543";
+        encodeRecipient("+27839876543");
         this.messageText = "This is a test message for JSON";
-        this.status = "Sent";
+        this.statusCode = MessageSegment.STATUS_SENT;
         
         JSONObject jsonMessage = toJSON();
         System.out.println("JSON representation: " + jsonMessage.toString(2));
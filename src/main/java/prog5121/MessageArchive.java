@@ -0,0 +1,767 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * MESSAGE ARCHIVE
+ * Cold storage for messages that are rarely read (ChatApp moves old Disregarded and
+ * Sent messages here). Messages are packed in the order they arrive into blocks of
+ * about BLOCK_BYTES and each block is compressed with Deflater, so an archived
+ * message costs a share of its compressed block plus two index entries instead of
+ * a full Message in the store.
+ *
+ * Every archived message has an ordinal (its position in arrival order). The index
+ * maps a 64-bit hash of each message ID and upper-cased message hash to an
+ * ordinal, and a binary search over the blocks' first ordinals finds the block, so
+ * a lookup inflates exactly one block. Index hits are checked against the inflated
+ * message, so a hash collision can never return the wrong message.
+ * Deletes only mark the ordinal; once they reach a quarter of the archive the
+ * blocks are rebuilt from the live messages.
+ *
+ * So that reports and searches still see archived messages, the archive keeps
+ * what they need without inflating anything: a MessageStatistics (status counts and
+ * lengths), each recipient's message count and the blocks holding their messages,
+ * and per block its longest text and a small Bloom filter of its words. Recipient,
+ * top-K and text queries inflate only the blocks that can hold an answer.
+ *
+ * File layout (big-endian): magic "CHAR", version, block count, then per block its
+ * message count, raw bytes, compressed bytes and the compressed data; then the
+ * deleted ordinal count and the ordinals; then the magic again.
+ * Block record: ID, hash, recipient, text, status, each as an int byte length
+ * (-1 for null) and UTF-8 bytes. The summaries are rebuilt when a file is loaded.
+ *
+ * Like MessageStore it is not thread-safe.
+ * @author Chumisa Haya
+ */
+public class MessageArchive {
+    private static final int MAGIC = 0x43484152; // "CHAR"
+    private static final int VERSION = 1;
+    private static final int BLOCK_BYTES = 16 * 1024; // compresses within a few percent of 64 KB, inflates 4x faster
+    private static final int NONE = LongSlotIndex.NO_SLOT;
+
+    // Seeds keeping IDs and hashes apart in the shared index
+    private static final long ID_SEED = 0x452821E638D01377L;
+    private static final long HASH_SEED = 0x082EFA98EC4E6C89L;
+    private static final long WORD_SEED = 0x3F84D5B5B5470917L;
+    private static final int WORD_FILTER_LONGS = 64; // 4096 bits: under 15% false positives up to 1000 words a block
+
+    /**
+     * One recipient's archived messages: how many are live and which blocks hold them
+     */
+    private static final class Conversation {
+        int count = 0;
+        int[] blocks = new int[2]; // ascending; may include blocks whose messages were deleted
+        int blockCount = 0;
+
+        void addBlock(int block) {
+            if (blockCount > 0 && blocks[blockCount - 1] == block) {
+                return;
+            }
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount * 2);
+            }
+            blocks[blockCount++] = block;
+        }
+    }
+
+    private final List<byte[]> blocks = new ArrayList<>(); // compressed
+    private int[] blockStarts = new int[16]; // first ordinal of each block
+    private int[] blockRawBytes = new int[16];
+    private int[] blockLongest = new int[16]; // longest text in each block, deleted messages included
+    private long[][] blockWords = new long[16][]; // Bloom filter of the words in each block (three probes)
+    private int ordinals = 0; // messages archived, including deleted ones
+    private final BitSet deleted = new BitSet();
+    private int deletedCount = 0;
+    private long rawBytes = 0;
+    private long compressedBytes = 0;
+
+    private final LongSlotIndex index = new LongSlotIndex();
+    private final Map<Long, int[]> sharedKeys = new HashMap<>(); // keys of more than one message: every ordinal
+
+    private final MessageStatistics statistics = new MessageStatistics(MessageSegment.STATUS_CODES);
+    private final Map<String, Conversation> conversations = new HashMap<>();
+
+    /**
+     * ARCHIVES MESSAGES
+     * Packs them after the messages already archived, starting a new block
+     *
+     * @param messages - the messages to archive, oldest first
+     */
+    public void archive(Collection<? extends Message> messages) {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(BLOCK_BYTES + 1024);
+        DataOutputStream out = new DataOutputStream(raw);
+        List<Message> packed = new ArrayList<>();
+        try {
+            for (Message message : messages) {
+                writeField(out, message.getMessageID());
+                writeField(out, message.getMessageHash());
+                writeField(out, message.getRecipient());
+                writeField(out, message.getMessageText());
+                writeField(out, message.getStatus());
+                packed.add(message);
+                if (raw.size() >= BLOCK_BYTES) {
+                    seal(raw.toByteArray(), packed);
+                    raw.reset();
+                    packed.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e); // a ByteArrayOutputStream never throws
+        }
+        if (raw.size() > 0) {
+            seal(raw.toByteArray(), packed);
+        }
+    }
+
+    /**
+     * FINDS AN ARCHIVED MESSAGE BY ID
+     *
+     * @param messageID - the message ID to look up
+     * @return Message - a copy of the first matching message, or null
+     */
+    public Message findByID(String messageID) {
+        return find(messageID, null);
+    }
+
+    /**
+     * FINDS AN ARCHIVED MESSAGE BY HASH, IGNORING CASE
+     *
+     * @param messageHash - the message hash to look up
+     * @return Message - a copy of the first matching message, or null
+     */
+    public Message findByHash(String messageHash) {
+        for (int ordinal : ordinals(key(messageHash, HASH_SEED, true))) {
+            Message message = read(ordinal);
+            if (message != null && message.getMessageHash().equalsIgnoreCase(messageHash)) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * FINDS AN ARCHIVED MESSAGE BY ID, AND BY HASH IF ONE IS GIVEN
+     *
+     * @param messageID - the message ID
+     * @param messageHash - the message hash (exact case), or null to match any
+     * @return Message - a copy of the first matching message, or null
+     */
+    public Message find(String messageID, String messageHash) {
+        for (int ordinal : ordinals(key(messageID, ID_SEED, false))) {
+            Message message = read(ordinal);
+            if (matches(message, messageID, messageHash)) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * DELETES AN ARCHIVED MESSAGE
+     *
+     * @param messageID - the message ID
+     * @param messageHash - the message hash (exact case)
+     * @return boolean - true if a message was deleted
+     */
+    public boolean remove(String messageID, String messageHash) {
+        for (int ordinal : ordinals(key(messageID, ID_SEED, false))) {
+            Message message = read(ordinal);
+            if (matches(message, messageID, messageHash)) {
+                deleted.set(ordinal);
+                deletedCount++;
+                forget(message);
+                if (deletedCount * 4 > ordinals) {
+                    compact();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * HANDS EVERY ARCHIVED MESSAGE TO A CALLBACK
+     * Inflates each block once, oldest first
+     *
+     * @param action - receives a copy of each live message
+     */
+    public void forEach(Consumer<Message> action) {
+        for (int block = 0; block < blocks.size(); block++) {
+            forEachIn(block, action);
+        }
+    }
+
+    /**
+     * @return MessageStatistics - status counts and text lengths of the archived messages
+     */
+    public MessageStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param recipient - a recipient number
+     * @return int - number of archived messages to that recipient
+     */
+    public int countForRecipient(String recipient) {
+        Conversation conversation = conversations.get(recipient);
+        return conversation == null ? 0 : conversation.count;
+    }
+
+    /**
+     * HANDS ONE RECIPIENT'S ARCHIVED MESSAGES TO A CALLBACK
+     * Inflates only the blocks holding that recipient's messages, oldest first
+     *
+     * @param recipient - a recipient number
+     * @param action - receives a copy of each of the recipient's messages
+     */
+    public void forRecipient(String recipient, Consumer<Message> action) {
+        Conversation conversation = conversations.get(recipient);
+        if (conversation == null) {
+            return;
+        }
+        for (int i = 0; i < conversation.blockCount; i++) {
+            forEachIn(conversation.blocks[i], message -> {
+                if (Objects.equals(message.getRecipient(), recipient)) {
+                    action.accept(message);
+                }
+            });
+        }
+    }
+
+    /**
+     * FINDS THE LONGEST ARCHIVED MESSAGES
+     * The statistics give the k-th longest length, so only blocks holding a message
+     * at least that long are inflated
+     *
+     * @param k - how many messages to return
+     * @return List<Message> - up to k messages, longest first (oldest first on ties)
+     */
+    public List<Message> findLongest(int k) {
+        int shortest = 0;
+        int counted = 0;
+        for (int length : statistics.lengthsLongestFirst()) {
+            shortest = length;
+            counted += statistics.countWithLength(length);
+            if (counted >= k) {
+                break;
+            }
+        }
+        List<Message> longest = new ArrayList<>();
+        for (int block = 0; block < blocks.size(); block++) {
+            if (blockLongest[block] >= shortest) {
+                int atLeast = shortest;
+                forEachIn(block, message -> {
+                    if (textLength(message) >= atLeast) {
+                        longest.add(message);
+                    }
+                });
+            }
+        }
+        return longestFirst(longest, k);
+    }
+
+    /**
+     * @param recipient - a recipient number
+     * @param k - how many messages to return
+     * @return List<Message> - up to k of the recipient's archived messages, longest first
+     */
+    public List<Message> findLongestForRecipient(String recipient, int k) {
+        List<Message> messages = new ArrayList<>(countForRecipient(recipient));
+        forRecipient(recipient, messages::add);
+        return longestFirst(messages, k);
+    }
+
+    /**
+     * SEARCHES THE ARCHIVED TEXT
+     * Skips every block whose word filter rules the query out
+     *
+     * @param query - a parsed TextIndex query
+     * @param limit - most messages to return
+     * @return TextIndex.Result - matching messages oldest first, and the total
+     */
+    TextIndex.Result search(TextIndex.Query query, int limit) {
+        List<Message> found = new ArrayList<>();
+        int[] total = {0};
+        for (int block = 0; block < blocks.size(); block++) {
+            long[] words = blockWords[block];
+            if (!query.mightMatch(word -> mightContainWord(words, word))) {
+                continue;
+            }
+            forEachIn(block, message -> {
+                if (query.matches(message.getMessageText())) {
+                    if (found.size() < limit) {
+                        found.add(message);
+                    }
+                    total[0]++;
+                }
+            });
+        }
+        return new TextIndex.Result(found, total[0]);
+    }
+
+    /**
+     * Removes every message
+     */
+    public void clear() {
+        blocks.clear();
+        Arrays.fill(blockWords, null);
+        ordinals = 0;
+        deleted.clear();
+        deletedCount = 0;
+        rawBytes = 0;
+        compressedBytes = 0;
+        index.clear();
+        sharedKeys.clear();
+        statistics.clear();
+        conversations.clear();
+    }
+
+    public int size() { return ordinals - deletedCount; }
+    public boolean isEmpty() { return size() == 0; }
+    public int getBlockCount() { return blocks.size(); }
+    public long getRawBytes() { return rawBytes; }
+    public long getCompressedBytes() { return compressedBytes; }
+
+    /**
+     * @return String - a one-line summary of the archive's size
+     */
+    public String describe() {
+        return String.format("%,d messages in %,d blocks | %,d KB raw, %,d KB compressed (%.1fx)",
+            size(), blocks.size(), rawBytes / 1024, compressedBytes / 1024,
+            compressedBytes == 0 ? 0.0 : (double) rawBytes / compressedBytes);
+    }
+
+    // Index
+
+    private static long key(String value, long seed, boolean upperCase) {
+        long key = MessageBloomFilter.hash(value, seed, upperCase);
+        return key == Long.MIN_VALUE ? key + 1 : key; // Long.MIN_VALUE is reserved by LongSlotIndex
+    }
+
+    private void index(String messageID, String messageHash, int ordinal) {
+        addKey(key(messageID, ID_SEED, false), ordinal);
+        addKey(key(messageHash, HASH_SEED, true), ordinal);
+    }
+
+    private void addKey(long key, int ordinal) {
+        int previous = index.put(key, ordinal);
+        if (previous != NONE) {
+            // Keep the oldest ordinal in the index and every ordinal on the side
+            index.put(key, previous);
+            int[] all = sharedKeys.getOrDefault(key, new int[] {previous});
+            all = Arrays.copyOf(all, all.length + 1);
+            all[all.length - 1] = ordinal;
+            sharedKeys.put(key, all);
+        }
+    }
+
+    private int[] ordinals(long key) {
+        int ordinal = index.get(key);
+        if (ordinal == NONE) {
+            return new int[0];
+        }
+        int[] all = sharedKeys.get(key);
+        return all != null ? all : new int[] {ordinal};
+    }
+
+    private static boolean matches(Message message, String messageID, String messageHash) {
+        return message != null && message.getMessageID().equals(messageID)
+            && (messageHash == null || message.getMessageHash().equals(messageHash));
+    }
+
+    // Summaries
+
+    /**
+     * Indexes a new block's messages and records its longest text, word filter and
+     * recipients; every message counts as live
+     */
+    private void summarize(int block, List<Message> messages) {
+        long[] filter = new long[WORD_FILTER_LONGS];
+        int longest = 0;
+        for (Message message : messages) {
+            index(message.getMessageID(), message.getMessageHash(), ordinals++);
+            longest = Math.max(longest, textLength(message));
+            addWords(filter, message.getMessageText());
+            conversations.computeIfAbsent(message.getRecipient(), recipient -> new Conversation()).addBlock(block);
+            count(message, 1);
+        }
+        blockLongest[block] = longest;
+        blockWords[block] = filter;
+    }
+
+    /**
+     * Adds every word of a text to a block filter, split as TextIndex splits it but
+     * hashed in place instead of copied out
+     */
+    private static void addWords(long[] filter, String text) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && TextIndex.isSeparator(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !TextIndex.isSeparator(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                long hash = wordHash(text, start, i);
+                for (int probe = 0; probe < 3; probe++) {
+                    int bit = (int) (hash >>> (probe * 21)) & (WORD_FILTER_LONGS * 64 - 1);
+                    filter[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    private static boolean mightContainWord(long[] filter, String word) {
+        long hash = wordHash(word, 0, word.length());
+        for (int probe = 0; probe < 3; probe++) {
+            int bit = (int) (hash >>> (probe * 21)) & (WORD_FILTER_LONGS * 64 - 1);
+            if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash of text[from, to) upper-cased as TextIndex upper-cases words
+     */
+    private static long wordHash(String text, int from, int to) {
+        long hash = WORD_SEED;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Non-ASCII can change length when upper-cased; hash exactly what toUpperCase gives
+                String upper = text.substring(from, to).toUpperCase(Locale.ROOT);
+                hash = WORD_SEED;
+                for (int j = 0; j < upper.length(); j++) {
+                    hash = (hash ^ upper.charAt(j)) * 0x100000001B3L;
+                }
+                break;
+            }
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            }
+            hash = (hash ^ c) * 0x100000001B3L; // FNV-1a
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Takes a deleted message out of the statistics and its recipient's count
+     */
+    private void forget(Message message) {
+        count(message, -1);
+    }
+
+    private void count(Message message, int delta) {
+        byte status = MessageSegment.statusCode(message.getStatus());
+        if (delta > 0) {
+            statistics.messageAdded(status, textLength(message));
+        } else {
+            statistics.messageRemoved(status, textLength(message));
+        }
+        Conversation conversation = conversations.get(message.getRecipient());
+        conversation.count += delta;
+        if (conversation.count == 0) {
+            conversations.remove(message.getRecipient());
+        }
+    }
+
+    private static int textLength(Message message) {
+        String text = message.getMessageText();
+        return text == null ? 0 : text.length();
+    }
+
+    private static List<Message> longestFirst(List<Message> messages, int k) {
+        messages.sort(Comparator.comparingInt(MessageArchive::textLength).reversed()); // stable: ties stay oldest first
+        return new ArrayList<>(messages.subList(0, Math.min(k, messages.size())));
+    }
+
+    // Blocks
+
+    private void seal(byte[] raw, List<Message> messages) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 3 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            summarize(addBlock(raw.length, compressed.toByteArray()), messages);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return int - the new block's number; it starts at the next ordinal
+     */
+    private int addBlock(int raw, byte[] compressed) {
+        int block = blocks.size();
+        if (block == blockStarts.length) {
+            blockStarts = Arrays.copyOf(blockStarts, block * 2);
+            blockRawBytes = Arrays.copyOf(blockRawBytes, block * 2);
+            blockLongest = Arrays.copyOf(blockLongest, block * 2);
+            blockWords = Arrays.copyOf(blockWords, block * 2);
+        }
+        blockStarts[block] = ordinals;
+        blockRawBytes[block] = raw;
+        blocks.add(compressed);
+        rawBytes += raw;
+        compressedBytes += compressed.length;
+        return block;
+    }
+
+    /**
+     * Inflates one block and hands over its live messages
+     */
+    private void forEachIn(int block, Consumer<Message> action) {
+        int ordinal = blockStarts[block];
+        for (Message message : inflate(block)) {
+            if (!deleted.get(ordinal++)) {
+                action.accept(message);
+            }
+        }
+    }
+
+    /**
+     * Inflates the one block holding an ordinal and decodes that message
+     */
+    private Message read(int ordinal) {
+        if (deleted.get(ordinal)) {
+            return null;
+        }
+        int block = Arrays.binarySearch(blockStarts, 0, blocks.size(), ordinal);
+        if (block < 0) {
+            block = -block - 2; // the block starting before the ordinal
+        }
+        ByteBuffer raw = ByteBuffer.wrap(inflateRaw(block));
+        for (int skip = ordinal - blockStarts[block]; skip > 0; skip--) {
+            for (int field = 0; field < 5; field++) {
+                raw.position(raw.position() + 4 + Math.max(0, raw.getInt(raw.position())));
+            }
+        }
+        return readMessage(raw);
+    }
+
+    private List<Message> inflate(int block) {
+        ByteBuffer raw = ByteBuffer.wrap(inflateRaw(block));
+        List<Message> messages = new ArrayList<>();
+        while (raw.hasRemaining()) {
+            messages.add(readMessage(raw));
+        }
+        return messages;
+    }
+
+    private byte[] inflateRaw(int block) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blocks.get(block));
+            byte[] raw = new byte[blockRawBytes[block]];
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Archive block " + block + " is damaged", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeField(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readField(ByteBuffer raw) {
+        int length = raw.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(raw.array(), raw.position(), length, StandardCharsets.UTF_8);
+        raw.position(raw.position() + length);
+        return value;
+    }
+
+    private static Message readMessage(ByteBuffer raw) {
+        Message message = new Message();
+        message.setMessageID(readField(raw));
+        message.setMessageHash(readField(raw));
+        message.setRecipient(readField(raw));
+        message.setMessageText(readField(raw));
+        message.setStatus(readField(raw));
+        return message;
+    }
+
+    /**
+     * Rebuilds the blocks without deleted messages
+     */
+    private void compact() {
+        List<Message> live = new ArrayList<>(size());
+        forEach(live::add);
+        clear();
+        archive(live);
+    }
+
+    /**
+     * Marks ordinals deleted and takes them out of the summaries, inflating each
+     * block that holds one once
+     */
+    private void forgetDeleted(BitSet ordinalsToDelete) {
+        int block = 0;
+        for (int ordinal = ordinalsToDelete.nextSetBit(0); ordinal >= 0; ) {
+            while (block + 1 < blocks.size() && blockStarts[block + 1] <= ordinal) {
+                block++;
+            }
+            List<Message> messages = inflate(block);
+            int end = blockStarts[block] + messages.size();
+            for (; ordinal >= 0 && ordinal < end; ordinal = ordinalsToDelete.nextSetBit(ordinal + 1)) {
+                forget(messages.get(ordinal - blockStarts[block]));
+            }
+        }
+        deleted.or(ordinalsToDelete);
+        deletedCount = deleted.cardinality();
+    }
+
+    // Persistence
+
+    /**
+     * SAVES THE ARCHIVE
+     * Writes to "<file>.tmp" and renames it over the file
+     *
+     * @param file - where to save the archive
+     * @throws IOException - if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blocks.size());
+            for (int block = 0; block < blocks.size(); block++) {
+                int end = block + 1 < blocks.size() ? blockStarts[block + 1] : ordinals;
+                out.writeInt(end - blockStarts[block]);
+                out.writeInt(blockRawBytes[block]);
+                out.writeInt(blocks.get(block).length);
+                out.write(blocks.get(block));
+            }
+            out.writeInt(deletedCount);
+            for (int ordinal = deleted.nextSetBit(0); ordinal >= 0; ordinal = deleted.nextSetBit(ordinal + 1)) {
+                out.writeInt(ordinal);
+            }
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        MessageJsonWriter.replace(temp, absolute);
+    }
+
+    /**
+     * LOADS A SAVED ARCHIVE
+     * Replaces this archive's contents; the index is rebuilt by inflating each block once
+     *
+     * @param file - a file written by save()
+     * @throws IOException - if the file is missing or damaged; the archive is then left empty
+     */
+    public void load(Path file) throws IOException {
+        clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a message archive (bad magic number)");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported archive version " + version);
+            }
+            int blockCount = in.readInt();
+            for (int block = 0; block < blockCount; block++) {
+                int count = in.readInt();
+                int raw = in.readInt();
+                int length = in.readInt();
+                if (count < 0 || raw < 0 || length < 0) {
+                    throw new IOException(file + " has a damaged block header");
+                }
+                byte[] compressed = new byte[length];
+                in.readFully(compressed);
+                summarize(addBlock(raw, compressed), inflate(block));
+                if (ordinals - blockStarts[block] != count) {
+                    throw new IOException(file + " block " + block + " holds a different number of messages than recorded");
+                }
+            }
+            int deletes = in.readInt();
+            BitSet loadedDeletes = new BitSet();
+            for (int i = 0; i < deletes; i++) {
+                int ordinal = in.readInt();
+                if (ordinal < 0 || ordinal >= ordinals) {
+                    throw new IOException(file + " lists a deleted message that does not exist");
+                }
+                loadedDeletes.set(ordinal);
+            }
+            forgetDeleted(loadedDeletes);
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a complete message archive (bad magic number)");
+            }
+        } catch (EOFException e) {
+            clear();
+            throw new IOException(file + " is truncated", e);
+        } catch (IOException | RuntimeException e) {
+            clear();
+            throw e instanceof IOException ? (IOException) e : new IOException(file + " is damaged: " + e.getMessage(), e);
+        }
+    }
+}
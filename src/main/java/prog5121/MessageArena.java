@@ -0,0 +1,183 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MESSAGE ARENA
+ * Packs loaded messages as UTF-8 records into large shared byte pages and hands
+ * out LazyMessage views onto them, so a loaded message costs its encoded bytes plus
+ * one small view object instead of a Message and five Strings. The recipient is kept
+ * as its RecipientDictionary code, so reading it decodes nothing.
+ *
+ * Record layout (big-endian):
+ *   status code (1) | text chars (4) | recipient code (4) | ID, hash, status bytes (2 each) |
+ *   text bytes (4) | ID | hash | status (only for STATUS_OTHER) | text
+ *
+ * Records are only appended. Filling the arena is not thread-safe; reading views
+ * from any number of threads once it is filled is.
+ * @author Chumisa Haya
+ */
+final class MessageArena implements MessageRecords {
+    private static final int PAGE_SIZE = 1 << 20;
+    private static final int RECORD_HEADER = 19;
+
+    // Header field offsets within a record
+    private static final int TEXT_CHARS = 1;
+    private static final int RECIPIENT_CODE = 5;
+    private static final int ID_BYTES = 9;
+    private static final int HASH_BYTES = 11;
+    private static final int STATUS_BYTES = 13;
+    private static final int TEXT_BYTES = 15;
+
+    private final List<byte[]> pages = new ArrayList<>();
+    private byte[] page;
+    private int position;
+    private long encodedBytes = 0;
+
+    MessageArena() {
+        newPage(PAGE_SIZE);
+    }
+
+    /**
+     * COPIES A MESSAGE INTO THE ARENA
+     *
+     * @param message - the message to pack
+     * @return Message - a lazy view of the packed copy, or the message itself if a
+     *         short field is too long to pack or its recipient has no shared code
+     */
+    Message add(Message message) {
+        byte[] id = message.getMessageID().getBytes(StandardCharsets.UTF_8);
+        byte[] hash = message.getMessageHash().getBytes(StandardCharsets.UTF_8);
+        int recipient = RecipientDictionary.SHARED.code(message.getRecipient());
+        String text = message.getMessageText();
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        byte status = MessageSegment.statusCode(message.getStatus());
+        byte[] statusText = status == MessageSegment.STATUS_OTHER
+            ? message.getStatus().getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+        if (recipient == RecipientDictionary.UNSHARED || id.length > MessageSegment.MAX_SHORT_FIELD
+                || hash.length > MessageSegment.MAX_SHORT_FIELD || statusText.length > MessageSegment.MAX_SHORT_FIELD) {
+            return message;
+        }
+
+        int size = RECORD_HEADER + id.length + hash.length + statusText.length + textBytes.length;
+        if (position + size > page.length) {
+            newPage(Math.max(PAGE_SIZE, size));
+        }
+        int start = position;
+        page[start] = status;
+        putInt(start + TEXT_CHARS, text.length());
+        putInt(start + RECIPIENT_CODE, recipient);
+        putShort(start + ID_BYTES, id.length);
+        putShort(start + HASH_BYTES, hash.length);
+        putShort(start + STATUS_BYTES, statusText.length);
+        putInt(start + TEXT_BYTES, textBytes.length);
+        position = start + RECORD_HEADER;
+        for (byte[] field : new byte[][] {id, hash, statusText, textBytes}) {
+            System.arraycopy(field, 0, page, position, field.length);
+            position += field.length;
+        }
+        encodedBytes += size;
+        return new LazyMessage(this, ((long) (pages.size() - 1) << 32) | start);
+    }
+
+    /**
+     * RELEASES THE UNUSED END OF THE LAST PAGE
+     * For an arena that is finished filling; existing views stay valid
+     */
+    void trim() {
+        if (position < page.length) {
+            page = Arrays.copyOf(page, position);
+            pages.set(pages.size() - 1, page);
+        }
+    }
+
+    /**
+     * @return long - bytes of packed records
+     */
+    long getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    @Override
+    public String field(long record, int field) {
+        byte[] bytes = pages.get((int) (record >>> 32));
+        int start = (int) record;
+        int offset = start + RECORD_HEADER;
+        int idBytes = getShort(bytes, start + ID_BYTES);
+        switch (field) {
+            case ID:
+                return new String(bytes, offset, idBytes, StandardCharsets.UTF_8);
+            case HASH:
+                return new String(bytes, offset + idBytes, getShort(bytes, start + HASH_BYTES), StandardCharsets.UTF_8);
+            case RECIPIENT:
+                return RecipientDictionary.SHARED.name(getInt(bytes, start + RECIPIENT_CODE));
+            default:
+                return new String(bytes, textOffset(bytes, start), getInt(bytes, start + TEXT_BYTES), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public String status(long record) {
+        byte[] bytes = pages.get((int) (record >>> 32));
+        int start = (int) record;
+        byte status = bytes[start];
+        if (status != MessageSegment.STATUS_OTHER) {
+            return MessageSegment.statusName(status);
+        }
+        int statusBytes = getShort(bytes, start + STATUS_BYTES);
+        return new String(bytes, textOffset(bytes, start) - statusBytes, statusBytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int textLength(long record) {
+        return getInt(pages.get((int) (record >>> 32)), (int) record + TEXT_CHARS);
+    }
+
+    @Override
+    public String preview(long record, int maxChars) {
+        byte[] bytes = pages.get((int) (record >>> 32));
+        int start = (int) record;
+        return LazyMessage.preview(bytes, textOffset(bytes, start), getInt(bytes, start + TEXT_BYTES),
+            getInt(bytes, start + TEXT_CHARS), maxChars);
+    }
+
+    private static int textOffset(byte[] bytes, int start) {
+        return start + RECORD_HEADER + getShort(bytes, start + ID_BYTES) + getShort(bytes, start + HASH_BYTES)
+            + getShort(bytes, start + STATUS_BYTES);
+    }
+
+    private void newPage(int size) {
+        page = new byte[size];
+        pages.add(page);
+        position = 0;
+    }
+
+    private void putShort(int at, int value) {
+        page[at] = (byte) (value >>> 8);
+        page[at + 1] = (byte) value;
+    }
+
+    private void putInt(int at, int value) {
+        page[at] = (byte) (value >>> 24);
+        page[at + 1] = (byte) (value >>> 16);
+        page[at + 2] = (byte) (value >>> 8);
+        page[at + 3] = (byte) value;
+    }
+
+    private static int getShort(byte[] bytes, int at) {
+        return ((bytes[at] & 0xFF) << 8) | (bytes[at + 1] & 0xFF);
+    }
+
+    private static int getInt(byte[] bytes, int at) {
+        return ((bytes[at] & 0xFF) << 24) | ((bytes[at + 1] & 0xFF) << 16)
+            | ((bytes[at + 2] & 0xFF) << 8) | (bytes[at + 3] & 0xFF);
+    }
+}
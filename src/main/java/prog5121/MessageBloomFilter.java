@@ -0,0 +1,295 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * MESSAGE BLOOM FILTER
+ * A counting Bloom filter over every message ID and message hash in a store, kept
+ * current as a MessageStore listener. "No" answers are certain, so a lookup for an
+ * ID or hash that was never stored (the usual case for a mistyped one) is answered
+ * from a few counters without touching the store. "Maybe" answers still go to the
+ * store, and are wrong about as often as the configured false-positive rate.
+ *
+ * Each position holds a 4-bit counter (16 per long) instead of a bit, so deletes
+ * can take a key back out. A counter that reaches 15 stays there for good, which
+ * can only cause extra "maybe" answers, never a missed message. Hashes are keyed
+ * upper-case, like MessageStore.findByHash.
+ *
+ * The filter can be written next to the snapshot it describes and restored from it
+ * on the next start instead of being rebuilt, as long as the snapshot is unchanged.
+ * File layout (big-endian): magic "CHBL", version, counter count, hash functions,
+ * capacity, keys, snapshot size, snapshot modified time, the counter words, magic.
+ *
+ * All methods are synchronized, so lookups may run while other threads add messages.
+ * @author Chumisa Haya
+ */
+public class MessageBloomFilter implements MessageStore.Listener {
+    private static final int MAGIC = 0x4348424C; // "CHBL"
+    private static final int VERSION = 1;
+    private static final int COUNTER_BITS = 4;
+    private static final long COUNTER_MAX = 15;
+    private static final int MAX_HASHES = 16;
+
+    // Seeds keeping IDs and hashes apart, so a hash never matches an ID
+    private static final long ID_SEED = 0x243F6A8885A308D3L;
+    private static final long HASH_SEED = 0x13198A2E03707344L;
+
+    private final double falsePositiveRate;
+    private final long maxBytes;
+    private long[] counters;
+    private long counterCount;
+    private int hashes;
+    private long capacity; // messages the filter was sized for
+    private long keys = 0;
+
+    /**
+     * @param expectedMessages - messages the filter should hold at the given rate
+     * @param falsePositiveRate - wanted share of "maybe" answers for absent keys, e.g. 0.01
+     * @param maxBytes - most memory the counters may use; a smaller filter raises the rate
+     */
+    public MessageBloomFilter(long expectedMessages, double falsePositiveRate, long maxBytes) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        if (maxBytes < Long.BYTES) {
+            throw new IllegalArgumentException("Bloom filter needs at least 8 bytes: " + maxBytes);
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxBytes = maxBytes;
+        allocate(expectedMessages);
+    }
+
+    /**
+     * Sizes the counters for a message count; two keys (ID and hash) per message
+     */
+    private void allocate(long expectedMessages) {
+        long keyCount = 2 * Math.max(1, expectedMessages);
+        double ln2 = Math.log(2);
+        long wanted = (long) Math.ceil(-keyCount * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long maxCounters = Math.min(maxBytes * 8 / COUNTER_BITS, (long) Integer.MAX_VALUE * 16);
+        long words = (Math.min(wanted, maxCounters) + 15) / 16;
+        counters = new long[(int) Math.max(1, words)];
+        counterCount = counters.length * 16L;
+        hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) counterCount / keyCount * ln2)));
+        capacity = expectedMessages;
+        keys = 0;
+    }
+
+    @Override
+    public synchronized void messageAdded(Message message) {
+        update(hash(message.getMessageID(), ID_SEED, false), 1);
+        update(hash(message.getMessageHash(), HASH_SEED, true), 1);
+        keys += 2;
+    }
+
+    @Override
+    public synchronized void messageRemoved(Message message) {
+        update(hash(message.getMessageID(), ID_SEED, false), -1);
+        update(hash(message.getMessageHash(), HASH_SEED, true), -1);
+        keys -= 2;
+    }
+
+    @Override
+    public synchronized void storeCleared() {
+        Arrays.fill(counters, 0);
+        keys = 0;
+    }
+
+    /**
+     * EMPTIES AND RESIZES THE FILTER
+     * For a store about to be refilled with more messages than the filter was sized for
+     *
+     * @param expectedMessages - messages the filter should now hold
+     */
+    public synchronized void resize(long expectedMessages) {
+        allocate(expectedMessages);
+    }
+
+    /**
+     * @param messageID - a message ID
+     * @return boolean - false if no stored message has this ID
+     */
+    public synchronized boolean mightContainID(String messageID) {
+        return contains(hash(messageID, ID_SEED, false));
+    }
+
+    /**
+     * @param messageHash - a message hash, in any case
+     * @return boolean - false if no stored message has this hash
+     */
+    public synchronized boolean mightContainHash(String messageHash) {
+        return contains(hash(messageHash, HASH_SEED, true));
+    }
+
+    public synchronized long getCapacity() { return capacity; }
+    public synchronized long getMemoryBytes() { return (long) counters.length * Long.BYTES; }
+
+    /**
+     * @return double - expected false-positive rate at the current number of keys
+     */
+    public synchronized double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * keys / counterCount), hashes);
+    }
+
+    /**
+     * @return String - a one-line summary of the filter's size and accuracy
+     */
+    public synchronized String describe() {
+        return String.format("%,d keys | %,d KB | %d hash functions | ~%.3f%% false positives",
+            keys, getMemoryBytes() / 1024, hashes, 100 * getExpectedFalsePositiveRate());
+    }
+
+    // Counters
+
+    private void update(long hash, int delta) {
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < hashes; i++, hash += step) {
+            long position = Long.remainderUnsigned(hash, counterCount);
+            int word = (int) (position >>> 4);
+            int shift = (int) (position & 15) * COUNTER_BITS;
+            long count = (counters[word] >>> shift) & COUNTER_MAX;
+            // A full counter no longer knows how many keys share it, so it never goes down
+            if (count == COUNTER_MAX || (delta < 0 && count == 0)) {
+                continue;
+            }
+            counters[word] += (long) delta << shift;
+        }
+    }
+
+    private boolean contains(long hash) {
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < hashes; i++, hash += step) {
+            long position = Long.remainderUnsigned(hash, counterCount);
+            if (((counters[(int) (position >>> 4)] >>> ((position & 15) * COUNTER_BITS)) & COUNTER_MAX) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars, finished with the MurmurHash3 mixer; MessageArchive
+     * keys its index with it too
+     */
+    static long hash(String key, long seed, boolean upperCase) {
+        long h = seed;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (upperCase) {
+                if (c >= 0x80) {
+                    // Non-ASCII can change length when upper-cased; match String.toUpperCase exactly
+                    return hash(key.toUpperCase(Locale.ROOT), seed, false);
+                }
+                if (c >= 'a' && c <= 'z') {
+                    c -= 'a' - 'A';
+                }
+            }
+            h = (h ^ c) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    // Persistence
+
+    /**
+     * SAVES THE FILTER NEXT TO ITS SNAPSHOT
+     * Call right after the snapshot is written, while the store still matches it.
+     * Writes to "<file>.tmp" and renames it over the file.
+     *
+     * @param file - where to save the filter
+     * @param snapshot - the snapshot file holding the same messages
+     * @throws IOException - if the filter cannot be written or the snapshot is missing
+     */
+    public synchronized void save(Path file, Path snapshot) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(counterCount);
+            out.writeInt(hashes);
+            out.writeLong(capacity);
+            out.writeLong(keys);
+            out.writeLong(Files.size(snapshot));
+            out.writeLong(Files.getLastModifiedTime(snapshot).toMillis());
+            for (long word : counters) {
+                out.writeLong(word);
+            }
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        MessageJsonWriter.replace(temp, absolute);
+    }
+
+    /**
+     * RESTORES A SAVED FILTER
+     * Replaces this filter's contents with the saved ones. The store must be filled
+     * from the same snapshot without this filter listening, or keys would be counted twice.
+     *
+     * @param file - a file written by save()
+     * @param snapshot - the snapshot the store is being filled from
+     * @throws IOException - if the file is damaged or was saved for a different snapshot;
+     *         the filter is left unchanged
+     */
+    public synchronized void restore(Path file, Path snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a message Bloom filter (bad magic number)");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported Bloom filter version " + version);
+            }
+            long savedCounters = in.readLong();
+            int savedHashes = in.readInt();
+            long savedCapacity = in.readLong();
+            long savedKeys = in.readLong();
+            if (in.readLong() != Files.size(snapshot)
+                    || in.readLong() != Files.getLastModifiedTime(snapshot).toMillis()) {
+                throw new IOException(file + " was saved for a different version of " + snapshot);
+            }
+            if (savedCounters <= 0 || savedCounters % 16 != 0 || savedCounters / 16 > Integer.MAX_VALUE
+                    || savedHashes < 1 || savedHashes > MAX_HASHES) {
+                throw new IOException(file + " has a damaged header");
+            }
+            long[] savedWords = new long[(int) (savedCounters / 16)];
+            for (int i = 0; i < savedWords.length; i++) {
+                savedWords[i] = in.readLong();
+            }
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a complete Bloom filter (bad magic number)");
+            }
+            counters = savedWords;
+            counterCount = savedCounters;
+            hashes = savedHashes;
+            capacity = savedCapacity;
+            keys = savedKeys;
+        }
+    }
+}
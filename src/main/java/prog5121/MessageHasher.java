@@ -0,0 +1,183 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * MESSAGE HASHER
+ * Builds the "00:0:FIRSTLAST" message hash in one pass over the text. The first and
+ * last words are found by index and copied, upper-cased, straight into a reusable
+ * buffer, so the only object created per hash is the resulting String. The output is
+ * identical to trim() + split("\\s+") + toUpperCase(); text the fast path cannot
+ * upper-case exactly (non-ASCII, or a Turkish/Azeri default locale) falls back to
+ * String.toUpperCase().
+ *
+ * An instance is not thread-safe; forCurrentThread() gives each thread its own.
+ * @author Chumisa Haya
+ */
+public class MessageHasher {
+    private static final ThreadLocal<MessageHasher> PER_THREAD = ThreadLocal.withInitial(MessageHasher::new);
+
+    private char[] buffer = new char[64];
+    private int length;
+
+    /**
+     * @return MessageHasher - the calling thread's reusable hasher
+     */
+    public static MessageHasher forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * CREATES ONE MESSAGE HASH
+     *
+     * @param messageID - the message ID (at least 2 characters)
+     * @param messageNum - the message's sequence number
+     * @param messageText - the message text
+     * @return String - the upper-case hash
+     */
+    public String hash(String messageID, int messageNum, String messageText) {
+        write(messageID, messageNum, messageText);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * HASHES A WHOLE BATCH
+     * Numbers the messages from firstMessageNum and stores each hash on its message.
+     * Messages without an ID or text are skipped, as createMessageHash() does.
+     *
+     * @param messages - the messages to hash
+     * @param firstMessageNum - sequence number of the first message
+     * @return int - number of messages hashed
+     */
+    public int hashAll(List<Message> messages, int firstMessageNum) {
+        int hashed = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message.getMessageID().isEmpty() || message.getMessageText().isEmpty()) {
+                continue;
+            }
+            message.setMessageHash(hash(message.getMessageID(), firstMessageNum + i, message.getMessageText()));
+            hashed++;
+        }
+        return hashed;
+    }
+
+    /**
+     * Writes the hash into the buffer and sets length
+     */
+    private void write(String messageID, int messageNum, String text) {
+        // Trimmed bounds: trim() drops every character up to and including ' '
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        // First word runs to the first separator, last word starts after the last one
+        int firstEnd = start;
+        while (firstEnd < end && !isSeparator(text.charAt(firstEnd))) {
+            firstEnd++;
+        }
+        int lastStart = end;
+        while (lastStart > firstEnd && !isSeparator(text.charAt(lastStart - 1))) {
+            lastStart--;
+        }
+        if (firstEnd == end) {
+            // A single word is used as both the first and the last word
+            lastStart = start;
+        }
+
+        int firstLength = firstEnd - start;
+        int lastLength = end - lastStart;
+        ensureCapacity(2 + 1 + 11 + 1 + firstLength + lastLength);
+
+        length = 0;
+        boolean ascii = appendUpper(messageID, 0, 2);
+        buffer[length++] = ':';
+        appendInt(messageNum);
+        buffer[length++] = ':';
+        ascii &= appendUpper(text, start, firstEnd);
+        ascii &= appendUpper(text, lastStart, end);
+
+        if (!ascii || !asciiUpperCaseIsExact()) {
+            // Let the JDK handle special casing (e.g. "ß" -> "SS") exactly as before
+            String slow = (messageID.substring(0, 2) + ":" + messageNum + ":"
+                + text.substring(start, firstEnd) + text.substring(lastStart, end)).toUpperCase();
+            ensureCapacity(slow.length());
+            slow.getChars(0, slow.length(), buffer, 0);
+            length = slow.length();
+        }
+    }
+
+    /**
+     * Copies text[from, to) upper-cased; returns false if any character was not ASCII
+     */
+    private boolean appendUpper(String text, int from, int to) {
+        if (to - from < 0 || to > text.length()) {
+            // Same failure as the substring() call this replaces
+            throw new StringIndexOutOfBoundsException("begin " + from + ", end " + to + ", length " + text.length());
+        }
+        boolean ascii = true;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            } else if (c >= 0x80) {
+                ascii = false;
+            }
+            buffer[length++] = c;
+        }
+        return ascii;
+    }
+
+    private void appendInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            String digits = Integer.toString(value);
+            digits.getChars(0, digits.length(), buffer, length);
+            length += digits.length();
+            return;
+        }
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (buffer.length < needed) {
+            buffer = new char[Math.max(needed, buffer.length * 2)];
+        }
+    }
+
+    /**
+     * The characters matched by the regex \s that split("\\s+") used
+     */
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Turkish and Azeri upper-case 'i' to a dotted capital I
+     */
+    private static boolean asciiUpperCaseIsExact() {
+        String language = Locale.getDefault().getLanguage();
+        return !"tr".equals(language) && !"az".equals(language);
+    }
+}
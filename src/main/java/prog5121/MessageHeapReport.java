@@ -0,0 +1,171 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * MESSAGE HEAP REPORT
+ * Writes a messages.json file of generated messages, loads it several ways and
+ * reports the heap each way retains, as measured by MemoryMXBean after a full GC:
+ *
+ *   plain - one object per message holding five Strings, each message with its own
+ *           copy of the recipient and status (the layout before dictionary encoding)
+ *   eager - Message.loadMessagesFromJSON (recipient codes, status bytes)
+ *   lazy  - Message.loadLazyMessagesFromJSON (arena records)
+ *
+ * The messages come from a fixed seed, so runs with the same arguments load the same
+ * file. Give the JVM room for the largest layout, with -Xms equal to -Xmx so heap
+ * resizing stays out of the numbers, e.g. java -Xms2g -Xmx2g -cp ... prog5121.MessageHeapReport 1000000 5000
+ *
+ * Usage: java prog5121.MessageHeapReport [messages] [recipients]
+ * Add -Dchatapp.recipients.max=N below the recipient count to measure a full dictionary.
+ * @author Chumisa Haya
+ */
+public class MessageHeapReport {
+    private static final long SEED = 20231013L;
+    private static final String[] STATUSES = {"Sent", "Stored", "Disregarded"};
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    // A message as it was held before recipients and statuses were dictionary-encoded
+    private static final class PlainMessage {
+        final String messageID;
+        final String messageHash;
+        final String recipient;
+        final String messageText;
+        final String status;
+
+        PlainMessage(Message message) {
+            this.messageID = message.getMessageID();
+            this.messageHash = message.getMessageHash();
+            this.recipient = copy(message.getRecipient());
+            this.messageText = message.getMessageText();
+            this.status = copy(message.getStatus());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int recipients = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+
+        Path file = Files.createTempFile("heap-report", ".json");
+        try {
+            if (!Message.storeMessagesToJSON(generate(count, recipients), file.toString(), true)) {
+                System.out.println("❌ Could not write " + file);
+                return;
+            }
+            System.out.println(String.format("📦 %,d messages, %,d recipients, %,d bytes of JSON",
+                count, recipients, Files.size(file)));
+
+            long plain = measurePlain(file);
+            long eager = measure(() -> Message.loadMessagesFromJSON(file.toString()));
+            long lazy = measure(() -> Message.loadLazyMessagesFromJSON(file.toString()));
+
+            report("plain", plain, count, plain);
+            report("eager", eager, count, plain);
+            report("lazy", lazy, count, plain);
+            RecipientDictionary dictionary = RecipientDictionary.SHARED;
+            System.out.println(String.format("📇 Recipient dictionary: %,d of %,d codes in use",
+                dictionary.size(), dictionary.capacity()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * GENERATED MESSAGES
+     * Builds each message as it is written, so the whole set is never on the heap
+     *
+     * @param count - messages to generate
+     * @param recipients - distinct recipient numbers to spread them over
+     * @return Iterable - the messages, the same sequence on every call
+     */
+    static Iterable<Message> generate(int count, int recipients) {
+        return () -> new Iterator<Message>() {
+            private final SplittableRandom random = new SplittableRandom(SEED);
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Message next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                Message message = new Message();
+                message.setMessageID(String.valueOf(1_000_000_000L + next));
+                message.setRecipient("+2783" + (1_000_000 + random.nextInt(recipients)));
+                StringBuilder text = new StringBuilder();
+                int length = 20 + random.nextInt(200);
+                while (text.length() < length) {
+                    text.append("word").append(random.nextInt(1000)).append(' ');
+                }
+                message.setMessageText(text.toString().trim());
+                message.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+                message.setMessageHash(message.getMessageID().substring(0, 2) + ":" + next + ":GENERATED");
+                next++;
+                return message;
+            }
+        };
+    }
+
+    private interface Loader {
+        List<?> load();
+    }
+
+    /**
+     * @param loader - loads the file and returns what it retains
+     * @return long - heap bytes the loaded list keeps reachable
+     */
+    private static long measure(Loader loader) {
+        long before = usedAfterGC();
+        List<?> loaded = loader.load();
+        long after = usedAfterGC();
+        Reference.reachabilityFence(loaded);
+        return after - before;
+    }
+
+    private static long measurePlain(Path file) {
+        return measure(() -> {
+            List<PlainMessage> plain = new ArrayList<>();
+            for (Message message : Message.loadMessagesFromJSON(file.toString())) {
+                plain.add(new PlainMessage(message));
+            }
+            return plain;
+        });
+    }
+
+    // A parser that decodes every field hands each record its own String
+    private static String copy(String value) {
+        return value == null ? null : new String(value.toCharArray());
+    }
+
+    private static long usedAfterGC() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            MEMORY.gc();
+            used = Math.min(used, MEMORY.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static void report(String layout, long bytes, int count, long plain) {
+        System.out.println(String.format("📊 %-5s %,8.1f MB  %,6.1f bytes/message  %+6.1f%% vs plain",
+            layout, bytes / 1e6, bytes / (double) count, 100.0 * (bytes - plain) / plain));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.function.LongPredicate;
+
+/**
+ * MESSAGE ID GENERATOR
+ * Produces 10-digit numeric message IDs. Implementations must be safe to call from
+ * many threads at once.
+ * @author Chumisa Haya
+ */
+public interface MessageIDGenerator {
+    // Every generated ID stays within the 10-digit format
+    long MIN_ID = 1_000_000_000L;
+    long MAX_ID = 9_999_999_999L;
+
+    /**
+     * @return long - the next message ID, between MIN_ID and MAX_ID
+     */
+    long nextID();
+
+    /**
+     * CREATES A GENERATOR BY MODE NAME
+     *
+     * @param mode - "random", "snowflake" or "counter"
+     * @param inUse - tells every mode which IDs already exist (must be thread-safe if shared)
+     * @param highestExistingID - the counter mode starts after this ID
+     * @return MessageIDGenerator - the requested generator
+     */
+    static MessageIDGenerator forMode(String mode, LongPredicate inUse, long highestExistingID) {
+        switch (mode) {
+            case "random":
+                return new RandomMessageIDGenerator(inUse);
+            case "snowflake":
+                return new SnowflakeMessageIDGenerator(0, inUse);
+            case "counter":
+                return new CounterMessageIDGenerator(Math.max(MIN_ID, highestExistingID + 1), inUse);
+            default:
+                throw new IllegalArgumentException("Unknown message ID generator: " + mode);
+        }
+    }
+}
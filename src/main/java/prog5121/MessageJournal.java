@@ -0,0 +1,259 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * APPEND-ONLY MESSAGE JOURNAL
+ * Records every send/store/disregard/delete as one line of compact JSON at the end of
+ * a log file, so persisting a change costs the same no matter how many messages exist.
+ * The journal is replayed on top of the messages.json snapshot at startup and emptied
+ * whenever a new snapshot is written (compaction).
+ * @author Chumisa Haya
+ */
+public class MessageJournal implements AutoCloseable {
+    // Record operations, one per message status plus deletes
+    public static final String OP_SEND = "SEND";
+    public static final String OP_STORE = "STORE";
+    public static final String OP_DISREGARD = "DISREGARD";
+    public static final String OP_DELETE = "DELETE";
+
+    /**
+     * Receives journal records in the order they were written
+     */
+    public interface Listener {
+        void messageAdded(Message message);
+        void messageDeleted(String messageID, String messageHash);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final StringBuilder record = new StringBuilder(512);
+    private int recordCount = 0;
+    private int unsyncedCount = 0;
+
+    // Package-private so a test can hand in a channel that fails part way
+    MessageJournal(Path path, FileChannel channel, int syncEvery) {
+        this.path = path;
+        this.channel = channel;
+        this.syncEvery = syncEvery;
+    }
+
+    /**
+     * OPENS (OR CREATES) A JOURNAL FILE
+     *
+     * @param filename - the journal file name
+     * @param syncEvery - fsync after this many records; 1 syncs every record, 0 only on sync()
+     * @return MessageJournal - journal ready for replay and appends
+     * @throws IOException - if the file cannot be opened
+     */
+    public static MessageJournal open(String filename, int syncEvery) throws IOException {
+        Path path = Paths.get(filename);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new MessageJournal(path, channel, syncEvery);
+    }
+
+    /**
+     * REPLAYS THE JOURNAL
+     * Hands every complete record to the listener. A damaged record between good
+     * ones is reported and skipped; only a partly written last line (from a crash
+     * mid-append, so it has no newline) is cut off, so new records start on a clean line.
+     *
+     * @param listener - receives each record in order
+     * @return int - number of records replayed
+     * @throws IOException - if the file cannot be read
+     */
+    public int replay(Listener listener) throws IOException {
+        long validLength = 0;
+        int replayed = 0;
+        int lineNumber = 0;
+
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(0)), 64 * 1024);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+
+            lineNumber++;
+            validLength += line.size() + 1;
+            String text = line.toString(StandardCharsets.UTF_8);
+            line.reset();
+            try {
+                applyRecord(new JSONObject(text), listener);
+                replayed++;
+            } catch (JSONException e) {
+                // A whole line that does not parse was never a torn append: keep the records after it
+                System.out.println("⚠️ Skipping damaged journal record on line " + lineNumber + " of " + path
+                    + ": " + e.getMessage());
+            }
+        }
+
+        if (line.size() > 0) {
+            System.out.println("⚠️ Discarding incomplete journal tail in " + path);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+
+        recordCount = lineNumber;
+        return replayed;
+    }
+
+    private static void applyRecord(JSONObject json, Listener listener) {
+        String op = json.getString("op");
+        if (OP_DELETE.equals(op)) {
+            listener.messageDeleted(json.getString("messageID"), json.getString("messageHash"));
+        } else {
+            listener.messageAdded(Message.fromJSON(json.getJSONObject("message")));
+        }
+    }
+
+    /**
+     * APPENDS A SEND/STORE/DISREGARD RECORD
+     *
+     * @param message - the message that was added
+     * @throws IOException - if the record cannot be written
+     */
+    public void appendAdd(Message message) throws IOException {
+        record.setLength(0);
+        record.append("{\"op\":\"").append(opFor(message.getStatus())).append("\",\"message\":");
+        MessageJsonWriter.writeObject(record, message, null);
+        record.append("}\n");
+        write(1, false);
+    }
+
+    /**
+     * APPENDS A BATCH OF SEND/STORE/DISREGARD RECORDS
+     * All records go out in one write followed by one sync, whatever syncEvery is
+     *
+     * @param messages - the messages that were added, in order
+     * @throws IOException - if the records cannot be written or synced
+     */
+    public void appendAll(List<Message> messages) throws IOException {
+        record.setLength(0);
+        for (Message message : messages) {
+            record.append("{\"op\":\"").append(opFor(message.getStatus())).append("\",\"message\":");
+            MessageJsonWriter.writeObject(record, message, null);
+            record.append("}\n");
+        }
+        write(messages.size(), true);
+    }
+
+    /**
+     * APPENDS A DELETE RECORD
+     *
+     * @param message - the message that was deleted
+     * @throws IOException - if the record cannot be written
+     */
+    public void appendDelete(Message message) throws IOException {
+        record.setLength(0);
+        record.append("{\"op\":\"").append(OP_DELETE).append("\",\"messageID\":")
+              .append(JSONObject.quote(message.getMessageID()))
+              .append(",\"messageHash\":")
+              .append(JSONObject.quote(message.getMessageHash()))
+              .append("}\n");
+        write(1, false);
+    }
+
+    private static String opFor(String status) {
+        if ("Sent".equals(status)) {
+            return OP_SEND;
+        } else if ("Stored".equals(status)) {
+            return OP_STORE;
+        }
+        return OP_DISREGARD;
+    }
+
+    /**
+     * Writes the records in the buffer, syncing when due. If the write or sync fails the
+     * file is cut back to where the records began, so a torn fragment never sits in
+     * front of the next record (replay would drop that record with it as damaged).
+     */
+    private void write(int records, boolean syncNow) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(record.toString());
+        long start = channel.position();
+        boolean synced = false;
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (syncNow || (syncEvery > 0 && unsyncedCount + records >= syncEvery)) {
+                channel.force(false);
+                synced = true;
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+        recordCount += records;
+        unsyncedCount = synced ? 0 : unsyncedCount + records;
+    }
+
+    /**
+     * Forces every appended record to disk
+     *
+     * @throws IOException - if the sync fails
+     */
+    public void sync() throws IOException {
+        if (unsyncedCount > 0) {
+            channel.force(false);
+            unsyncedCount = 0;
+        }
+    }
+
+    /**
+     * EMPTIES THE JOURNAL
+     * Called once a snapshot holding every journalled change has been written
+     *
+     * @throws IOException - if the file cannot be truncated
+     */
+    public void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        recordCount = 0;
+        unsyncedCount = 0;
+    }
+
+    /**
+     * @return int - records in the journal since the last snapshot
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * STREAMING JSON MESSAGE READER
+ * Reads a JSON array of messages token by token and builds each Message as soon as
+ * its object closes. Only one record is held in memory at a time, so the heap cost
+ * of a load does not grow with the size of the file.
+ * @author Chumisa Haya
+ */
+public class MessageJsonReader implements Iterator<Message>, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int RECIPIENT_CACHE = 8192; // a power of two
+
+    private final Reader in;
+    private final boolean fragment; // objects only, no enclosing brackets
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder text = new StringBuilder(256);
+    // Recipients recently read, by hash of their chars: a repeat is not copied into a new String
+    private final String[] recipients = new String[RECIPIENT_CACHE];
+    private int position = 0;
+    private int limit = 0;
+    private long offset = 0; // characters consumed before the current buffer
+
+    private boolean started = false;
+    private boolean finished = false;
+    private boolean atEnd = false;
+    private Message next = null;
+
+    /**
+     * Creates a reader over any character source holding a JSON array of messages
+     *
+     * @param in - the character source (not buffered again by this class)
+     */
+    public MessageJsonReader(Reader in) {
+        this(in, false);
+    }
+
+    /**
+     * @param in - the character source
+     * @param fragment - true if the source is a run of comma-separated message objects
+     *        cut out of an array (as ParallelMessageLoader splits a file), ending at
+     *        the end of input instead of a closing bracket
+     */
+    MessageJsonReader(Reader in, boolean fragment) {
+        this.in = in;
+        this.fragment = fragment;
+    }
+
+    /**
+     * OPENS A MESSAGE FILE FOR STREAMING
+     *
+     * @param filename - the JSON file name
+     * @return MessageJsonReader - reader positioned before the first message
+     * @throws IOException - if the file cannot be opened
+     */
+    public static MessageJsonReader open(String filename) throws IOException {
+        return new MessageJsonReader(
+            new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * READS THE NEXT MESSAGE
+     *
+     * @return Message - the next message, or null once the array is exhausted
+     * @throws IOException - if the input cannot be read or is not a message array
+     */
+    public Message readMessage() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        if (!started && fragment) {
+            started = true;
+            int c = skipWhitespace();
+            if (c == -1) {
+                finished = true;
+                return null;
+            }
+            unread();
+        } else if (!started) {
+            started = true;
+            int c = skipWhitespace();
+            if (c == -1) {
+                // An empty file holds no messages
+                finished = true;
+                return null;
+            }
+            expect(c, '[');
+            c = skipWhitespace();
+            if (c == ']') {
+                finished = true;
+                return null;
+            }
+            unread();
+        } else {
+            int c = skipWhitespace();
+            if (c == (fragment ? -1 : ']')) {
+                finished = true;
+                return null;
+            }
+            expect(c, ',');
+        }
+
+        expect(skipWhitespace(), '{');
+        return readMessageObject();
+    }
+
+    /**
+     * Parses the members of one message object; the opening brace is already consumed
+     */
+    private Message readMessageObject() throws IOException {
+        Message message = new Message();
+
+        int c = skipWhitespace();
+        if (c == '}') {
+            return message;
+        }
+
+        while (true) {
+            expect(c, '"');
+            String key = readString();
+            expect(skipWhitespace(), ':');
+
+            c = skipWhitespace();
+            if (c == '"') {
+                String value = key.equals("recipient") ? readRecipient() : readString();
+                switch (key) {
+                    case "messageID":
+                        message.setMessageID(value);
+                        break;
+                    case "messageHash":
+                        message.setMessageHash(value);
+                        break;
+                    case "recipient":
+                        message.setRecipient(value);
+                        break;
+                    case "messageText":
+                        message.setMessageText(value);
+                        break;
+                    case "status":
+                        message.setStatus(value);
+                        break;
+                    default:
+                        // Unknown members are ignored so newer files still load
+                        break;
+                }
+            } else {
+                unread();
+                skipValue();
+            }
+
+            c = skipWhitespace();
+            if (c == '}') {
+                return message;
+            }
+            expect(c, ',');
+            c = skipWhitespace();
+        }
+    }
+
+    /**
+     * Reads a recipient like readString, returning the shared RecipientDictionary copy
+     */
+    private String readRecipient() throws IOException {
+        readChars();
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (RECIPIENT_CACHE - 1);
+        String cached = recipients[slot];
+        if (cached == null || !cached.contentEquals(text)) {
+            cached = RecipientDictionary.SHARED.canonical(text.toString());
+            recipients[slot] = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Reads a string body after its opening quote, decoding escape sequences
+     */
+    private String readString() throws IOException {
+        readChars();
+        return text.toString();
+    }
+
+    /**
+     * Decodes a string body into text, consuming the closing quote
+     */
+    private void readChars() throws IOException {
+        text.setLength(0);
+        while (true) {
+            // Copy runs of plain characters straight out of the buffer
+            int start = position;
+            while (position < limit) {
+                char ch = buffer[position];
+                if (ch == '"' || ch == '\\') {
+                    break;
+                }
+                position++;
+            }
+            text.append(buffer, start, position - start);
+
+            if (position == limit) {
+                if (!fill()) {
+                    throw error("Unterminated string");
+                }
+                continue;
+            }
+
+            char ch = buffer[position++];
+            if (ch == '"') {
+                return;
+            }
+
+            int escaped = read();
+            switch (escaped) {
+                case '"': text.append('"'); break;
+                case '\\': text.append('\\'); break;
+                case '/': text.append('/'); break;
+                case 'b': text.append('\b'); break;
+                case 'f': text.append('\f'); break;
+                case 'n': text.append('\n'); break;
+                case 'r': text.append('\r'); break;
+                case 't': text.append('\t'); break;
+                case 'u': text.append(readUnicodeEscape()); break;
+                default: throw error("Invalid escape sequence");
+            }
+        }
+    }
+
+    private char readUnicodeEscape() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+                throw error("Invalid unicode escape");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    /**
+     * Skips a non-string value (number, literal, nested object or array)
+     */
+    private void skipValue() throws IOException {
+        int depth = 0;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw error("Unexpected end of input");
+            }
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    unread();
+                    return;
+                }
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                unread();
+                return;
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private void expect(int actual, char expected) throws IOException {
+        if (actual != expected) {
+            throw error("Expected '" + expected + "' but found "
+                + (actual == -1 ? "end of input" : "'" + (char) actual + "'"));
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            atEnd = true;
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private void unread() {
+        // Nothing was consumed when the last read hit the end of input
+        if (!atEnd) {
+            position--;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int count = in.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+    private IOException error(String reason) {
+        return new IOException(reason + " at character " + (offset + position));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readMessage();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Message next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Message message = next;
+        next = null;
+        return message;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
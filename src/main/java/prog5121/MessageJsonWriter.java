@@ -0,0 +1,238 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * STREAMING JSON MESSAGE WRITER
+ * Writes a JSON array of messages one record at a time without building a JSON tree
+ * or one large String. Saves go through a temporary file that is synced and then
+ * renamed over the target, so an interrupted save never leaves a truncated file.
+ * @author Chumisa Haya
+ */
+public class MessageJsonWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final boolean compact;
+    private int count = 0;
+    private boolean finished = false;
+
+    /**
+     * Creates a writer that emits a JSON array of messages
+     *
+     * @param out - destination for the JSON text (should already be buffered)
+     * @param compact - true for single-line output, false for 4-space indentation
+     */
+    public MessageJsonWriter(Writer out, boolean compact) {
+        this.out = out;
+        this.compact = compact;
+    }
+
+    /**
+     * WRITES ONE MESSAGE TO THE ARRAY
+     *
+     * @param message - the message to append
+     * @throws IOException - if the destination cannot be written
+     */
+    public void writeMessage(Message message) throws IOException {
+        out.write(count == 0 ? "[" : ",");
+        if (!compact) {
+            out.write("\n    ");
+        }
+        writeObject(out, message, compact ? null : "    ");
+        count++;
+    }
+
+    /**
+     * Closes the array and flushes it, leaving the destination open
+     *
+     * @throws IOException - if the destination cannot be written
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (count == 0) {
+            out.write("[]");
+        } else {
+            out.write(compact ? "]" : "\n]");
+        }
+        out.flush();
+    }
+
+    /**
+     * Closes the array and the underlying destination
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return int - number of messages written so far
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * WRITES A SINGLE MESSAGE OBJECT
+     * Shared by the array writer and anything else that needs one record as JSON
+     *
+     * @param out - destination for the JSON text
+     * @param message - the message to write
+     * @param indent - indentation of the enclosing level, or null for compact output
+     * @throws IOException - if the destination cannot be written
+     */
+    public static void writeObject(Appendable out, Message message, String indent) throws IOException {
+        String memberIndent = indent == null ? null : indent + "    ";
+        out.append('{');
+        boolean empty = !writeMember(out, "messageID", message.getMessageID(), memberIndent, true);
+        empty &= !writeMember(out, "messageHash", message.getMessageHash(), memberIndent, empty);
+        empty &= !writeMember(out, "recipient", message.getRecipient(), memberIndent, empty);
+        empty &= !writeMember(out, "messageText", message.getMessageText(), memberIndent, empty);
+        empty &= !writeMember(out, "status", message.getStatus(), memberIndent, empty);
+        if (indent != null && !empty) {
+            out.append('\n').append(indent);
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes one member; a null value is left out, as org.json's put(key, null) did
+     *
+     * @return boolean - true if the member was written
+     */
+    private static boolean writeMember(Appendable out, String key, String value, String indent,
+                                       boolean first) throws IOException {
+        if (value == null) {
+            return false;
+        }
+        if (!first) {
+            out.append(',');
+        }
+        if (indent != null) {
+            out.append('\n').append(indent);
+        }
+        out.append('"').append(key).append(indent == null ? "\":" : "\": ");
+        writeString(out, value);
+        return true;
+    }
+
+    /**
+     * Writes a quoted JSON string, escaping only what the JSON grammar requires
+     */
+    private static void writeString(Appendable out, String value) throws IOException {
+        out.append('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch >= 0x20 && ch != '"' && ch != '\\') {
+                continue;
+            }
+
+            out.append(value, start, i);
+            start = i + 1;
+            switch (ch) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\b': out.append("\\b"); break;
+                case '\f': out.append("\\f"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    out.append("\\u00").append(HEX[ch >> 4]).append(HEX[ch & 0xF]);
+            }
+        }
+        out.append(value, start, length);
+        out.append('"');
+    }
+
+    /**
+     * SAVES MESSAGES ATOMICALLY
+     * Streams the messages into a temporary file next to the target, forces it to
+     * disk and renames it over the target in one step
+     *
+     * @param messages - the messages to save, in order
+     * @param target - the JSON file to replace
+     * @param compact - true for single-line output, false for indented output
+     * @return int - number of messages written
+     * @throws IOException - if the file cannot be written or replaced
+     */
+    public static int writeAtomically(Iterable<Message> messages, Path target, boolean compact)
+            throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+
+        int written;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new BufferedWriter(
+                Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+            MessageJsonWriter json = new MessageJsonWriter(writer, compact);
+            for (Message message : messages) {
+                json.writeMessage(message);
+            }
+            json.finish();
+            channel.force(true);
+            written = json.getCount();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        replace(temp, absolute);
+        return written;
+    }
+
+    /**
+     * RENAMES A FINISHED TEMPORARY FILE OVER ITS TARGET
+     * Shared by every writer that saves through "<target>.tmp". The directory is
+     * synced afterwards, so the rename itself survives a crash.
+     *
+     * @param temp - the complete, synced temporary file
+     * @param target - the absolute path it replaces
+     * @throws IOException - if the file cannot be renamed (the temporary file is then deleted)
+     */
+    static void replace(Path temp, Path target) throws IOException {
+        try {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Some platforms (Windows) cannot open a directory; the rename is still atomic there
+        }
+    }
+}
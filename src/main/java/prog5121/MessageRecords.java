@@ -0,0 +1,47 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+/**
+ * MESSAGE RECORD SOURCE
+ * Raw encoded messages that LazyMessage views decode from. A record is identified by
+ * a long whose meaning is up to the source (an index, or a page and offset).
+ * Sources must not change a record once a view onto it has been handed out.
+ * @author Chumisa Haya
+ */
+interface MessageRecords {
+    // Text fields that are decoded on demand
+    int ID = 0;
+    int HASH = 1;
+    int RECIPIENT = 2;
+    int TEXT = 3;
+
+    /**
+     * @param record - the record
+     * @param field - ID, HASH, RECIPIENT or TEXT
+     * @return String - the field, freshly decoded (a recipient may be the shared copy
+     *         from RecipientDictionary)
+     */
+    String field(long record, int field);
+
+    /**
+     * @param record - the record
+     * @return String - its status, without decoding any text
+     */
+    String status(long record);
+
+    /**
+     * @param record - the record
+     * @return int - length of its text in chars, without decoding it
+     */
+    int textLength(long record);
+
+    /**
+     * @param record - the record
+     * @param maxChars - most characters of the text to decode
+     * @return String - as Message.getPreview(maxChars)
+     */
+    String preview(long record, int maxChars);
+}
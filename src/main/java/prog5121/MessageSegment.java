@@ -0,0 +1,104 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+/**
+ * BINARY MESSAGE SEGMENT FORMAT
+ * Layout of a .seg file, shared by MessageSegmentWriter and MessageSegmentReader.
+ * All numbers are big-endian; all strings are UTF-8.
+ *
+ *   header      16 bytes   magic "CHSG", version, 8 reserved bytes
+ *   data        variable   per message: [ID text] text, hash, [status text]
+ *   entries     40 bytes   one fixed-width entry per message, in message order
+ *   recipients  variable   each distinct recipient once: unsigned short bytes, text
+ *   trailer     24 bytes   entry table offset, message count, version, recipient count, magic
+ *
+ * Entry: long ID (or NO_NUMERIC_ID when the ID is kept as text), long data offset,
+ * int recipient (index into the recipient table), int text bytes, int text chars,
+ * unsigned short hash bytes, unsigned short ID text bytes, unsigned short status
+ * text bytes, status code, 5 pad.
+ *
+ * Version 2 moved recipients out of the data into the table; version 1 files are
+ * rejected and can be rebuilt from the JSON file with MessageSegmentConverter.
+ *
+ * The trailer is written last, so a segment cut short by a crash is rejected on open.
+ * @author Chumisa Haya
+ */
+final class MessageSegment {
+    static final int MAGIC = 0x43485347; // "CHSG"
+    static final int VERSION = 2;
+
+    static final int HEADER_BYTES = 16;
+    static final int ENTRY_BYTES = 40;
+    static final int TRAILER_BYTES = 24;
+
+    // Entry field offsets
+    static final int ENTRY_ID = 0;
+    static final int ENTRY_DATA_OFFSET = 8;
+    static final int ENTRY_RECIPIENT = 16;
+    static final int ENTRY_TEXT_BYTES = 20;
+    static final int ENTRY_TEXT_CHARS = 24;
+    static final int ENTRY_HASH_BYTES = 28;
+    static final int ENTRY_ID_BYTES = 30;
+    static final int ENTRY_STATUS_BYTES = 32;
+    static final int ENTRY_STATUS = 34;
+
+    static final long NO_NUMERIC_ID = -1L;
+    static final int MAX_SHORT_FIELD = 0xFFFF;
+
+    // Status codes; OTHER keeps the status text in the data region. Message, MessageStore,
+    // MessageArchive and MessageStatistics all use these codes.
+    static final byte STATUS_NONE = 0;
+    static final byte STATUS_SENT = 1;
+    static final byte STATUS_STORED = 2;
+    static final byte STATUS_DISREGARDED = 3;
+    static final byte STATUS_OTHER = 4;
+    static final int STATUS_CODES = 5;
+
+    private MessageSegment() {
+    }
+
+    static byte statusCode(String status) {
+        if (status == null || status.isEmpty()) {
+            return STATUS_NONE;
+        }
+        switch (status) {
+            case "Sent":
+                return STATUS_SENT;
+            case "Stored":
+                return STATUS_STORED;
+            case "Disregarded":
+                return STATUS_DISREGARDED;
+            default:
+                return STATUS_OTHER;
+        }
+    }
+
+    /**
+     * @param code - a status code other than STATUS_OTHER
+     * @return String - the status it stands for
+     */
+    static String statusName(byte code) {
+        switch (code) {
+            case STATUS_SENT:
+                return "Sent";
+            case STATUS_STORED:
+                return "Stored";
+            case STATUS_DISREGARDED:
+                return "Disregarded";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * @param messageID - the message ID
+     * @return long - the ID as a number if it converts back to exactly the same text, else NO_NUMERIC_ID
+     */
+    static long numericID(String messageID) {
+        long id = Message.messageIDToLong(messageID);
+        return id >= 0 && Long.toString(id).equals(messageID) ? id : NO_NUMERIC_ID;
+    }
+}
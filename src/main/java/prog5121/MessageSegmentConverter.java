@@ -0,0 +1,69 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * MESSAGE SEGMENT CONVERTER
+ * Converts between the messages.json layout and the binary segment format. Both
+ * directions stream one message at a time, so files larger than the heap convert.
+ *
+ * Usage: java prog5121.MessageSegmentConverter to-segment messages.json messages.seg
+ *        java prog5121.MessageSegmentConverter to-json messages.seg messages.json
+ * @author Chumisa Haya
+ */
+public class MessageSegmentConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 3 || !("to-segment".equals(args[0]) || "to-json".equals(args[0]))) {
+            System.out.println("Usage: MessageSegmentConverter to-segment|to-json <from> <to>");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            int converted = "to-segment".equals(args[0])
+                ? jsonToSegment(Paths.get(args[1]), Paths.get(args[2]))
+                : segmentToJSON(Paths.get(args[1]), Paths.get(args[2]));
+            System.out.println(String.format("✅ Converted %d messages from %s to %s in %.1f ms",
+                converted, args[1], args[2], (System.nanoTime() - start) / 1e6));
+        } catch (IOException e) {
+            System.out.println("❌ Conversion failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * CONVERTS messages.json TO A SEGMENT
+     *
+     * @param jsonFile - a file in the messages.json layout
+     * @param segmentFile - the segment file to write
+     * @return int - number of messages converted
+     * @throws IOException - if either file cannot be read or written
+     */
+    public static int jsonToSegment(Path jsonFile, Path segmentFile) throws IOException {
+        try (MessageJsonReader reader = MessageJsonReader.open(jsonFile.toString())) {
+            return MessageSegmentWriter.writeAtomically(() -> reader, segmentFile);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * CONVERTS A SEGMENT TO messages.json
+     *
+     * @param segmentFile - the segment file to read
+     * @param jsonFile - the JSON file to write, indented like messages.json
+     * @return int - number of messages converted
+     * @throws IOException - if either file cannot be read or written
+     */
+    public static int segmentToJSON(Path segmentFile, Path jsonFile) throws IOException {
+        try (MessageSegmentReader reader = MessageSegmentReader.open(segmentFile)) {
+            return MessageJsonWriter.writeAtomically(reader, jsonFile, false);
+        }
+    }
+}
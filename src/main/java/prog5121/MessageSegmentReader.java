@@ -0,0 +1,346 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * BINARY MESSAGE SEGMENT READER
+ * Opens a MessageSegment file with FileChannel.map, so opening costs only a check of
+ * the header and trailer however large the file is; pages are read by the OS when a
+ * message is first touched. Messages are decoded on demand by index, and single
+ * fields (ID, status, text length) can be read without decoding the rest. getView()
+ * returns a LazyMessage that decodes straight from the mapping each time it is read.
+ * The recipient table is read once on open into the shared RecipientDictionary, so
+ * a recipient is never decoded per message.
+ *
+ * Files over 2 GB are mapped as several 1 GB windows; the few values that straddle
+ * a window boundary are assembled byte by byte.
+ *
+ * Reads do not change the reader's state, so one reader may be shared by threads.
+ * @author Chumisa Haya
+ */
+public class MessageSegmentReader implements Iterable<Message>, Closeable, MessageRecords {
+    private static final int WINDOW_SHIFT = 30; // 1 GB windows
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] windows;
+    private final long fileSize;
+    private final long tableOffset;
+    private final int count;
+    private final String[] recipients; // shared copies from RecipientDictionary
+
+    private MessageSegmentReader(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        if (fileSize < MessageSegment.HEADER_BYTES + MessageSegment.TRAILER_BYTES) {
+            throw new IOException(path + " is too short to be a message segment");
+        }
+
+        int windowCount = (int) ((fileSize + WINDOW_SIZE - 1) >>> WINDOW_SHIFT);
+        this.windows = new MappedByteBuffer[windowCount];
+        for (int w = 0; w < windowCount; w++) {
+            long start = (long) w << WINDOW_SHIFT;
+            windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+        }
+
+        long trailer = fileSize - MessageSegment.TRAILER_BYTES;
+        if (getInt(0) != MessageSegment.MAGIC || getInt(trailer + 20) != MessageSegment.MAGIC) {
+            throw new IOException(path + " is not a complete message segment (bad magic number)");
+        }
+        if (getInt(4) != MessageSegment.VERSION || getInt(trailer + 12) != MessageSegment.VERSION) {
+            throw new IOException(path + " has unsupported segment version " + getInt(4));
+        }
+        this.tableOffset = getLong(trailer);
+        this.count = getInt(trailer + 8);
+        int recipientCount = getInt(trailer + 16);
+        if (count < 0 || tableOffset < MessageSegment.HEADER_BYTES || recipientCount < 0
+                || tableOffset + (long) count * MessageSegment.ENTRY_BYTES + 2L * recipientCount > trailer) {
+            throw new IOException(path + " has a damaged entry table");
+        }
+
+        this.recipients = new String[recipientCount];
+        long offset = tableOffset + (long) count * MessageSegment.ENTRY_BYTES;
+        for (int i = 0; i < recipientCount; i++) {
+            int length = offset + 2 <= trailer ? getUnsignedShort(offset) : -1;
+            if (length < 0 || offset + 2 + length > trailer) {
+                throw new IOException(path + " has a damaged recipient table");
+            }
+            recipients[i] = RecipientDictionary.SHARED.canonical(getString(offset + 2, length));
+            offset += 2 + length;
+        }
+        if (offset != trailer) {
+            throw new IOException(path + " has a damaged recipient table");
+        }
+    }
+
+    /**
+     * OPENS A SEGMENT FILE
+     *
+     * @param path - the segment file
+     * @return MessageSegmentReader - reader over the mapped file
+     * @throws IOException - if the file is missing, incomplete or not a segment
+     */
+    public static MessageSegmentReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MessageSegmentReader(path, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return int - number of messages in the segment
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * DECODES ONE MESSAGE
+     *
+     * @param index - position of the message (0 to size() - 1)
+     * @return Message - a new Message holding the stored fields
+     */
+    public Message get(int index) {
+        long entry = entryOffset(index);
+        long offset = getLong(entry + MessageSegment.ENTRY_DATA_OFFSET);
+        int idBytes = getUnsignedShort(entry + MessageSegment.ENTRY_ID_BYTES);
+        int textBytes = getInt(entry + MessageSegment.ENTRY_TEXT_BYTES);
+        int hashBytes = getUnsignedShort(entry + MessageSegment.ENTRY_HASH_BYTES);
+        int statusBytes = getUnsignedShort(entry + MessageSegment.ENTRY_STATUS_BYTES);
+
+        Message message = new Message();
+        long numericID = getLong(entry + MessageSegment.ENTRY_ID);
+        message.setMessageID(numericID == MessageSegment.NO_NUMERIC_ID
+            ? getString(offset, idBytes) : Long.toString(numericID));
+        offset += idBytes;
+        message.setRecipient(recipient(entry));
+        message.setMessageText(getString(offset, textBytes));
+        offset += textBytes;
+        message.setMessageHash(getString(offset, hashBytes));
+        offset += hashBytes;
+
+        byte status = getByte(entry + MessageSegment.ENTRY_STATUS);
+        message.setStatus(status == MessageSegment.STATUS_OTHER
+            ? getString(offset, statusBytes) : MessageSegment.statusName(status));
+        return message;
+    }
+
+    /**
+     * LAZY VIEW OF ONE MESSAGE
+     * The view stays readable after close(), as the mapping lives until it is unreferenced
+     *
+     * @param index - position of the message (0 to size() - 1)
+     * @return Message - a LazyMessage backed by the mapped file
+     */
+    public Message getView(int index) {
+        entryOffset(index);
+        return new LazyMessage(this, index);
+    }
+
+    /**
+     * @param index - position of the message
+     * @return String - its message ID, read without decoding the rest
+     */
+    public String getMessageID(int index) {
+        long entry = entryOffset(index);
+        long numericID = getLong(entry + MessageSegment.ENTRY_ID);
+        if (numericID != MessageSegment.NO_NUMERIC_ID) {
+            return Long.toString(numericID);
+        }
+        return getString(getLong(entry + MessageSegment.ENTRY_DATA_OFFSET),
+            getUnsignedShort(entry + MessageSegment.ENTRY_ID_BYTES));
+    }
+
+    /**
+     * @param index - position of the message
+     * @return String - its status, read without decoding the rest
+     */
+    public String getStatus(int index) {
+        byte status = getByte(entryOffset(index) + MessageSegment.ENTRY_STATUS);
+        return status == MessageSegment.STATUS_OTHER ? get(index).getStatus() : MessageSegment.statusName(status);
+    }
+
+    /**
+     * @param index - position of the message
+     * @return int - length of its text in chars, from the entry alone
+     */
+    public int getMessageTextLength(int index) {
+        return getInt(entryOffset(index) + MessageSegment.ENTRY_TEXT_CHARS);
+    }
+
+    /**
+     * FINDS A MESSAGE BY ID
+     * Scans the entry table only; no message data is read for numeric IDs
+     *
+     * @param messageID - the ID to find
+     * @return int - the message's index, or -1 if not present
+     */
+    public int indexOf(String messageID) {
+        long numericID = MessageSegment.numericID(messageID);
+        for (int i = 0; i < count; i++) {
+            long entry = entryOffset(i);
+            long stored = getLong(entry + MessageSegment.ENTRY_ID);
+            if (numericID != MessageSegment.NO_NUMERIC_ID) {
+                if (stored == numericID) {
+                    return i;
+                }
+            } else if (stored == MessageSegment.NO_NUMERIC_ID && getMessageID(i).equals(messageID)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String field(long record, int field) {
+        if (field == ID) {
+            return getMessageID((int) record);
+        }
+        long entry = entryOffset((int) record);
+        if (field == RECIPIENT) {
+            return recipient(entry);
+        }
+        long offset = getLong(entry + MessageSegment.ENTRY_DATA_OFFSET) + getUnsignedShort(entry + MessageSegment.ENTRY_ID_BYTES);
+        int textBytes = getInt(entry + MessageSegment.ENTRY_TEXT_BYTES);
+        if (field == TEXT) {
+            return getString(offset, textBytes);
+        }
+        return getString(offset + textBytes, getUnsignedShort(entry + MessageSegment.ENTRY_HASH_BYTES));
+    }
+
+    @Override
+    public String status(long record) {
+        return getStatus((int) record);
+    }
+
+    @Override
+    public int textLength(long record) {
+        return getMessageTextLength((int) record);
+    }
+
+    @Override
+    public String preview(long record, int maxChars) {
+        long entry = entryOffset((int) record);
+        long offset = getLong(entry + MessageSegment.ENTRY_DATA_OFFSET) + getUnsignedShort(entry + MessageSegment.ENTRY_ID_BYTES);
+        int textChars = getInt(entry + MessageSegment.ENTRY_TEXT_CHARS);
+        // A char is at most three UTF-8 bytes, so this prefix always covers the preview
+        int length = (int) Math.min(getInt(entry + MessageSegment.ENTRY_TEXT_BYTES), (long) maxChars * 3 + 3);
+        byte[] bytes = new byte[length];
+        readBytes(offset, bytes);
+        return LazyMessage.preview(bytes, 0, length, textChars, maxChars);
+    }
+
+    @Override
+    public Iterator<Message> iterator() {
+        return new Iterator<Message>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Message next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    public Path getPath() { return path; }
+    public long getFileSize() { return fileSize; }
+
+    /**
+     * Closes the file; the mappings are released once no longer referenced
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String recipient(long entry) {
+        int code = getInt(entry + MessageSegment.ENTRY_RECIPIENT);
+        if (code < 0 || code >= recipients.length) {
+            throw new IllegalStateException(path + " has a damaged entry: recipient " + code + " of " + recipients.length);
+        }
+        return recipients[code];
+    }
+
+    private long entryOffset(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Message " + index + " of " + count);
+        }
+        return tableOffset + (long) index * MessageSegment.ENTRY_BYTES;
+    }
+
+    // Absolute reads across windows
+
+    private byte getByte(long position) {
+        return windows[(int) (position >>> WINDOW_SHIFT)].get((int) (position & (WINDOW_SIZE - 1)));
+    }
+
+    private int getUnsignedShort(long position) {
+        return ((getByte(position) & 0xFF) << 8) | (getByte(position + 1) & 0xFF);
+    }
+
+    private int getInt(long position) {
+        int within = (int) (position & (WINDOW_SIZE - 1));
+        if (within <= WINDOW_SIZE - 4) {
+            return windows[(int) (position >>> WINDOW_SHIFT)].getInt(within);
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (getByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private long getLong(long position) {
+        int within = (int) (position & (WINDOW_SIZE - 1));
+        if (within <= WINDOW_SIZE - 8) {
+            return windows[(int) (position >>> WINDOW_SHIFT)].getLong(within);
+        }
+        return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    private String getString(long position, int length) {
+        if (length == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        readBytes(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void readBytes(long position, byte[] bytes) {
+        int copied = 0;
+        while (copied < bytes.length) {
+            long at = position + copied;
+            int within = (int) (at & (WINDOW_SIZE - 1));
+            MappedByteBuffer window = windows[(int) (at >>> WINDOW_SHIFT)];
+            int chunk = Math.min(bytes.length - copied, window.limit() - within);
+            window.get(within, bytes, copied, chunk);
+            copied += chunk;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BINARY MESSAGE SEGMENT WRITER
+ * Streams messages into the MessageSegment format: message data is written as it
+ * arrives, the fixed-width entries are collected in memory (40 bytes per message)
+ * and written after the data, followed by the table of distinct recipients the
+ * entries point into and the trailer.
+ * @author Chumisa Haya
+ */
+public class MessageSegmentWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private long position;
+    private byte[] entries = new byte[MessageSegment.ENTRY_BYTES * 1024];
+    private int count = 0;
+    private final Map<String, Integer> recipientCodes = new HashMap<>();
+    private final List<byte[]> recipients = new ArrayList<>();
+
+    private MessageSegmentWriter(DataOutputStream out) throws IOException {
+        this.out = out;
+        out.writeInt(MessageSegment.MAGIC);
+        out.writeInt(MessageSegment.VERSION);
+        out.writeLong(0L); // reserved
+        this.position = MessageSegment.HEADER_BYTES;
+    }
+
+    /**
+     * WRITES ONE MESSAGE
+     *
+     * @param message - the message to append
+     * @throws IOException - if the message cannot be written
+     */
+    public void writeMessage(Message message) throws IOException {
+        String messageID = message.getMessageID();
+        long numericID = MessageSegment.numericID(messageID);
+        byte[] idText = numericID == MessageSegment.NO_NUMERIC_ID ? utf8(messageID) : new byte[0];
+        int recipient = recipientCode(message.getRecipient());
+        String messageText = message.getMessageText();
+        byte[] text = utf8(messageText);
+        byte[] hash = utf8(message.getMessageHash());
+        byte status = MessageSegment.statusCode(message.getStatus());
+        byte[] statusText = status == MessageSegment.STATUS_OTHER ? utf8(message.getStatus()) : new byte[0];
+
+        if (idText.length > MessageSegment.MAX_SHORT_FIELD || hash.length > MessageSegment.MAX_SHORT_FIELD
+                || statusText.length > MessageSegment.MAX_SHORT_FIELD) {
+            throw new IOException("Message " + messageID + " has an ID, hash or status over 65535 bytes");
+        }
+
+        long dataOffset = position;
+        out.write(idText);
+        out.write(text);
+        out.write(hash);
+        out.write(statusText);
+        position += idText.length + text.length + hash.length + statusText.length;
+
+        if ((count + 1) * MessageSegment.ENTRY_BYTES > entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        int e = count * MessageSegment.ENTRY_BYTES;
+        putLong(e + MessageSegment.ENTRY_ID, numericID);
+        putLong(e + MessageSegment.ENTRY_DATA_OFFSET, dataOffset);
+        putInt(e + MessageSegment.ENTRY_RECIPIENT, recipient);
+        putInt(e + MessageSegment.ENTRY_TEXT_BYTES, text.length);
+        putInt(e + MessageSegment.ENTRY_TEXT_CHARS, messageText == null ? 0 : messageText.length());
+        putShort(e + MessageSegment.ENTRY_HASH_BYTES, hash.length);
+        putShort(e + MessageSegment.ENTRY_ID_BYTES, idText.length);
+        putShort(e + MessageSegment.ENTRY_STATUS_BYTES, statusText.length);
+        entries[e + MessageSegment.ENTRY_STATUS] = status;
+        count++;
+    }
+
+    /**
+     * @return int - the recipient's index in this segment's table, adding it if new
+     */
+    private int recipientCode(String recipient) throws IOException {
+        String key = recipient == null ? "" : recipient;
+        Integer code = recipientCodes.get(key);
+        if (code == null) {
+            byte[] bytes = utf8(key);
+            if (bytes.length > MessageSegment.MAX_SHORT_FIELD) {
+                throw new IOException("Recipient " + key.substring(0, 20) + "... is over 65535 bytes");
+            }
+            code = recipients.size();
+            recipients.add(bytes);
+            recipientCodes.put(key, code);
+        }
+        return code;
+    }
+
+    /**
+     * Writes the entry table, recipient table and trailer
+     */
+    private void finish() throws IOException {
+        long tableOffset = position;
+        out.write(entries, 0, count * MessageSegment.ENTRY_BYTES);
+        for (byte[] recipient : recipients) {
+            out.writeShort(recipient.length);
+            out.write(recipient);
+        }
+        out.writeLong(tableOffset);
+        out.writeInt(count);
+        out.writeInt(MessageSegment.VERSION);
+        out.writeInt(recipients.size());
+        out.writeInt(MessageSegment.MAGIC);
+        out.flush();
+    }
+
+    /**
+     * WRITES A SEGMENT FILE ATOMICALLY
+     * Writes to "<target>.tmp", forces it to disk, then renames it over the target
+     *
+     * @param messages - messages to write, in order
+     * @param target - the segment file
+     * @return int - number of messages written
+     * @throws IOException - if the file cannot be written
+     */
+    public static int writeAtomically(Iterable<Message> messages, Path target) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+
+        int written;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            MessageSegmentWriter writer = new MessageSegmentWriter(out);
+            for (Message message : messages) {
+                writer.writeMessage(message);
+            }
+            writer.finish();
+            channel.force(true);
+            written = writer.count;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        MessageJsonWriter.replace(temp, absolute);
+        return written;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void putLong(int at, long value) {
+        putInt(at, (int) (value >>> 32));
+        putInt(at + 4, (int) value);
+    }
+
+    private void putInt(int at, int value) {
+        entries[at] = (byte) (value >>> 24);
+        entries[at + 1] = (byte) (value >>> 16);
+        entries[at + 2] = (byte) (value >>> 8);
+        entries[at + 3] = (byte) value;
+    }
+
+    private void putShort(int at, int value) {
+        entries[at] = (byte) (value >>> 8);
+        entries[at + 1] = (byte) value;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * MESSAGE STATISTICS
+ * Running totals for a MessageStore, updated on every add, delete and status change
+ * so reports never rescan the messages. Keeps a count per status, the message count
+ * and total characters for the average, and an ordered multiset of text lengths so
+ * the shortest and longest lengths stay correct after deletes.
+ *
+ * Updates come only from the owning MessageStore (or MessageArchive); the getters
+ * answer in constant time (the multiset holds one entry per distinct length).
+ * combined() adds several together, e.g. the store and the archive for a report.
+ * @author Chumisa Haya
+ */
+public class MessageStatistics {
+    private final int[] statusCounts;
+    private final TreeMap<Integer, int[]> lengthCounts = new TreeMap<>(); // length -> {count}
+    private int count = 0;
+    private long totalChars = 0;
+
+    /**
+     * @param statusCodes - number of status codes (MessageSegment.STATUS_CODES)
+     */
+    MessageStatistics(int statusCodes) {
+        this.statusCounts = new int[statusCodes];
+    }
+
+    /**
+     * ADDS STATISTICS TOGETHER
+     * A snapshot: later changes to the parts are not reflected in it
+     *
+     * @param parts - statistics using the same status codes
+     * @return MessageStatistics - counts and lengths over all of the parts
+     */
+    public static MessageStatistics combined(MessageStatistics... parts) {
+        MessageStatistics total = new MessageStatistics(MessageSegment.STATUS_CODES);
+        for (MessageStatistics part : parts) {
+            for (int status = 0; status < part.statusCounts.length; status++) {
+                total.statusCounts[status] += part.statusCounts[status];
+            }
+            total.count += part.count;
+            total.totalChars += part.totalChars;
+            part.lengthCounts.forEach((length, lengthCount) ->
+                total.lengthCounts.computeIfAbsent(length, key -> new int[1])[0] += lengthCount[0]);
+        }
+        return total;
+    }
+
+    void messageAdded(byte status, int length) {
+        statusCounts[status]++;
+        count++;
+        totalChars += length;
+        lengthCounts.computeIfAbsent(length, key -> new int[1])[0]++;
+    }
+
+    void messageRemoved(byte status, int length) {
+        statusCounts[status]--;
+        count--;
+        totalChars -= length;
+        int[] lengthCount = lengthCounts.get(length);
+        if (lengthCount != null && --lengthCount[0] == 0) {
+            lengthCounts.remove(length);
+        }
+    }
+
+    void statusChanged(byte oldStatus, byte newStatus) {
+        statusCounts[oldStatus]--;
+        statusCounts[newStatus]++;
+    }
+
+    void clear() {
+        Arrays.fill(statusCounts, 0);
+        lengthCounts.clear();
+        count = 0;
+        totalChars = 0;
+    }
+
+    int getCount(byte status) {
+        return statusCounts[status];
+    }
+
+    /**
+     * "Disregarded" covers every status other than Sent or Stored, as the status
+     * screens always have. Statuses outside those three share one code, so any other
+     * name counts every such message together, not only that exact status.
+     *
+     * @param status - "Sent", "Stored" or "Disregarded"
+     * @return int - number of messages with that status
+     */
+    public int countByStatus(String status) {
+        byte requested = MessageSegment.statusCode(status);
+        int total = 0;
+        for (byte code = 0; code < statusCounts.length; code++) {
+            if (matches(requested, code)) {
+                total += statusCounts[code];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Which stored codes a requested status covers, for countByStatus and
+     * MessageStore.byStatus alike. A missing status and a custom one are grouped.
+     *
+     * @param requested - MessageSegment code of the status asked for
+     * @param code - MessageSegment code of a message
+     * @return boolean - true if the message counts under the requested status
+     */
+    static boolean matches(byte requested, byte code) {
+        if (requested == MessageSegment.STATUS_DISREGARDED) {
+            return code != MessageSegment.STATUS_SENT && code != MessageSegment.STATUS_STORED;
+        }
+        if (requested == MessageSegment.STATUS_OTHER || requested == MessageSegment.STATUS_NONE) {
+            return code == MessageSegment.STATUS_OTHER || code == MessageSegment.STATUS_NONE;
+        }
+        return code == requested;
+    }
+
+    public int getMessageCount() { return count; }
+    public long getTotalChars() { return totalChars; }
+
+    /**
+     * @return double - average text length in characters (0 with no messages)
+     */
+    public double getAverageLength() {
+        return count == 0 ? 0.0 : (double) totalChars / count;
+    }
+
+    /**
+     * @return int - shortest text length in characters (0 with no messages)
+     */
+    public int getShortestLength() {
+        return lengthCounts.isEmpty() ? 0 : lengthCounts.firstKey();
+    }
+
+    /**
+     * @return int - longest text length in characters (0 with no messages)
+     */
+    public int getLongestLength() {
+        return lengthCounts.isEmpty() ? 0 : lengthCounts.lastKey();
+    }
+
+    /**
+     * @return Iterable<Integer> - every length present, longest first
+     */
+    Iterable<Integer> lengthsLongestFirst() {
+        return lengthCounts.descendingKeySet();
+    }
+
+    /**
+     * @param length - a text length in characters
+     * @return int - number of messages whose text has exactly that length
+     */
+    public int countWithLength(int length) {
+        int[] lengthCount = lengthCounts.get(length);
+        return lengthCount == null ? 0 : lengthCount[0];
+    }
+}
@@ -0,0 +1,823 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MESSAGE STORE
+ * Holds every message in insertion order together with hash indexes on message ID,
+ * message hash (case-insensitive), recipient and text length, plus per-status views.
+ * Numeric message IDs are indexed as primitive longs in a LongSlotIndex. Counts and
+ * length statistics are kept up to date in a MessageStatistics as messages change.
+ *
+ * The longest messages are found through the length index, walked from the longest
+ * length down, so a top-K query touches about K messages. Recipients with many
+ * messages also get a ranking (their own slot chains per length) that an add or
+ * delete updates in O(1); smaller recipients are ranked on demand from their few
+ * slots. addAll() and compaction build the rankings afterwards in parallel instead
+ * of one by one.
+ *
+ * Listeners (such as a TextIndex) hear about every add, remove and clear; removeAll()
+ * tells them about a whole batch in one call.
+ *
+ * Messages live in an append-only slot array. A delete only clears its slot, and the
+ * array is compacted once cleared slots outnumber live ones, so lookups are O(1) and
+ * deletes are O(1) amortized. Each index maps a key to a chain of slots in insertion
+ * order, which keeps duplicate keys (e.g. two messages with the same hash) correct.
+ *
+ * A message's ID, hash, recipient and text must not change while it is in the store;
+ * status changes go through updateStatus().
+ * @author Chumisa Haya
+ */
+public class MessageStore implements Iterable<Message> {
+
+    /**
+     * Told about every change to the store's contents, on the thread making it
+     */
+    public interface Listener {
+        void messageAdded(Message message);
+        void messageRemoved(Message message);
+        void storeCleared();
+
+        /**
+         * Told once after removeAll(); listeners that can drop many messages at once override it
+         *
+         * @param messages - the messages that were taken out of the store
+         */
+        default void messagesRemoved(Collection<? extends Message> messages) {
+            for (Message message : messages) {
+                messageRemoved(message);
+            }
+        }
+    }
+
+    private static final int NONE = LongSlotIndex.NO_SLOT;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_GARBAGE_FOR_COMPACTION = 64;
+    private static final int RANKED_AFTER = 32; // messages to one recipient before it keeps a ranking
+    private static final int PARALLEL_RANKINGS = 16; // rankings built per fork-join task
+
+    private Message[] slots = new Message[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY]; // MessageSegment status codes
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int used = 0;  // slots handed out, including cleared ones
+    private int size = 0;  // live messages
+    private final MessageStatistics statistics = new MessageStatistics(MessageSegment.STATUS_CODES);
+    private long highestNumericID = -1;
+
+    private final IdChains idIndex = new IdChains(INITIAL_CAPACITY);
+    private final SlotChains<String> hashIndex = new SlotChains<>(INITIAL_CAPACITY);
+    private final SlotChains<String> recipientIndex = new SlotChains<>(INITIAL_CAPACITY);
+    private final SlotChains<Integer> lengthIndex = new SlotChains<>(INITIAL_CAPACITY);
+    private final RecipientRankings rankings = new RecipientRankings();
+    private final List<Listener> listeners = new ArrayList<>();
+
+    /**
+     * ADDS A MESSAGE TO THE STORE AND ALL INDEXES
+     *
+     * @param message - the message to add (its ID, hash and recipient must be set)
+     */
+    public void add(Message message) {
+        int slot = append(message);
+        rankings.add(message.getRecipient(), slot);
+        for (Listener listener : listeners) {
+            listener.messageAdded(message);
+        }
+    }
+
+    /**
+     * ADDS MANY MESSAGES AT ONCE
+     * Faster than add() for a cold load: the recipient rankings are rebuilt once, in
+     * parallel, after every message is in
+     *
+     * @param messages - the messages to add, in order
+     */
+    public void addAll(Collection<? extends Message> messages) {
+        for (Message message : messages) {
+            append(message);
+            for (Listener listener : listeners) {
+                listener.messageAdded(message);
+            }
+        }
+        rankings.rebuild();
+    }
+
+    /**
+     * REGISTERS A LISTENER
+     * It is not told about messages already in the store
+     *
+     * @param listener - receives every later add, remove and clear
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener - a listener to stop telling about changes
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Puts a message in a new slot and every index except the rankings
+     */
+    private int append(Message message) {
+        if (used == slots.length) {
+            grow();
+        }
+
+        int slot = used++;
+        slots[slot] = message;
+        byte status = MessageSegment.statusCode(message.getStatus());
+        int length = message.getMessageTextLength();
+        statuses[slot] = status;
+        lengths[slot] = length;
+        statistics.messageAdded(status, length);
+        size++;
+
+        idIndex.add(message.getMessageID(), slot);
+        highestNumericID = Math.max(highestNumericID, Message.messageIDToLong(message.getMessageID()));
+        hashIndex.add(hashKey(message.getMessageHash()), slot);
+        recipientIndex.add(message.getRecipient(), slot);
+        lengthIndex.add(length, slot);
+        return slot;
+    }
+
+    /**
+     * REMOVES A MESSAGE FROM THE STORE
+     *
+     * @param message - the exact message object to remove
+     * @return boolean - true if it was in the store
+     */
+    public boolean remove(Message message) {
+        int slot = slotOf(message);
+        if (slot == NONE) {
+            return false;
+        }
+
+        slots[slot] = null;
+        statistics.messageRemoved(statuses[slot], lengths[slot]);
+        size--;
+        for (Listener listener : listeners) {
+            listener.messageRemoved(message);
+        }
+
+        if (used - size > Math.max(MIN_GARBAGE_FOR_COMPACTION, size)) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * REMOVES MANY MESSAGES AT ONCE
+     * Listeners hear about them in one messagesRemoved() call and the store compacts
+     * at most once, so moving a large part of the store out (e.g. to the archive)
+     * costs about one pass over it
+     *
+     * @param messages - the exact message objects to remove
+     * @return int - how many of them were in the store
+     */
+    public int removeAll(Collection<? extends Message> messages) {
+        List<Message> removed = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            int slot = slotOf(message);
+            if (slot == NONE) {
+                continue;
+            }
+            slots[slot] = null;
+            statistics.messageRemoved(statuses[slot], lengths[slot]);
+                size--;
+            removed.add(message);
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        for (Listener listener : listeners) {
+            listener.messagesRemoved(removed);
+        }
+
+        if (used - size > Math.max(MIN_GARBAGE_FOR_COMPACTION, size)) {
+            compact();
+        }
+        return removed.size();
+    }
+
+    /**
+     * CHANGES THE STATUS OF A STORED MESSAGE
+     *
+     * @param message - the stored message
+     * @param status - the new status ("Sent", "Stored" or "Disregarded")
+     * @return boolean - true if the message was in the store
+     */
+    public boolean updateStatus(Message message, String status) {
+        int slot = slotOf(message);
+        if (slot == NONE) {
+            return false;
+        }
+
+        byte code = MessageSegment.statusCode(status);
+        statistics.statusChanged(statuses[slot], code);
+        statuses[slot] = code;
+        message.setStatus(status);
+        return true;
+    }
+
+    /**
+     * FINDS THE FIRST MESSAGE WITH AN ID
+     *
+     * @param messageID - the message ID to look up
+     * @return Message - the matching message, or null
+     */
+    public Message findByID(String messageID) {
+        int slot = idIndex.first(messageID);
+        return slot == NONE ? null : slots[slot];
+    }
+
+    /**
+     * FINDS THE FIRST MESSAGE WITH A HASH, IGNORING CASE
+     *
+     * @param messageHash - the message hash to look up
+     * @return Message - the matching message, or null
+     */
+    public Message findByHash(String messageHash) {
+        int slot = hashIndex.first(hashKey(messageHash));
+        return slot == NONE ? null : slots[slot];
+    }
+
+    /**
+     * FINDS A MESSAGE BY BOTH ID AND HASH
+     *
+     * @param messageID - the message ID
+     * @param messageHash - the message hash (exact case)
+     * @return Message - the matching message, or null
+     */
+    public Message find(String messageID, String messageHash) {
+        for (int slot = idIndex.first(messageID); slot != NONE; slot = idIndex.next(slot)) {
+            if (slots[slot].getMessageHash().equals(messageHash)) {
+                return slots[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * FINDS EVERY MESSAGE SENT TO A RECIPIENT
+     *
+     * @param recipient - the recipient cell number
+     * @return List<Message> - matching messages in insertion order
+     */
+    public List<Message> findByRecipient(String recipient) {
+        List<Message> found = new ArrayList<>();
+        for (int slot = recipientIndex.first(recipient); slot != NONE; slot = recipientIndex.next(slot)) {
+            found.add(slots[slot]);
+        }
+        return found;
+    }
+
+    /**
+     * FINDS THE LONGEST MESSAGE
+     * Looks up the longest length in the statistics, then the first message with it
+     *
+     * @return Message - the first-added message with the longest text, or null if empty
+     */
+    public Message findLongest() {
+        if (size == 0) {
+            return null;
+        }
+        int slot = lengthIndex.first(statistics.getLongestLength());
+        return slot == NONE ? null : slots[slot];
+    }
+
+    /**
+     * FINDS THE LONGEST MESSAGES
+     *
+     * @param count - how many messages to return at most
+     * @return List<Message> - longest first; equal lengths in insertion order
+     */
+    public List<Message> findLongest(int count) {
+        List<Message> longest = new ArrayList<>(Math.max(0, Math.min(count, size)));
+        for (int length : statistics.lengthsLongestFirst()) {
+            if (longest.size() >= count) {
+                break;
+            }
+            for (int slot = lengthIndex.first(length); slot != NONE && longest.size() < count; slot = lengthIndex.next(slot)) {
+                longest.add(slots[slot]);
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * FINDS THE LONGEST MESSAGES SENT TO ONE RECIPIENT
+     *
+     * @param recipient - the recipient cell number
+     * @param count - how many messages to return at most
+     * @return List<Message> - longest first; equal lengths in insertion order
+     */
+    public List<Message> findLongestForRecipient(String recipient, int count) {
+        int[] top = rankings.top(recipient, count);
+        List<Message> longest = new ArrayList<>(top.length);
+        for (int slot : top) {
+            longest.add(slots[slot]);
+        }
+        return longest;
+    }
+
+    /**
+     * @param messageID - the message ID to check
+     * @return boolean - true if a stored message has this ID
+     */
+    public boolean containsMessageID(String messageID) {
+        return idIndex.first(messageID) != NONE;
+    }
+
+    /**
+     * @param messageID - the numeric message ID to check
+     * @return boolean - true if a stored message has this ID, written without leading zeros
+     */
+    public boolean containsMessageID(long messageID) {
+        return idIndex.first(messageID) != NONE;
+    }
+
+    /**
+     * @return long - the largest numeric message ID ever added, or -1
+     */
+    public long getHighestMessageID() {
+        return highestNumericID;
+    }
+
+    /**
+     * GETS THE MOST RECENT MESSAGES
+     *
+     * @param count - how many messages to return at most
+     * @return List<Message> - the newest messages, oldest first
+     */
+    public List<Message> lastN(int count) {
+        List<Message> recent = new ArrayList<>(Math.min(count, size));
+        for (int slot = used - 1; slot >= 0 && recent.size() < count; slot--) {
+            if (slots[slot] != null) {
+                recent.add(slots[slot]);
+            }
+        }
+        Collections.reverse(recent);
+        return recent;
+    }
+
+    /**
+     * @param status - "Sent", "Stored" or "Disregarded" (see MessageStatistics.countByStatus)
+     * @return int - number of stored messages with that status
+     */
+    public int countByStatus(String status) {
+        return statistics.countByStatus(status);
+    }
+
+    /**
+     * @return MessageStatistics - live counts and length statistics for this store
+     */
+    public MessageStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * VIEW OF THE MESSAGES WITH ONE STATUS
+     * "Disregarded" includes every status other than Sent or Stored, matching countByStatus.
+     *
+     * @param status - "Sent", "Stored" or "Disregarded"
+     * @return Iterable<Message> - live view in insertion order
+     */
+    public Iterable<Message> byStatus(String status) {
+        byte code = MessageSegment.statusCode(status);
+        return () -> new SlotIterator(code);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Removes every message and resets all indexes
+     */
+    public void clear() {
+        highestNumericID = -1;
+        slots = new Message[INITIAL_CAPACITY];
+        statuses = new byte[INITIAL_CAPACITY];
+        lengths = new int[INITIAL_CAPACITY];
+        used = 0;
+        size = 0;
+        statistics.clear();
+        idIndex.reset(INITIAL_CAPACITY);
+        hashIndex.reset(INITIAL_CAPACITY);
+        recipientIndex.reset(INITIAL_CAPACITY);
+        lengthIndex.reset(INITIAL_CAPACITY);
+        rankings.reset(INITIAL_CAPACITY);
+        for (Listener listener : listeners) {
+            listener.storeCleared();
+        }
+    }
+
+    /**
+     * Iterates over every message in insertion order
+     */
+    @Override
+    public Iterator<Message> iterator() {
+        return new SlotIterator((byte) -1);
+    }
+
+    /**
+     * Finds the slot holding this exact message object through the ID index
+     */
+    private int slotOf(Message message) {
+        for (int slot = idIndex.first(message.getMessageID()); slot != NONE; slot = idIndex.next(slot)) {
+            if (slots[slot] == message) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    private void grow() {
+        int capacity = slots.length * 2;
+        slots = Arrays.copyOf(slots, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        idIndex.grow(capacity);
+        hashIndex.grow(capacity);
+        recipientIndex.grow(capacity);
+        lengthIndex.grow(capacity);
+        rankings.grow(capacity);
+    }
+
+    /**
+     * Drops cleared slots and rebuilds the indexes over the live messages
+     */
+    private void compact() {
+        Message[] live = new Message[size];
+        int count = 0;
+        for (int slot = 0; slot < used; slot++) {
+            if (slots[slot] != null) {
+                live[count++] = slots[slot];
+            }
+        }
+
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size)) * 2);
+        slots = new Message[capacity];
+        statuses = new byte[capacity];
+        lengths = new int[capacity];
+        used = 0;
+        size = 0;
+        statistics.clear();
+        idIndex.reset(capacity);
+        hashIndex.reset(capacity);
+        recipientIndex.reset(capacity);
+        lengthIndex.reset(capacity);
+        rankings.reset(capacity);
+
+        for (Message message : live) {
+            append(message);
+        }
+        rankings.rebuild();
+    }
+
+    private static String hashKey(String messageHash) {
+        return messageHash.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Walks live slots in order, optionally only those with one status
+     */
+    private class SlotIterator implements Iterator<Message> {
+        private final byte status;
+        private int slot = -1;
+
+        SlotIterator(byte status) {
+            this.status = status;
+            advance();
+        }
+
+        private void advance() {
+            do {
+                slot++;
+            } while (slot < used && (slots[slot] == null || !matches(statuses[slot])));
+        }
+
+        private boolean matches(byte code) {
+            return status < 0 || MessageStatistics.matches(status, code);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < used;
+        }
+
+        @Override
+        public Message next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Message message = slots[slot];
+            advance();
+            return message;
+        }
+    }
+
+    /**
+     * MESSAGE ID -> SLOT CHAINS
+     * Same chaining as SlotChains, but numeric IDs (all generated ones) are keyed by
+     * their long value in a LongSlotIndex. Only IDs that print back as the same text
+     * are keyed that way; "0123" goes in otherHeads so it never shares a chain with
+     * "123". Only the first slot of each chain is indexed; appends walk the chain,
+     * which for unique IDs is a single slot.
+     */
+    private final class IdChains {
+        private final LongSlotIndex numericHeads = new LongSlotIndex();
+        private final Map<String, Integer> otherHeads = new HashMap<>(); // IDs that are not plain numbers
+        private int[] nextSlot;
+
+        IdChains(int capacity) {
+            nextSlot = new int[capacity];
+        }
+
+        void add(String messageID, int slot) {
+            nextSlot[slot] = NONE;
+            int head = head(messageID);
+            if (head == NONE) {
+                long numericID = MessageSegment.numericID(messageID);
+                if (numericID != MessageSegment.NO_NUMERIC_ID) {
+                    numericHeads.put(numericID, slot);
+                } else {
+                    otherHeads.put(messageID, slot);
+                }
+                return;
+            }
+            while (nextSlot[head] != NONE) {
+                head = nextSlot[head];
+            }
+            nextSlot[head] = slot;
+        }
+
+        int first(String messageID) {
+            return live(head(messageID));
+        }
+
+        int first(long numericID) {
+            return live(numericHeads.get(numericID));
+        }
+
+        int next(int slot) {
+            return live(nextSlot[slot]);
+        }
+
+        private int head(String messageID) {
+            long numericID = MessageSegment.numericID(messageID);
+            if (numericID != MessageSegment.NO_NUMERIC_ID) {
+                return numericHeads.get(numericID);
+            }
+            Integer slot = otherHeads.get(messageID);
+            return slot == null ? NONE : slot;
+        }
+
+        private int live(int slot) {
+            while (slot != NONE && slots[slot] == null) {
+                slot = nextSlot[slot];
+            }
+            return slot;
+        }
+
+        void grow(int capacity) {
+            nextSlot = Arrays.copyOf(nextSlot, capacity);
+        }
+
+        void reset(int capacity) {
+            numericHeads.clear();
+            otherHeads.clear();
+            nextSlot = new int[capacity];
+        }
+    }
+
+    /**
+     * KEY -> SLOT CHAINS
+     * Maps each key to the first and last slot carrying it; the slots in between are
+     * linked through a parallel next-slot array. Cleared slots are skipped on lookup
+     * and disappear when the store compacts.
+     */
+    private final class SlotChains<K> {
+        private final Map<K, int[]> ends = new HashMap<>(); // key -> {first, last, slots ever added}
+        private int[] nextSlot;
+
+        SlotChains(int capacity) {
+            nextSlot = new int[capacity];
+        }
+
+        void add(K key, int slot) {
+            nextSlot[slot] = NONE;
+            int[] chain = ends.get(key);
+            if (chain == null) {
+                ends.put(key, new int[] {slot, slot, 1});
+            } else {
+                nextSlot[chain[1]] = slot;
+                chain[1] = slot;
+                chain[2]++;
+            }
+        }
+
+        /**
+         * @return int - slots added under the key since the last reset, live or not
+         */
+        int added(K key) {
+            int[] chain = ends.get(key);
+            return chain == null ? 0 : chain[2];
+        }
+
+        /**
+         * @return List<K> - keys with at least minimum slots added
+         */
+        List<K> keysAddedAtLeast(int minimum) {
+            List<K> keys = new ArrayList<>();
+            for (Map.Entry<K, int[]> entry : ends.entrySet()) {
+                if (entry.getValue()[2] >= minimum) {
+                    keys.add(entry.getKey());
+                }
+            }
+            return keys;
+        }
+
+        int first(K key) {
+            int[] chain = ends.get(key);
+            return chain == null ? NONE : live(chain[0]);
+        }
+
+        int next(int slot) {
+            return live(nextSlot[slot]);
+        }
+
+        private int live(int slot) {
+            while (slot != NONE && slots[slot] == null) {
+                slot = nextSlot[slot];
+            }
+            return slot;
+        }
+
+        void grow(int capacity) {
+            nextSlot = Arrays.copyOf(nextSlot, capacity);
+        }
+
+        void reset(int capacity) {
+            ends.clear();
+            nextSlot = new int[capacity];
+        }
+    }
+
+    /**
+     * LONGEST-FIRST RANKINGS PER RECIPIENT
+     * A recipient that has had RANKED_AFTER messages keeps a Ranking updated on every
+     * add; for anyone else one is built from the recipient chain when asked. A ranking
+     * chains the recipient's slots per text length, like the store's length index, so
+     * an add appends to one chain, a delete only clears the slot (walks skip it until
+     * the store compacts), and the top K walks lengths from the longest down.
+     */
+    private final class RecipientRankings {
+        private final Map<String, Ranking> byRecipient = new HashMap<>();
+        private int[] nextRanked = new int[INITIAL_CAPACITY]; // next slot of the same recipient and length
+
+        void add(String recipient, int slot) {
+            Ranking ranking = byRecipient.get(recipient);
+            if (ranking != null) {
+                ranking.add(slot);
+            } else if (recipientIndex.added(recipient) >= RANKED_AFTER) {
+                byRecipient.put(recipient, build(recipient));
+            }
+        }
+
+        int[] top(String recipient, int count) {
+            Ranking ranking = byRecipient.get(recipient);
+            if (ranking == null) {
+                ranking = build(recipient);
+            }
+            return ranking.top(count);
+        }
+
+        /**
+         * Rebuilds every ranking from the recipient chains, splitting the recipients
+         * across the fork-join pool when there are enough of them
+         */
+        void rebuild() {
+            byRecipient.clear();
+            List<String> recipients = recipientIndex.keysAddedAtLeast(RANKED_AFTER);
+            Ranking[] built = new Ranking[recipients.size()];
+            if (built.length <= PARALLEL_RANKINGS) {
+                for (int i = 0; i < built.length; i++) {
+                    built[i] = build(recipients.get(i));
+                }
+            } else {
+                ForkJoinPool.commonPool().invoke(new BuildTask(recipients, built, 0, built.length));
+            }
+            for (int i = 0; i < built.length; i++) {
+                byRecipient.put(recipients.get(i), built[i]);
+            }
+        }
+
+        void grow(int capacity) {
+            nextRanked = Arrays.copyOf(nextRanked, capacity);
+        }
+
+        void reset(int capacity) {
+            byRecipient.clear();
+            nextRanked = new int[capacity];
+        }
+
+        /**
+         * Chains the live slots of one recipient; writes only that recipient's links
+         */
+        private Ranking build(String recipient) {
+            Ranking ranking = new Ranking();
+            for (int slot = recipientIndex.first(recipient); slot != NONE; slot = recipientIndex.next(slot)) {
+                ranking.add(slot);
+            }
+            return ranking;
+        }
+
+        /**
+         * One recipient's slots, chained per text length in insertion order
+         */
+        private final class Ranking {
+            private int[] heads = new int[0]; // first slot with each length, or NONE
+            private int[] tails = new int[0];
+
+            void add(int slot) {
+                int length = lengths[slot];
+                if (length >= heads.length) {
+                    int capacity = Math.max(length + 1, heads.length * 2);
+                    int from = heads.length;
+                    heads = Arrays.copyOf(heads, capacity);
+                    tails = Arrays.copyOf(tails, capacity);
+                    Arrays.fill(heads, from, capacity, NONE);
+                }
+                nextRanked[slot] = NONE;
+                if (heads[length] == NONE) {
+                    heads[length] = slot;
+                } else {
+                    nextRanked[tails[length]] = slot;
+                }
+                tails[length] = slot;
+            }
+
+            int[] top(int count) {
+                int[] top = new int[Math.max(0, Math.min(count, 16))];
+                int found = 0;
+                for (int length = heads.length - 1; length >= 0 && found < count; length--) {
+                    for (int slot = heads[length]; slot != NONE && found < count; slot = nextRanked[slot]) {
+                        if (slots[slot] == null) {
+                            continue;
+                        }
+                        if (found == top.length) {
+                            top = Arrays.copyOf(top, (int) Math.min(count, top.length * 2L));
+                        }
+                        top[found++] = slot;
+                    }
+                }
+                return Arrays.copyOf(top, found);
+            }
+        }
+
+        @SuppressWarnings("serial") // never serialized; ForkJoinTask is Serializable only by inheritance
+        private final class BuildTask extends RecursiveAction {
+            private final List<String> recipients;
+            private final Ranking[] built;
+            private final int from;
+            private final int to;
+
+            BuildTask(List<String> recipients, Ranking[] built, int from, int to) {
+                this.recipients = recipients;
+                this.built = built;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= PARALLEL_RANKINGS) {
+                    for (int i = from; i < to; i++) {
+                        built[i] = build(recipients.get(i));
+                    }
+                    return;
+                }
+                int middle = (from + to) >>> 1;
+                invokeAll(new BuildTask(recipients, built, from, middle), new BuildTask(recipients, built, middle, to));
+            }
+        }
+    }
+}
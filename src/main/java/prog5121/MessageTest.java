@@ -4,6 +4,37 @@
  */
 package prog5121;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * UNIT TESTS FOR MESSAGE CLASS
  * Tests message validation, hash creation, and operations
@@ -77,7 +108,28 @@ public class MessageTest {
         String hash = message.createMessageHash(1);
         System.out.println("Generated Hash: " + hash);
         boolean validFormat = hash != null && hash.contains(":") && hash.length() > 5;
-        System.out.println("Test " + (validFormat ? "PASSED" : "FAILED"));
+        System.out.println("Expected: 12:1:HELLOTEST");
+        System.out.println("Test " + (validFormat && "12:1:HELLOTEST".equals(hash) ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Batch hashing matches single-message hashing
+     */
+    public void testHashAllMessages() {
+        System.out.println("Testing batch message hashing:");
+        Message first = new Message();
+        first.setMessageID("1234567890");
+        first.setMessageText("Hello world this is a test");
+        Message second = new Message();
+        second.setMessageID("9876543210");
+        second.setMessageText("  Single  ");
+        
+        int hashed = MessageHasher.forCurrentThread().hashAll(List.of(first, second), 1);
+        System.out.println("Hashes: " + first.getMessageHash() + ", " + second.getMessageHash());
+        boolean success = hashed == 2 && "12:1:HELLOTEST".equals(first.getMessageHash())
+            && "98:2:SINGLESINGLE".equals(second.getMessageHash());
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
         System.out.println("=".repeat(40));
     }
     
@@ -93,6 +145,1375 @@ public class MessageTest {
         System.out.println("=".repeat(40));
     }
     
+    /**
+     * TEST: Snowflake IDs skip IDs that are already taken
+     */
+    public void testSnowflakeMessageID() {
+        System.out.println("Testing snowflake message IDs after a restart:");
+        Set<Long> issued = new HashSet<>();
+        MessageIDGenerator first = new SnowflakeMessageIDGenerator(0, id -> false);
+        for (int i = 0; i < 100; i++) {
+            issued.add(first.nextID());
+        }
+        
+        // A second generator started in the same second replays the same sequences
+        MessageIDGenerator restarted = new SnowflakeMessageIDGenerator(0, issued::contains);
+        boolean success = issued.size() == 100;
+        for (int i = 0; i < 100; i++) {
+            long id = restarted.nextID();
+            success = success && id >= MessageIDGenerator.MIN_ID && id <= MessageIDGenerator.MAX_ID
+                && issued.add(id);
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Counter IDs stay consecutive across threads and skip IDs in use
+     */
+    public void testCounterMessageID() {
+        System.out.println("Testing counter message IDs:");
+        long first = 4_000_000_000L;
+        Set<Long> archived = Set.of(first + 1, first + 2);
+        MessageIDGenerator generator = new CounterMessageIDGenerator(first, archived::contains);
+        
+        // One ID per short-lived thread, as the ingestion server issues them
+        Set<Long> issued = Collections.synchronizedSet(new HashSet<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(Thread.ofVirtual().start(() -> issued.add(generator.nextID())));
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Set<Long> expected = new HashSet<>(List.of(first, first + 3, first + 4, first + 5,
+            first + 6, first + 7, first + 8, first + 9));
+        
+        boolean exhausted = false;
+        try {
+            new CounterMessageIDGenerator(MessageIDGenerator.MAX_ID, id -> true).nextID();
+        } catch (IllegalStateException e) {
+            exhausted = true;
+        }
+        boolean success = issued.equals(expected) && exhausted;
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Streaming JSON load matches the stored messages
+     */
+    public void testLoadMessagesFromJSONStreaming() {
+        System.out.println("Testing streaming JSON load:");
+        try {
+            Path file = Files.createTempFile("messages", ".json");
+            Message original = new Message();
+            original.setMessageID("1234567890");
+            original.setMessageHash("12:1:HITHERE");
+            original.setRecipient("+27831234567");
+            original.setMessageText("Hi \"there\"\nSee you soon");
+            original.setStatus("Sent");
+            Files.writeString(file, Message.getAllMessagesAsJSON(List.of(original, original)).toString(4));
+            
+            List<Message> loaded = Message.loadMessagesFromJSON(file.toString());
+            
+            // A damaged file loads nothing rather than the records before the damage
+            String json = Files.readString(file);
+            Files.writeString(file, json.substring(0, json.lastIndexOf('{')));
+            int totalBefore = Message.getTotalMessages();
+            boolean damagedRejected = Message.loadMessagesFromJSON(file.toString()).isEmpty()
+                && Message.getTotalMessages() == totalBefore;
+            
+            // A null field is left out, as org.json did, and the save leaves no temp file behind
+            Message noStatus = new Message();
+            noStatus.setMessageID("1234567891");
+            noStatus.setStatus(null);
+            boolean nullSaved = Message.storeMessagesToJSON(List.of(original, noStatus), file.toString(), false)
+                && !Files.exists(Path.of(file + ".tmp")) && !Files.readString(file).contains("status\": null")
+                && Message.loadMessagesFromJSON(file.toString()).get(1).getStatus().equals("");
+            Files.delete(file);
+            
+            boolean success = loaded.size() == 2 && loaded.get(1).toJSON().similar(original.toJSON())
+                && damagedRejected && nullSaved;
+            System.out.println("Loaded: " + loaded.size() + " | Expected: 2 | Damaged file rejected: " + damagedRejected
+                + " | Null field saved: " + nullSaved);
+            System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        } catch (IOException e) {
+            System.out.println("Test FAILED - " + e.getMessage());
+        }
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Parallel JSON load gives the same messages in the same order as the streaming one
+     */
+    public void testParallelJsonLoad() {
+        System.out.println("Testing parallel chunked JSON load:");
+        boolean success;
+        try {
+            Path file = Files.createTempFile("parallel", ".json");
+            List<Message> messages = new ArrayList<>();
+            for (int i = 0; i < 30_000; i++) {
+                Message msg = new Message();
+                msg.setMessageID(String.valueOf(4300000000L + i));
+                msg.setMessageHash("43:" + i + ":HASH");
+                msg.setRecipient("+27834557896");
+                // Record-like text, quotes and escapes must not be mistaken for record boundaries
+                msg.setMessageText(i % 3 == 0 ? "Hi \"there\" },{\"messageID\":\"1\"} \\" + i
+                    : i % 3 == 1 ? "Ünïcödé 👋 [" + i + "]\n" : "Plain message " + i);
+                msg.setStatus(i % 2 == 0 ? "Sent" : "Stored");
+                messages.add(msg);
+            }
+            Message.storeMessagesToJSON(messages, file.toString());
+            
+            List<Message> sequential = Message.loadLazyMessagesFromJSON(file.toString());
+            List<Message> parallel = Message.loadLazyMessagesFromJSON(file.toString(), 4);
+            success = sequential.size() == messages.size() && parallel.size() == messages.size();
+            for (int i = 0; i < messages.size() && success; i++) {
+                success = parallel.get(i).toJSON().similar(messages.get(i).toJSON());
+            }
+            System.out.println("Loaded: " + parallel.size() + " | Expected: " + messages.size());
+            
+            // A file cut short loads nothing
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length * 2 / 3));
+            success = success && Message.loadLazyMessagesFromJSON(file.toString()).isEmpty()
+                && Message.loadLazyMessagesFromJSON(file.toString(), 4).isEmpty();
+            try {
+                Message.readLazyMessagesFromJSON(file.toString(), 4);
+                success = false;
+            } catch (IOException e) {
+                System.out.println("Damaged file rejected: " + e.getMessage());
+            }
+            
+            Files.writeString(file, " [ ] ");
+            success = success && Message.loadLazyMessagesFromJSON(file.toString(), 4).isEmpty();
+            Files.delete(file);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            success = false;
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Message store lookups, delete by hash, and IDs that differ only by leading zeros
+     */
+    public void testMessageStoreLookups() {
+        System.out.println("Testing message store indexes:");
+        MessageStore store = new MessageStore();
+        Message first = new Message();
+        first.setMessageID("1000000001");
+        first.setMessageHash("10:1:DIDCAKE");
+        first.setRecipient("+27834557896");
+        first.setStatus("Sent");
+        Message second = new Message();
+        second.setMessageID("1000000002");
+        second.setMessageHash("10:2:WHERETIME");
+        second.setRecipient("+27834557896");
+        second.setStatus("Stored");
+        store.add(first);
+        store.add(second);
+        
+        boolean deleted = store.remove(store.findByHash("10:1:didcake"));
+        boolean success = deleted && store.findByID("1000000001") == null
+            && store.findByID("1000000002") == second
+            && store.findByRecipient("+27834557896").size() == 1
+            && store.countByStatus("Sent") == 0 && store.size() == 1;
+        
+        // An ID with a leading zero is a different ID, not another spelling of the same number
+        Message padded = new Message();
+        padded.setMessageID("01000000002");
+        padded.setMessageHash("01:3:PADDED");
+        padded.setRecipient("+27834557896");
+        padded.setStatus("Sent");
+        success = success && store.findByID("01000000002") == null && !store.containsMessageID("01000000002");
+        store.add(padded);
+        success = success && store.findByID("01000000002") == padded && store.findByID("1000000002") == second
+            && store.containsMessageID(1000000002L) && store.find("1000000002", "01:3:PADDED") == null;
+        store.remove(second);
+        success = success && store.findByID("1000000002") == null && !store.containsMessageID(1000000002L)
+            && store.findByID("01000000002") == padded;
+        store.remove(padded);
+        store.add(second);
+        System.out.println("Remaining messages: " + store.size() + " | Expected: 1");
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Store statistics follow adds, deletes, status changes and compaction
+     */
+    public void testMessageStatistics() {
+        System.out.println("Testing incrementally maintained message statistics:");
+        MessageStore store = new MessageStore();
+        List<Message> added = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Message msg = new Message();
+            msg.setMessageID(String.valueOf(2000000000L + i));
+            msg.setMessageHash("20:" + i + ":HASH");
+            msg.setRecipient("+2783000" + String.format("%04d", i % 50));
+            msg.setMessageText("x".repeat(1 + i % 200));
+            msg.setStatus(i % 2 == 0 ? "Sent" : "Stored");
+            store.add(msg);
+            added.add(msg);
+        }
+        MessageStatistics statistics = store.getStatistics();
+        boolean success = statistics.getShortestLength() == 1 && statistics.getLongestLength() == 200
+            && store.findLongest() == added.get(199) && statistics.countWithLength(200) == 1;
+        
+        // Deleting every message of the extreme lengths moves min and max inward
+        store.remove(added.get(199));
+        store.remove(added.get(0));
+        store.remove(added.get(200));
+        success = success && statistics.getLongestLength() == 199 && statistics.getShortestLength() == 2
+            && store.findLongest() == added.get(198);
+        
+        store.updateStatus(added.get(1), "Disregarded");
+        success = success && store.countByStatus("Disregarded") == 1 && store.countByStatus("Stored") == 148
+            && store.countByStatus("Sent") == 148;
+        
+        // Any status that is not Sent or Stored is counted as disregarded, as it always was
+        store.updateStatus(added.get(3), "Queued");
+        int disregarded = 0;
+        for (Message message : store.byStatus("Disregarded")) {
+            disregarded++;
+        }
+        success = success && store.countByStatus("Disregarded") == 2 && disregarded == 2
+            && store.countByStatus("Stored") == 147;
+        
+        // The store counts with the same codes as the segment files, where a blank status
+        // has its own code; it still reports as disregarded and groups with custom statuses
+        Message blank = new Message();
+        blank.setMessageID("2000000999");
+        blank.setMessageHash("20:999:BLANK");
+        blank.setMessageText("blank");
+        blank.setStatus("");
+        store.add(blank);
+        int custom = 0;
+        for (Message message : store.byStatus("Queued")) {
+            custom++;
+        }
+        MessageStatistics copy = MessageStatistics.combined(statistics);
+        success = success && store.countByStatus("Disregarded") == 3 && store.countByStatus("Queued") == 2
+            && custom == 2 && copy.countByStatus("Disregarded") == 3
+            && statistics.getCount(MessageSegment.STATUS_NONE) == 1 && statistics.getCount(MessageSegment.STATUS_OTHER) == 1;
+        store.remove(blank);
+        store.updateStatus(added.get(3), "Stored");
+        
+        // Deleting most messages compacts the store; the statistics must survive it
+        long expectedChars = 0;
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 != 0 && i != 199 && i != 200) {
+                store.remove(added.get(i));
+            } else if (i != 0 && i != 199 && i != 200) {
+                expectedChars += added.get(i).getMessageTextLength();
+            }
+        }
+        success = success && statistics.getMessageCount() == store.size() && statistics.getTotalChars() == expectedChars
+            && statistics.getLongestLength() == 199 && store.findLongest() == added.get(198)
+            && Math.abs(statistics.getAverageLength() - (double) expectedChars / store.size()) < 1e-9;
+        
+        store.clear();
+        success = success && statistics.getMessageCount() == 0 && statistics.getLongestLength() == 0
+            && store.findLongest() == null;
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Top-K longest messages match a full sort, overall and per recipient, across deletes and later adds
+     */
+    public void testTopLongestMessages() {
+        System.out.println("Testing top-K longest message queries:");
+        Random random = new Random(19);
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Message msg = new Message();
+            msg.setMessageID(String.valueOf(3000000000L + i));
+            msg.setMessageHash("30:" + i + ":HASH");
+            // One busy recipient, a few medium ones and many with a single message
+            int who = i % 4 == 0 ? 0 : i % 4 == 1 ? 1 + random.nextInt(20) : 100 + i;
+            msg.setRecipient("+2783" + String.format("%07d", who));
+            msg.setMessageText("y".repeat(1 + random.nextInt(250)));
+            msg.setStatus("Sent");
+            messages.add(msg);
+        }
+        
+        MessageStore oneByOne = new MessageStore();
+        for (Message msg : messages) {
+            oneByOne.add(msg);
+        }
+        MessageStore bulk = new MessageStore();
+        bulk.addAll(messages);
+        
+        // Delete a third of the messages from both stores, forcing a compaction
+        List<Message> live = new ArrayList<>(messages);
+        for (int i = 0; i < messages.size(); i += 3) {
+            oneByOne.remove(messages.get(i));
+            bulk.remove(messages.get(i));
+            live.remove(messages.get(i));
+        }
+        for (int i = 1; i < 1500; i += 3) {
+            oneByOne.remove(messages.get(i));
+            bulk.remove(messages.get(i));
+            live.remove(messages.get(i));
+        }
+        // New messages land behind cleared slots in the busy recipient's length chains
+        for (int i = 3000; i < 3200; i++) {
+            Message msg = new Message();
+            msg.setMessageID(String.valueOf(3000000000L + i));
+            msg.setMessageHash("30:" + i + ":HASH");
+            msg.setRecipient("+27830000000");
+            msg.setMessageText("y".repeat(1 + random.nextInt(250)));
+            msg.setStatus("Sent");
+            oneByOne.add(msg);
+            bulk.add(msg);
+            live.add(msg);
+        }
+        
+        // Expected order: longest first, ties in insertion order (a stable sort)
+        List<Message> expected = new ArrayList<>(live);
+        expected.sort((x, y) -> Integer.compare(y.getMessageTextLength(), x.getMessageTextLength()));
+        
+        boolean success = true;
+        for (MessageStore store : new MessageStore[] {oneByOne, bulk}) {
+            success = success && store.findLongest(100).equals(expected.subList(0, 100))
+                && store.findLongest(5000).equals(expected)
+                && store.findLongest(0).isEmpty();
+            for (String recipient : new String[] {"+27830000000", "+27830000005", "+27830003002", "+27839999999"}) {
+                List<Message> forRecipient = new ArrayList<>();
+                for (Message msg : expected) {
+                    if (msg.getRecipient().equals(recipient)) {
+                        forRecipient.add(msg);
+                    }
+                }
+                success = success
+                    && store.findLongestForRecipient(recipient, 10).equals(forRecipient.subList(0, Math.min(10, forRecipient.size())))
+                    && store.findLongestForRecipient(recipient, 1000).equals(forRecipient);
+            }
+        }
+        System.out.println("Top message length: " + (expected.isEmpty() ? 0 : expected.get(0).getMessageTextLength()));
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Full-text index queries agree with a brute-force scan through adds and deletes
+     */
+    public void testTextIndex() {
+        System.out.println("Testing full-text message index:");
+        MessageStore store = new MessageStore();
+        TextIndex index = new TextIndex();
+        store.addListener(index);
+        
+        String[] words = {"hi", "dinner", "tonight", "join", "us", "for", "call", "me", "late", "ok"};
+        Random random = new Random(20);
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder text = new StringBuilder(random.nextBoolean() ? "Hi " : "");
+            for (int w = random.nextInt(12); w >= 0; w--) {
+                text.append(words[random.nextInt(words.length)]).append(w % 4 == 0 ? "\t" : " ");
+            }
+            Message msg = new Message();
+            msg.setMessageID(String.valueOf(4000000000L + i));
+            msg.setMessageHash("40:" + i + ":HASH");
+            msg.setRecipient("+27834557896");
+            msg.setMessageText(text.toString());
+            msg.setStatus("Sent");
+            store.add(msg);
+            messages.add(msg);
+        }
+        
+        String[] queries = {"dinner", "DINNER tonight", "dinner OR late", "\"join us for dinner\"",
+            "\"call me\" ok OR \"hi hi\"", "missing", "dinner missing OR late"};
+        boolean success = index.size() == 5000;
+        for (int round = 0; round < 2 && success; round++) {
+            for (String query : queries) {
+                List<Message> expected = new ArrayList<>();
+                for (Message msg : store) {
+                    if (bruteForceMatch(query, msg.getMessageText())) {
+                        expected.add(msg);
+                    }
+                }
+                TextIndex.Result result = index.search(query, Integer.MAX_VALUE);
+                success = success && result.getTotalMatches() == expected.size() && result.getMessages().equals(expected)
+                    && index.search(query, 3).getMessages().equals(expected.subList(0, Math.min(3, expected.size())));
+            }
+            // Deleting over half the messages also rebuilds the index without the tombstones
+            for (int i = 0; i < messages.size(); i++) {
+                if (i % 3 != 0) {
+                    store.remove(messages.get(i));
+                }
+            }
+        }
+        success = success && index.size() == store.size();
+        
+        // Removes find documents by identity: one batch, including a message edited after indexing
+        Message edited = messages.get(0);
+        edited.setMessageText("dinner OK?");
+        List<Message> batch = new ArrayList<>();
+        batch.add(edited);
+        for (int i = 3; i < messages.size(); i += 6) {
+            batch.add(messages.get(i));
+        }
+        success = success && store.removeAll(batch) == batch.size() && index.size() == store.size();
+        for (String query : queries) {
+            List<Message> expected = new ArrayList<>();
+            for (Message msg : store) {
+                if (bruteForceMatch(query, msg.getMessageText())) {
+                    expected.add(msg);
+                }
+            }
+            success = success && index.search(query, Integer.MAX_VALUE).getMessages().equals(expected);
+        }
+        System.out.println(index.describe());
+        
+        store.clear();
+        success = success && index.size() == 0 && index.search("dinner", 10).getTotalMatches() == 0;
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Per-recipient conversations page through in sending order, across single and batch deletes
+     */
+    public void testConversationIndex() {
+        System.out.println("Testing per-recipient conversation index:");
+        MessageStore store = new MessageStore();
+        ConversationIndex conversations = new ConversationIndex();
+        store.addListener(conversations);
+        
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Message msg = new Message();
+            msg.setMessageID(String.valueOf(4100000000L + i));
+            msg.setMessageHash("41:" + i + ":HASH");
+            // One busy conversation spanning many chunks, the rest spread over a few recipients
+            msg.setRecipient(i % 3 == 0 ? "+27830004100" : "+2783000" + String.format("%04d", 4101 + i % 7));
+            msg.setMessageText("Message " + i);
+            msg.setStatus("Sent");
+            store.add(msg);
+            messages.add(msg);
+        }
+        // Delete a whole chunk's worth of the busy conversation, then scattered others in one batch
+        List<Message> scattered = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            if (i % 3 == 0 && i >= 900 && i < 1800) {
+                store.remove(messages.get(i));
+            } else if (i % 11 == 0) {
+                scattered.add(messages.get(i));
+            }
+        }
+        store.removeAll(scattered);
+        
+        boolean success = true;
+        for (String recipient : new String[] {"+27830004100", "+27830004102", "+27830009999"}) {
+            List<Message> expected = store.findByRecipient(recipient);
+            success = success && conversations.count(recipient) == expected.size();
+            // Newest first, a page at a time, resuming each page from a fresh cursor
+            List<Message> paged = new ArrayList<>();
+            int position = Integer.MAX_VALUE;
+            List<Message> page;
+            do {
+                ConversationIndex.Cursor cursor = conversations.newestFirst(recipient, position);
+                page = cursor.nextPage(25);
+                paged.addAll(page);
+                position = cursor.getPosition();
+            } while (page.size() == 25);
+            Collections.reverse(paged);
+            success = success && paged.equals(expected);
+            
+            List<Message> forward = new ArrayList<>();
+            conversations.oldestFirst(recipient, 0).forEachRemaining(forward::add);
+            success = success && forward.equals(expected)
+                && conversations.lastMessages(recipient, 10).equals(expected.subList(Math.max(0, expected.size() - 10), expected.size()));
+        }
+        System.out.println("Busy conversation: " + conversations.count("+27830004100") + " messages | Expected: "
+            + store.findByRecipient("+27830004100").size());
+        
+        store.clear();
+        success = success && conversations.recipientCount() == 0 && !conversations.newestFirst("+27830004100").hasNext();
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Bloom filter never misses a stored ID or hash, follows deletes and survives a restart
+     */
+    public void testMessageBloomFilter() {
+        System.out.println("Testing counting Bloom filter over message IDs and hashes:");
+        MessageStore store = new MessageStore();
+        MessageBloomFilter filter = new MessageBloomFilter(10_000, 0.01, 1 << 20);
+        store.addListener(filter);
+        
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Message msg = new Message();
+            msg.setMessageID(String.valueOf(4200000000L + i));
+            msg.setMessageHash("42:" + i + ":didHash" + i);
+            msg.setRecipient("+27834557896");
+            msg.setMessageText("Message " + i);
+            msg.setStatus("Sent");
+            store.add(msg);
+            messages.add(msg);
+        }
+        for (int i = 0; i < messages.size(); i += 2) {
+            store.remove(messages.get(i));
+        }
+        
+        // Kept messages are always found, with the hash in any case; deleted ones mostly not
+        boolean success = true;
+        int deletedStillMaybe = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            Message msg = messages.get(i);
+            if (i % 2 == 1) {
+                success = success && filter.mightContainID(msg.getMessageID())
+                    && filter.mightContainHash(msg.getMessageHash().toUpperCase(Locale.ROOT)) && filter.mightContainHash(msg.getMessageHash());
+            } else if (filter.mightContainID(msg.getMessageID())) {
+                deletedStillMaybe++;
+            }
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContainID(String.valueOf(5200000000L + i))) {
+                falsePositives++;
+            }
+        }
+        System.out.println(filter.describe());
+        System.out.println("False positives: " + falsePositives + " of 100000 absent IDs | deleted IDs still maybe: "
+            + deletedStillMaybe + " of 5000");
+        success = success && falsePositives < 2000 && deletedStillMaybe < 100
+            && !filter.mightContainHash(messages.get(1).getMessageID()); // IDs and hashes do not mix
+        
+        // Saved with a snapshot, restored only while that snapshot is unchanged
+        try {
+            Path snapshot = Files.createTempFile("messages", ".json");
+            Path saved = Files.createTempFile("messages", ".bloom");
+            Files.writeString(snapshot, "[]");
+            filter.save(saved, snapshot);
+            MessageBloomFilter restored = new MessageBloomFilter(10, 0.5, 8);
+            restored.restore(saved, snapshot);
+            for (Message msg : messages) {
+                success = success && restored.mightContainID(msg.getMessageID()) == filter.mightContainID(msg.getMessageID());
+            }
+            Files.writeString(snapshot, "[ ]");
+            try {
+                restored.restore(saved, snapshot);
+                success = false;
+            } catch (IOException e) {
+                System.out.println("Stale filter rejected: " + e.getMessage().contains("different version"));
+            }
+            Files.delete(snapshot);
+            Files.delete(saved);
+        } catch (IOException e) {
+            System.out.println("❌ " + e.getMessage());
+            success = false;
+        }
+        
+        store.clear();
+        success = success && !filter.mightContainID(messages.get(1).getMessageID());
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Archived messages are found by ID and hash, deleted, compacted and survive a restart
+     */
+    public void testMessageArchive() {
+        System.out.println("Testing compressed message archive:");
+        MessageArchive archive = new MessageArchive();
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Message msg = new Message();
+            msg.setMessageID(String.valueOf(4300000000L + i));
+            msg.setMessageHash("43:" + i + ":OLDMSG" + i);
+            msg.setRecipient("+2783" + (1000000 + i % 50));
+            msg.setMessageText("Old message number " + i + " that nobody reads any more");
+            msg.setStatus(i % 3 == 0 ? "Disregarded" : "Sent");
+            messages.add(msg);
+        }
+        archive.archive(messages.subList(0, 10_000));
+        archive.archive(messages.subList(10_000, 20_000));
+        System.out.println(archive.describe());
+        
+        boolean success = archive.size() == 20_000 && archive.getBlockCount() > 2
+            && archive.getCompressedBytes() * 3 < archive.getRawBytes();
+        for (int i = 0; i < messages.size(); i += 997) {
+            Message msg = messages.get(i);
+            Message byID = archive.findByID(msg.getMessageID());
+            Message byHash = archive.findByHash(msg.getMessageHash().toLowerCase(Locale.ROOT));
+            success = success && byID != null && byHash != null
+                && byID.getMessageHash().equals(msg.getMessageHash())
+                && byID.getRecipient().equals(msg.getRecipient())
+                && byID.getMessageText().equals(msg.getMessageText())
+                && byID.getStatus().equals(msg.getStatus())
+                && byHash.getMessageID().equals(msg.getMessageID());
+        }
+        success = success && archive.findByID("4399999999") == null
+            && archive.find(messages.get(5).getMessageID(), "43:5:WRONG") == null;
+        
+        // Deleting over a quarter rebuilds the blocks without the deleted messages
+        for (int i = 0; i < messages.size(); i += 2) {
+            success = success && archive.remove(messages.get(i).getMessageID(), messages.get(i).getMessageHash());
+        }
+        success = success && !archive.remove(messages.get(0).getMessageID(), messages.get(0).getMessageHash())
+            && archive.size() == 10_000 && archive.findByID(messages.get(0).getMessageID()) == null
+            && archive.findByID(messages.get(1).getMessageID()) != null;
+        int[] visited = new int[1];
+        archive.forEach(msg -> visited[0]++);
+        success = success && visited[0] == 10_000;
+        
+        // Saved and loaded, with deletes made after the last compaction
+        archive.remove(messages.get(1).getMessageID(), messages.get(1).getMessageHash());
+        try {
+            Path file = Files.createTempFile("messages", ".archive");
+            archive.save(file);
+            MessageArchive loaded = new MessageArchive();
+            loaded.load(file);
+            success = success && loaded.size() == archive.size() && loaded.findByID(messages.get(1).getMessageID()) == null
+                && loaded.findByHash(messages.get(19_999).getMessageHash()) != null;
+            
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 10));
+            try {
+                loaded.load(file);
+                success = false;
+            } catch (IOException e) {
+                success = success && loaded.isEmpty();
+                System.out.println("Damaged archive rejected: " + e.getMessage());
+            }
+            Files.delete(file);
+        } catch (IOException e) {
+            System.out.println("❌ " + e.getMessage());
+            success = false;
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * The query language of TextIndex, evaluated directly on one text
+     */
+    private static boolean bruteForceMatch(String query, String text) {
+        String padded = " " + String.join(" ", TextIndex.tokenize(text)) + " ";
+        for (String clause : query.split(" OR ")) {
+            boolean all = true;
+            Matcher part = Pattern.compile("\"([^\"]*)\"|(\\S+)").matcher(clause);
+            while (part.find() && all) {
+                String words = part.group(1) != null ? part.group(1) : part.group(2);
+                all = padded.contains(" " + String.join(" ", TextIndex.tokenize(words)) + " ");
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * TEST: Reports and searches give the same answers after messages are archived
+     */
+    public void testArchivedMessagesStayVisible() {
+        System.out.println("Testing queries over archived messages:");
+        MessageStore store = new MessageStore();
+        TextIndex textIndex = new TextIndex();
+        ConversationIndex conversations = new ConversationIndex();
+        store.addListener(textIndex);
+        store.addListener(conversations);
+        String[] statuses = {"Sent", "Stored", "Disregarded", "Queued"};
+        List<Message> cold = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Message msg = new Message();
+            msg.setMessageID(String.valueOf(4400000000L + i));
+            msg.setMessageHash("44:" + i + ":MESSAGE" + i);
+            msg.setRecipient("+2783" + (2000000 + i % 40));
+            msg.setMessageText("Message " + i + " about topic" + (i % 13)
+                + (i % 11 == 0 ? " see you soon " : " ") + "x".repeat(i % 97));
+            msg.setStatus(statuses[i % 4]);
+            store.add(msg);
+            if (i < 2000 && i % 4 != 1) {
+                cold.add(msg);
+            }
+        }
+        String recipient = "+27832000007";
+        String query = "topic5 OR \"see you\"";
+        
+        String before = describeVisible(store, textIndex, conversations, new MessageArchive(), recipient, query);
+        MessageArchive archive = new MessageArchive();
+        archive.archive(cold);
+        for (Message msg : cold) {
+            store.remove(msg);
+        }
+        String after = describeVisible(store, textIndex, conversations, archive, recipient, query);
+        
+        boolean success = store.size() == 3000 - cold.size() && archive.size() == cold.size() && before.equals(after);
+        try {
+            // A message with no recipient or status survives a save too
+            Message empty = new Message();
+            empty.setMessageID("4499999999");
+            empty.setMessageHash("44:0:EMPTY");
+            empty.setRecipient(null);
+            empty.setStatus(null);
+            archive.archive(List.of(empty));
+            Path file = Files.createTempFile("visible", ".archive");
+            archive.save(file);
+            MessageArchive loaded = new MessageArchive();
+            loaded.load(file);
+            Files.delete(file);
+            Message reloaded = loaded.findByID("4499999999");
+            success = success && reloaded != null && reloaded.getRecipient() == null && reloaded.getStatus() == null
+                && loaded.remove("4499999999", "44:0:EMPTY")
+                && before.equals(describeVisible(store, textIndex, conversations, loaded, recipient, query));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("❌ " + e);
+            success = false;
+        }
+        System.out.println("Before: " + before);
+        System.out.println("After:  " + after);
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * Summarises what the reports and searches see over a store and its archive
+     */
+    private static String describeVisible(MessageStore store, TextIndex textIndex, ConversationIndex conversations,
+                                          MessageArchive archive, String recipient, String query) {
+        MessageStatistics statistics = MessageStatistics.combined(store.getStatistics(), archive.getStatistics());
+        
+        List<Message> longest = new ArrayList<>(store.findLongest(25));
+        longest.addAll(archive.findLongest(25));
+        List<Message> longestToRecipient = new ArrayList<>(store.findLongestForRecipient(recipient, 5));
+        longestToRecipient.addAll(archive.findLongestForRecipient(recipient, 5));
+        
+        List<String> conversation = new ArrayList<>();
+        conversations.newestFirst(recipient).forEachRemaining(msg -> conversation.add(msg.getMessageID()));
+        archive.forRecipient(recipient, msg -> conversation.add(msg.getMessageID()));
+        Collections.sort(conversation);
+        
+        List<String> found = new ArrayList<>();
+        TextIndex.Result indexed = textIndex.search(query, 10_000);
+        TextIndex.Result archived = archive.search(new TextIndex.Query(query), 10_000);
+        for (Message msg : indexed.getMessages()) {
+            found.add(msg.getMessageID());
+        }
+        for (Message msg : archived.getMessages()) {
+            found.add(msg.getMessageID());
+        }
+        Collections.sort(found);
+        
+        return statistics.getMessageCount() + " messages, sent " + statistics.countByStatus("Sent")
+            + ", stored " + statistics.countByStatus("Stored") + ", disregarded " + statistics.countByStatus("Disregarded")
+            + ", lengths " + statistics.getShortestLength() + "-" + statistics.getLongestLength()
+            + " (" + statistics.getTotalChars() + " chars)"
+            + " | top 25 " + topLengths(longest, 25) + " | top 5 to recipient " + topLengths(longestToRecipient, 5)
+            + " | recipient " + (conversations.count(recipient) + archive.countForRecipient(recipient))
+            + " #" + conversation.hashCode()
+            + " | text " + (indexed.getTotalMatches() + archived.getTotalMatches()) + " #" + found.hashCode();
+    }
+    
+    private static List<Integer> topLengths(List<Message> messages, int k) {
+        List<Integer> lengths = new ArrayList<>();
+        for (Message msg : messages) {
+            lengths.add(msg.getMessageTextLength());
+        }
+        lengths.sort(Collections.reverseOrder());
+        return lengths.subList(0, Math.min(k, lengths.size()));
+    }
+    
+    /**
+     * TEST: Long-keyed message ID index
+     */
+    public void testLongSlotIndex() {
+        System.out.println("Testing long-keyed message ID index:");
+        LongSlotIndex index = new LongSlotIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put(1000000000L + i * 7919L, i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            index.remove(1000000000L + i * 7919L);
+        }
+        boolean success = index.size() == 500 && index.get(1000000000L + 7919L) == 1
+            && !index.containsKey(1000000000L) && index.get(1000000000L + 999 * 7919L) == 999;
+        System.out.println(LongSlotIndex.describeFootprint(1000000));
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Bulk validation matches the one-at-a-time checks
+     */
+    public void testBulkValidation() {
+        System.out.println("Testing bulk recipient and message validation:");
+        String[] recipients = {"+27831234567", "0831234567", "+2783123456", "+27a31234567", null};
+        String[] texts = {"Hello", "A".repeat(251), "A".repeat(250), null, ""};
+        
+        BitSet badRecipients = MessageValidator.invalidRecipients(recipients);
+        BitSet longTexts = MessageValidator.oversizedTexts(texts);
+        boolean success = badRecipients.equals(BitSet.valueOf(new long[] {0b11110}))
+            && longTexts.equals(BitSet.valueOf(new long[] {0b01010}));
+        
+        // A batch big enough to be split across the fork-join pool
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < MessageValidator.PARALLEL_THRESHOLD * 3; i++) {
+            Message msg = new Message();
+            msg.setRecipient(i % 7 == 0 ? "+2783123456" + (i % 10) + "x" : "+2783123" + String.format("%04d", i % 10000));
+            msg.setMessageText(i % 5 == 0 ? "B".repeat(260) : "Hi " + i);
+            batch.add(msg);
+        }
+        byte[] codes = MessageValidator.validate(batch);
+        int mismatches = 0;
+        for (int i = 0; i < codes.length; i++) {
+            Message msg = batch.get(i);
+            boolean recipientOk = login.checkCellPhoneNumber(msg.getRecipient());
+            boolean textOk = message.checkMessageLength(msg.getMessageText()).contains("ready to send");
+            if (recipientOk != ((codes[i] & MessageValidator.INVALID_RECIPIENT) == 0)
+                    || textOk != ((codes[i] & MessageValidator.TEXT_TOO_LONG) == 0)) {
+                mismatches++;
+            }
+        }
+        System.out.println("Invalid in batch: " + MessageValidator.countInvalid(codes) + " of " + codes.length
+            + ", mismatches: " + mismatches);
+        success = success && mismatches == 0;
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Messages sent over the ingestion server reach the sink; over-long lines are refused
+     */
+    public void testIngestionServer() {
+        System.out.println("Testing TCP message ingestion:");
+        List<Message> received = new ArrayList<>();
+        boolean success;
+        try (IngestionServer server = IngestionServer.start(0, msg -> {
+                 if (msg.getMessageText().startsWith("Crash")) {
+                     throw new IllegalStateException("sink failed");
+                 }
+                 synchronized (received) {
+                     received.add(msg);
+                 }
+             });
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            // Pipelined: all requests are written before any response is read
+            out.write("PING\nSEND +27831234567 Hi Mike tonight\nSTORE 0831234567 Bad number\n"
+                + "DISREGARD +27831234567 " + "A".repeat(251) + "\nSEND +27831234567 Crash the sink\nQUIT\n");
+            out.flush();
+            
+            String pong = in.readLine();
+            String ok = in.readLine();
+            String badNumber = in.readLine();
+            String tooLong = in.readLine();
+            String crashed = in.readLine(); // a failing sink answers ERR and keeps the connection
+            String bye = in.readLine();
+            System.out.println("Responses: " + pong + " | " + ok + " | " + badNumber + " | " + tooLong + " | " + crashed + " | " + bye);
+            
+            success = "PONG".equals(pong) && ok.startsWith("OK ") && ok.endsWith(":1:HITONIGHT")
+                && badNumber.startsWith("ERR Cell phone number") && tooLong.startsWith("ERR Message exceeds")
+                && "ERR Internal error: IllegalStateException".equals(crashed)
+                && "BYE".equals(bye) && received.size() == 1
+                && received.get(0).getStatus().equals("Sent")
+                && ok.equals("OK " + received.get(0).getMessageID() + " " + received.get(0).getMessageHash())
+                && server.getRejectedMessages() == 3;
+            
+            // A line at the limit is still parsed; one past it is refused and the connection closed
+            try (Socket flood = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                Writer floodOut = new OutputStreamWriter(flood.getOutputStream(), StandardCharsets.UTF_8);
+                BufferedReader floodIn = new BufferedReader(new InputStreamReader(flood.getInputStream(), StandardCharsets.UTF_8));
+                String prefix = "SEND +27831234567 ";
+                floodOut.write(prefix + "y".repeat(IngestionServer.MAX_LINE_CHARS - prefix.length()) + "\n");
+                floodOut.write("z".repeat(IngestionServer.MAX_LINE_CHARS + 1));
+                floodOut.flush();
+                String atLimit = floodIn.readLine();
+                String overLimit = floodIn.readLine();
+                System.out.println("Over-long line: " + overLimit);
+                success = success && atLimit.startsWith("ERR Message exceeds")
+                    && ("ERR Request longer than " + IngestionServer.MAX_LINE_CHARS + " characters").equals(overLimit)
+                    && floodIn.readLine() == null && server.getRejectedMessages() == 5;
+            }
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            success = false;
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: A journal append that fails part way leaves no fragment for the next record to join
+     */
+    public void testJournalFailedAppend() {
+        System.out.println("Testing journal rollback of a failed append:");
+        boolean success;
+        try {
+            Path file = Files.createTempFile("failed-append", ".journal");
+            Message[] messages = new Message[4];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = new Message();
+                messages[i].setMessageID(String.valueOf(1300000000L + i));
+                messages[i].setMessageHash("13:" + i + ":ROLLBACK");
+                messages[i].setRecipient("+27831234567");
+                messages[i].setMessageText("Rollback " + i);
+                messages[i].setStatus("Sent");
+            }
+            
+            FailingChannel channel = new FailingChannel(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            int failures = 0;
+            try (MessageJournal journal = new MessageJournal(file, channel, 1)) {
+                journal.appendAdd(messages[0]);
+                channel.failForce = true; // written in full, but the sync fails
+                try {
+                    journal.appendAdd(messages[1]);
+                } catch (IOException e) {
+                    failures++;
+                }
+                channel.failForce = false;
+                channel.writeBudget = 10; // the disk fills 10 bytes into the record
+                try {
+                    journal.appendAdd(messages[2]);
+                } catch (IOException e) {
+                    failures++;
+                }
+                channel.writeBudget = -1;
+                journal.appendAdd(messages[3]); // acknowledged, so replay must see it
+                success = failures == 2 && journal.getRecordCount() == 2;
+            }
+            
+            List<String> replayedIDs = new ArrayList<>();
+            try (MessageJournal journal = MessageJournal.open(file.toString(), 0)) {
+                journal.replay(new MessageJournal.Listener() {
+                    @Override
+                    public void messageAdded(Message message) { replayedIDs.add(message.getMessageID()); }
+                    @Override
+                    public void messageDeleted(String messageID, String messageHash) { }
+                });
+            }
+            Files.deleteIfExists(file);
+            System.out.println("Replayed after two failed appends: " + replayedIDs);
+            success = success && replayedIDs.equals(List.of("1300000000", "1300000003"));
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            success = false;
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * File channel that can run out of space after a number of bytes, or fail to sync
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel file;
+        int writeBudget = -1; // bytes still writable; -1 for no limit
+        boolean failForce = false;
+        
+        FailingChannel(FileChannel file) {
+            this.file = file;
+        }
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (writeBudget < 0) {
+                return file.write(src);
+            }
+            if (writeBudget == 0) {
+                throw new IOException("No space left on device");
+            }
+            int limit = src.limit();
+            src.limit(Math.min(limit, src.position() + writeBudget));
+            int written = file.write(src);
+            src.limit(limit);
+            writeBudget -= written;
+            return written;
+        }
+        
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("Sync failed");
+            }
+            file.force(metaData);
+        }
+        
+        @Override public int read(ByteBuffer dst) throws IOException { return file.read(dst); }
+        @Override public long read(ByteBuffer[] dsts, int offset, int length) throws IOException { return file.read(dsts, offset, length); }
+        @Override public long write(ByteBuffer[] srcs, int offset, int length) throws IOException { throw new IOException("Not supported"); }
+        @Override public long position() throws IOException { return file.position(); }
+        @Override public FileChannel position(long newPosition) throws IOException { file.position(newPosition); return this; }
+        @Override public long size() throws IOException { return file.size(); }
+        @Override public FileChannel truncate(long size) throws IOException { file.truncate(size); return this; }
+        @Override public long transferTo(long position, long count, WritableByteChannel target) throws IOException { return file.transferTo(position, count, target); }
+        @Override public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException { throw new IOException("Not supported"); }
+        @Override public int read(ByteBuffer dst, long position) throws IOException { return file.read(dst, position); }
+        @Override public int write(ByteBuffer src, long position) throws IOException { throw new IOException("Not supported"); }
+        @Override public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException { return file.map(mode, position, size); }
+        @Override public FileLock lock(long position, long size, boolean shared) throws IOException { return file.lock(position, size, shared); }
+        @Override public FileLock tryLock(long position, long size, boolean shared) throws IOException { return file.tryLock(position, size, shared); }
+        @Override protected void implCloseChannel() throws IOException { file.close(); }
+    }
+    
+    /**
+     * TEST: A damaged journal record is skipped without losing the records after it; a torn tail is cut
+     */
+    public void testJournalReplay() {
+        System.out.println("Testing journal replay past a damaged record:");
+        boolean success;
+        try {
+            Path file = Files.createTempFile("replay", ".journal");
+            try (MessageJournal journal = MessageJournal.open(file.toString(), 0)) {
+                for (int i = 0; i < 3; i++) {
+                    Message msg = new Message();
+                    msg.setMessageID(String.valueOf(1200000000L + i));
+                    msg.setMessageHash("12:" + i + ":REPLAY");
+                    msg.setRecipient("+27831234567");
+                    msg.setMessageText("Replay " + i);
+                    msg.setStatus("Sent");
+                    journal.appendAdd(msg);
+                }
+            }
+            List<String> lines = new ArrayList<>(Files.readAllLines(file));
+            lines.set(1, "{\"op\":\"send\",\"mess");
+            Files.writeString(file, String.join("\n", lines) + "\n{\"op\":\"del");
+            
+            List<String> replayedIDs = new ArrayList<>();
+            int replayed;
+            try (MessageJournal journal = MessageJournal.open(file.toString(), 0)) {
+                replayed = journal.replay(new MessageJournal.Listener() {
+                    @Override
+                    public void messageAdded(Message message) { replayedIDs.add(message.getMessageID()); }
+                    @Override
+                    public void messageDeleted(String messageID, String messageHash) { }
+                });
+            }
+            List<String> kept = Files.readAllLines(file);
+            Files.deleteIfExists(file);
+            
+            System.out.println("Replayed: " + replayedIDs + " | Lines kept: " + kept.size());
+            success = replayed == 2 && replayedIDs.equals(List.of("1200000000", "1200000002"))
+                && kept.size() == 3 && kept.get(2).contains("1200000002");
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            success = false;
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Concurrent senders share journal fsyncs
+     */
+    public void testGroupCommit() {
+        System.out.println("Testing group commit of concurrent messages:");
+        boolean success;
+        try {
+            Path file = Files.createTempFile("group-commit", ".journal");
+            int senders = 8;
+            int perSender = 50;
+            GroupCommitter committer;
+            try (MessageJournal journal = MessageJournal.open(file.toString(), 0)) {
+                committer = new GroupCommitter(journal, 128, 64, 5);
+                List<CompletableFuture<Message>> futures = Collections.synchronizedList(new ArrayList<>());
+                Thread[] threads = new Thread[senders];
+                for (int t = 0; t < senders; t++) {
+                    int sender = t;
+                    threads[t] = new Thread(() -> {
+                        for (int i = 0; i < perSender; i++) {
+                            Message msg = new Message();
+                            msg.setMessageID(String.valueOf(1000000000L + sender * 1000L + i));
+                            msg.setMessageHash("00:" + i + ":GROUPCOMMIT");
+                            msg.setRecipient("+27831234567");
+                            msg.setMessageText("Group commit");
+                            msg.setStatus("Sent");
+                            futures.add(committer.submit(msg));
+                        }
+                    });
+                    threads[t].start();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+                committer.close();
+            }
+            
+            int[] replayed = {0};
+            try (MessageJournal journal = MessageJournal.open(file.toString(), 0)) {
+                journal.replay(new MessageJournal.Listener() {
+                    @Override
+                    public void messageAdded(Message message) { replayed[0]++; }
+                    @Override
+                    public void messageDeleted(String messageID, String messageHash) { }
+                });
+            }
+            
+            System.out.println("Committed " + committer.getCommittedCount() + " messages in "
+                + committer.getBatchCount() + " fsyncs, replayed " + replayed[0]);
+            success = committer.getCommittedCount() == senders * perSender && replayed[0] == senders * perSender
+                && committer.getBatchCount() < senders * perSender;
+            
+            // Senders racing with close() must all get an answer, written or failed
+            List<CompletableFuture<Message>> raced = Collections.synchronizedList(new ArrayList<>());
+            try (MessageJournal journal = MessageJournal.open(file.toString(), 0)) {
+                GroupCommitter closing = new GroupCommitter(journal, 4, 2, 1);
+                Thread[] threads = new Thread[senders];
+                for (int t = 0; t < senders; t++) {
+                    threads[t] = new Thread(() -> {
+                        for (int i = 0; i < perSender; i++) {
+                            Message msg = new Message();
+                            msg.setMessageID("1999999999");
+                            msg.setMessageText("Closing race");
+                            raced.add(closing.submit(msg));
+                        }
+                    });
+                    threads[t].start();
+                }
+                Thread.sleep(2);
+                closing.close();
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            }
+            Files.deleteIfExists(file);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            for (CompletableFuture<Message> future : raced) {
+                while (!future.isDone() && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+                success = success && future.isDone();
+            }
+            success = success && raced.size() == senders * perSender;
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Error: " + e.getMessage());
+            success = false;
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: JSON -> binary segment -> JSON keeps every field
+     */
+    public void testMessageSegmentRoundTrip() {
+        System.out.println("Testing binary message segment round trip:");
+        boolean success;
+        try {
+            Path json = Files.createTempFile("segment", ".json");
+            Path segment = Files.createTempFile("segment", ".seg");
+            Path back = Files.createTempFile("segment-back", ".json");
+            
+            List<Message> messages = new ArrayList<>();
+            String[][] fields = {
+                {"1234567890", "+27831234567", "Hi Mike, can you join us for dinner tonight", "12:0:HITONIGHT", "Sent"},
+                {"0012345678", "+27838884567", "Ünïcödé 👋 text", "00:1:ÜNÏCÖDÉTEXT", "Stored"},
+                {"ABC", "", "", "", "Disregarded"},
+                {"9999999999", "+27830000000", "Custom status", "99:3:CUSTOMSTATUS", "Queued"}};
+            for (String[] f : fields) {
+                Message msg = new Message();
+                msg.setMessageID(f[0]);
+                msg.setRecipient(f[1]);
+                msg.setMessageText(f[2]);
+                msg.setMessageHash(f[3]);
+                msg.setStatus(f[4]);
+                messages.add(msg);
+            }
+            Message.storeMessagesToJSON(messages, json.toString());
+            
+            int converted = MessageSegmentConverter.jsonToSegment(json, segment);
+            MessageSegmentConverter.segmentToJSON(segment, back);
+            List<Message> reloaded = Message.loadMessagesFromJSON(back.toString());
+            
+            success = converted == fields.length && reloaded.size() == fields.length;
+            try (MessageSegmentReader reader = MessageSegmentReader.open(segment)) {
+                for (int i = 0; i < fields.length && success; i++) {
+                    Message msg = reloaded.get(i);
+                    success = msg.getMessageID().equals(fields[i][0]) && msg.getRecipient().equals(fields[i][1])
+                        && msg.getMessageText().equals(fields[i][2]) && msg.getMessageHash().equals(fields[i][3])
+                        && msg.getStatus().equals(fields[i][4])
+                        && reader.getMessageTextLength(i) == fields[i][2].length()
+                        && reader.getMessageID(i).equals(fields[i][0]);
+                }
+                success = success && reader.indexOf("9999999999") == 3 && reader.indexOf("ABC") == 2
+                    && reader.indexOf("1") == -1;
+            }
+            
+            // A segment cut short (no trailer) must be refused
+            Files.write(segment, Arrays.copyOf(Files.readAllBytes(segment), (int) Files.size(segment) - 1));
+            try {
+                MessageSegmentReader.open(segment).close();
+                success = false;
+            } catch (IOException expected) {
+                System.out.println("Truncated segment rejected: " + expected.getMessage());
+            }
+            
+            Files.deleteIfExists(json);
+            Files.deleteIfExists(segment);
+            Files.deleteIfExists(back);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            success = false;
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: lazy views loaded from JSON and from a segment match the eager messages
+     */
+    public void testLazyMessageViews() {
+        System.out.println("Testing lazy message views:");
+        boolean success;
+        try {
+            Path json = Files.createTempFile("lazy", ".json");
+            Path segment = Files.createTempFile("lazy", ".seg");
+            
+            List<Message> messages = new ArrayList<>();
+            String[][] fields = {
+                {"1234567890", "+27831234567", "Hi Mike, can you join us for dinner tonight", "12:0:HITONIGHT", "Sent"},
+                {"0012345678", "+27838884567", "👋👋👋 Ünïcödé text that runs past thirty characters", "00:1:👋TEXT", "Stored"},
+                {"ABC", "", "", "", ""},
+                {"9999999999", "+27830000000", "Custom status", "99:3:CUSTOMSTATUS", "Queued"}};
+            for (String[] f : fields) {
+                Message msg = new Message();
+                msg.setMessageID(f[0]);
+                msg.setRecipient(f[1]);
+                msg.setMessageText(f[2]);
+                msg.setMessageHash(f[3]);
+                msg.setStatus(f[4]);
+                messages.add(msg);
+            }
+            Message.storeMessagesToJSON(messages, json.toString());
+            MessageSegmentWriter.writeAtomically(messages, segment);
+            
+            List<Message> fromJSON = Message.loadLazyMessagesFromJSON(json.toString());
+            success = fromJSON.size() == messages.size() && fromJSON.get(0) instanceof LazyMessage;
+            try (MessageSegmentReader reader = MessageSegmentReader.open(segment)) {
+                for (int i = 0; i < messages.size() && success; i++) {
+                    Message eager = messages.get(i);
+                    for (Message lazy : new Message[] {fromJSON.get(i), reader.getView(i)}) {
+                        success = success && lazy.getMessageID().equals(eager.getMessageID())
+                            && lazy.getRecipient().equals(eager.getRecipient())
+                            && lazy.getMessageText().equals(eager.getMessageText())
+                            && lazy.getMessageHash().equals(eager.getMessageHash())
+                            && lazy.getStatus().equals(eager.getStatus())
+                            && lazy.getMessageTextLength() == eager.getMessageTextLength()
+                            && lazy.getPreview(30).equals(eager.getPreview(30))
+                            && lazy.getPreview(20).equals(eager.getPreview(20));
+                    }
+                }
+            }
+            
+            // A setter replaces the stored field without touching the others
+            Message lazy = fromJSON.get(0);
+            lazy.setStatus("Stored");
+            lazy.setMessageText("Changed");
+            success = success && lazy.getStatus().equals("Stored") && lazy.getMessageTextLength() == 7
+                && lazy.getPreview(3).equals("Cha...") && lazy.getMessageHash().equals("12:0:HITONIGHT");
+            
+            Files.deleteIfExists(json);
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            success = false;
+        }
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
+    /**
+     * TEST: Recipients share one String per number across threads, loads and segments, up to the
+     * dictionary's capacity; statuses keep their text
+     */
+    public void testRecipientDictionary() {
+        System.out.println("Testing recipient dictionary and status codes:");
+        RecipientDictionary dictionary = RecipientDictionary.SHARED;
+        int before = dictionary.size();
+        
+        // Threads adding the same new recipients in different orders agree on every code
+        int[][] codes = new int[4][2000];
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < codes.length; t++) {
+            int thread = t;
+            workers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    int n = thread % 2 == 0 ? i : 1999 - i;
+                    codes[thread][n] = dictionary.code("+2784" + (7000000 + n));
+                }
+            }));
+        }
+        workers.forEach(CompletableFuture::join);
+        boolean success = dictionary.size() == before + 2000 && dictionary.code(null) == RecipientDictionary.NONE
+            && dictionary.name(RecipientDictionary.NONE) == null;
+        for (int t = 1; t < codes.length; t++) {
+            success = success && Arrays.equals(codes[0], codes[t]);
+        }
+        success = success && dictionary.name(codes[0][42]).equals("+2784" + 7000042);
+        
+        // Eager, JSON-loaded and segment-backed messages all hand out the same copy
+        try {
+            Path json = Files.createTempFile("dictionary", ".json");
+            Path segment = Files.createTempFile("dictionary", ".seg");
+            List<Message> messages = new ArrayList<>();
+            String[] statuses = {"Sent", "Stored", "Disregarded", "Queued", ""};
+            for (int i = 0; i < 50; i++) {
+                Message msg = new Message();
+                msg.setMessageID(String.valueOf(4400000000L + i));
+                msg.setMessageHash("44:" + i + ":SHARED");
+                msg.setRecipient(new String("+2783555000" + (i % 5)));
+                msg.setMessageText("Message " + i);
+                msg.setStatus(statuses[i % statuses.length]);
+                messages.add(msg);
+            }
+            Message.storeMessagesToJSON(messages, json.toString());
+            MessageSegmentWriter.writeAtomically(messages, segment);
+            List<Message> loaded = Message.loadLazyMessagesFromJSON(json.toString());
+            List<Message> parsed = Message.loadMessagesFromJSON(json.toString());
+            try (MessageSegmentReader reader = MessageSegmentReader.open(segment)) {
+                for (int i = 0; i < messages.size(); i++) {
+                    String shared = messages.get(i).getRecipient();
+                    success = success && shared == messages.get(i % 5).getRecipient()
+                        && loaded.get(i).getRecipient() == shared && parsed.get(i).getRecipient() == shared
+                        && reader.getView(i).getRecipient() == shared && reader.get(i).getRecipient() == shared
+                        && reader.getView(i).getStatus().equals(statuses[i % statuses.length])
+                        && parsed.get(i).getStatus().equals(statuses[i % statuses.length]);
+                }
+                System.out.println("Segment recipient table: 5 numbers for " + reader.size() + " messages, "
+                    + Files.size(segment) + " bytes");
+            }
+            Files.delete(json);
+            Files.delete(segment);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+            success = false;
+        }
+        
+        Message msg = new Message();
+        msg.setStatus(null);
+        success = success && msg.getStatus() == null && new Message().getStatus().equals("") && new Message().getRecipient().equals("");
+        msg.setRecipient(null);
+        success = success && msg.getRecipient() == null;
+        
+        // A full dictionary keeps its codes and turns new numbers away instead of growing
+        RecipientDictionary small = new RecipientDictionary(3);
+        int first = small.code("+27831110000");
+        small.code("+27831110001");
+        small.code("+27831110002");
+        String overflow = new String("+27831110003");
+        success = success && small.code(overflow) == RecipientDictionary.UNSHARED && small.canonical(overflow) == overflow
+            && small.size() == 3 && small.capacity() == 3 && small.code("+27831110000") == first
+            && small.name(first).equals("+27831110000") && small.code(null) == RecipientDictionary.NONE;
+        System.out.println("Bounded dictionary: " + small.size() + " of " + small.capacity() + " codes, overflow kept by caller");
+        System.out.println("Test " + (success ? "PASSED" : "FAILED"));
+        System.out.println("=".repeat(40));
+    }
+    
     /**
      * RUN ALL MESSAGE TESTS
      */
@@ -106,7 +1527,29 @@ public class MessageTest {
         testCheckRecipientCellValid();
         testCheckRecipientCellInvalid();
         testCreateMessageHash();
+        testHashAllMessages();
         testGenerateMessageID();
+        testSnowflakeMessageID();
+        testCounterMessageID();
+        testLoadMessagesFromJSONStreaming();
+        testParallelJsonLoad();
+        testMessageStoreLookups();
+        testMessageStatistics();
+        testTopLongestMessages();
+        testTextIndex();
+        testConversationIndex();
+        testMessageBloomFilter();
+        testMessageArchive();
+        testArchivedMessagesStayVisible();
+        testLongSlotIndex();
+        testBulkValidation();
+        testIngestionServer();
+        testJournalReplay();
+        testJournalFailedAppend();
+        testGroupCommit();
+        testMessageSegmentRoundTrip();
+        testLazyMessageViews();
+        testRecipientDictionary();
         
         System.out.println("=".repeat(60));
         System.out.println("MESSAGE TESTS COMPLETED");
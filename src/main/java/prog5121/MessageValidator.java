@@ -0,0 +1,227 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BULK MESSAGE VALIDATOR
+ * Holds the recipient and message-length rules. Login.checkCellPhoneNumber and
+ * Message.checkMessageLength call them for single values, and this class applies
+ * them to whole batches. Results are compact codes instead of
+ * human-readable Strings: one byte of flag bits per message, or a BitSet per rule.
+ * The checks are pure (no logging, no shared state), so large batches are split
+ * into chunks and validated in parallel on the common fork-join pool.
+ * @author Chumisa Haya
+ */
+public final class MessageValidator {
+    // Result flags; a message is valid when its code is VALID
+    public static final byte VALID = 0;
+    public static final byte INVALID_RECIPIENT = 1;
+    public static final byte TEXT_TOO_LONG = 2;
+
+    public static final int MAX_MESSAGE_LENGTH = 250;
+
+    // Below this many items a batch is checked on the calling thread
+    static final int PARALLEL_THRESHOLD = 8192;
+    // Multiple of 64 so every chunk owns whole BitSet words
+    private static final int CHUNK_SIZE = 4096;
+
+    private MessageValidator() {
+    }
+
+    /**
+     * CELL NUMBER RULE
+     * "+27" followed by exactly 9 digits; checked in place without allocating
+     *
+     * @param cellNumber - the number to check
+     * @return boolean - true if the number is correctly formatted
+     */
+    public static boolean isValidCellNumber(String cellNumber) {
+        if (cellNumber == null || cellNumber.length() != 12 || !cellNumber.startsWith("+27")) {
+            return false;
+        }
+        for (int i = 3; i < 12; i++) {
+            if (!Character.isDigit(cellNumber.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * MESSAGE LENGTH RULE
+     *
+     * @param messageText - the text to check
+     * @return boolean - true if the text is at most 250 characters
+     */
+    public static boolean isValidMessageLength(String messageText) {
+        return messageText != null && isValidMessageLength(messageText.length());
+    }
+
+    /**
+     * @param length - a text length in characters
+     * @return boolean - true if a text that long is allowed
+     */
+    public static boolean isValidMessageLength(int length) {
+        return length <= MAX_MESSAGE_LENGTH;
+    }
+
+    /**
+     * VALIDATES ONE RECIPIENT AND TEXT
+     *
+     * @param recipient - the recipient cell number
+     * @param messageText - the message text
+     * @return byte - VALID, or INVALID_RECIPIENT and/or TEXT_TOO_LONG
+     */
+    public static byte validate(String recipient, String messageText) {
+        int code = VALID;
+        if (!isValidCellNumber(recipient)) {
+            code |= INVALID_RECIPIENT;
+        }
+        if (!isValidMessageLength(messageText)) {
+            code |= TEXT_TOO_LONG;
+        }
+        return (byte) code;
+    }
+
+    /**
+     * VALIDATES A BATCH OF MESSAGES
+     *
+     * @param messages - the messages to check
+     * @return byte[] - one result code per message, in list order
+     */
+    public static byte[] validate(List<Message> messages) {
+        Message[] batch = messages.toArray(new Message[0]);
+        byte[] codes = new byte[batch.length];
+        forEachChunk(batch.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int code = isValidCellNumber(batch[i].getRecipient()) ? VALID : INVALID_RECIPIENT;
+                if (!isValidMessageLength(batch[i].getMessageTextLength())) {
+                    code |= TEXT_TOO_LONG;
+                }
+                codes[i] = (byte) code;
+            }
+        });
+        return codes;
+    }
+
+    /**
+     * VALIDATES A BATCH OF RECIPIENTS
+     *
+     * @param recipients - the cell numbers to check
+     * @return BitSet - bit i is set when recipients[i] is invalid
+     */
+    public static BitSet invalidRecipients(String[] recipients) {
+        long[] words = new long[(recipients.length + 63) >>> 6];
+        forEachChunk(recipients.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (!isValidCellNumber(recipients[i])) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        });
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * VALIDATES A BATCH OF MESSAGE TEXTS
+     *
+     * @param messageTexts - the texts to check
+     * @return BitSet - bit i is set when messageTexts[i] is over 250 characters
+     */
+    public static BitSet oversizedTexts(String[] messageTexts) {
+        long[] words = new long[(messageTexts.length + 63) >>> 6];
+        forEachChunk(messageTexts.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (!isValidMessageLength(messageTexts[i])) {
+                    words[i >>> 6] |= 1L << i;
+                }
+            }
+        });
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * @param codes - result codes from validate(List)
+     * @return int - number of messages that failed any rule
+     */
+    public static int countInvalid(byte[] codes) {
+        int invalid = 0;
+        for (byte code : codes) {
+            if (code != VALID) {
+                invalid++;
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * DESCRIBES A RESULT CODE
+     * The wording checkRecipientCell and checkMessageLength report
+     *
+     * @param code - the result code
+     * @param messageText - the text that was checked, for the excess count
+     * @return String - a readable explanation
+     */
+    public static String describe(byte code, String messageText) {
+        if ((code & INVALID_RECIPIENT) != 0) {
+            return "Cell phone number is incorrectly formatted or does not contain an international code. Please correct the number and try again.";
+        }
+        if ((code & TEXT_TOO_LONG) != 0) {
+            int excessChars = messageText == null ? 0 : messageText.length() - MAX_MESSAGE_LENGTH;
+            return "Message exceeds 250 characters by " + excessChars + ", please reduce size.";
+        }
+        return "Message ready to send.";
+    }
+
+    /**
+     * Checks a range [from, to) of a batch
+     */
+    private interface RangeCheck {
+        void check(int from, int to);
+    }
+
+    private static void forEachChunk(int size, RangeCheck check) {
+        if (size < PARALLEL_THRESHOLD) {
+            check.check(0, size);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ChunkTask(check, 0, size));
+        }
+    }
+
+    /**
+     * Splits a range in half until it is one chunk, then checks it
+     */
+    @SuppressWarnings("serial") // a fork/join task is never serialized
+    private static final class ChunkTask extends RecursiveAction {
+        private final RangeCheck check;
+        private final int from;
+        private final int to;
+
+        ChunkTask(RangeCheck check, int from, int to) {
+            this.check = check;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                check.check(from, to);
+                return;
+            }
+            // Split on a chunk boundary so no two tasks write the same BitSet word
+            int middle = from + ((to - from) / 2 / CHUNK_SIZE) * CHUNK_SIZE;
+            if (middle == from) {
+                middle = from + CHUNK_SIZE;
+            }
+            invokeAll(new ChunkTask(check, from, middle), new ChunkTask(check, middle, to));
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * PARALLEL MESSAGE LOADER
+ * Loads a JSON message file on several threads. One pass over the raw bytes tracks
+ * only string and nesting state to find the commas between top-level records, and
+ * cuts the array there into runs of roughly equal size. Each run is handed to a
+ * fork-join pool as soon as it is cut and parsed into its own MessageArena, and the
+ * runs are joined in file order, so the result is the same list
+ * loadLazyMessagesFromJSON would return. A damaged file loads nothing.
+ *
+ * The boundary pass reads every byte but builds nothing (about a quarter of a
+ * single-threaded parse) and overlaps with the parsing of earlier runs; filling the
+ * store afterwards is still done on one thread.
+ * @author Chumisa Haya
+ */
+final class ParallelMessageLoader {
+    private static final int MIN_RUN_BYTES = 1 << 20;
+    private static final int MAX_RUN_BYTES = 1 << 30; // a run is mapped whole, and a mapping stops at 2 GB
+    private static final int RUNS_PER_THREAD = 4; // smaller runs even out uneven parse times
+    private static final int SCAN_BUFFER = 64 * 1024;
+
+    // Bytes the boundary pass has to look at inside an array: quotes and brackets
+    private static final boolean[] STRUCTURAL = new boolean[256];
+    static {
+        for (char c : "\"{}[],".toCharArray()) {
+            STRUCTURAL[c] = true;
+        }
+    }
+
+    /**
+     * LOADS A MESSAGE FILE ON SEVERAL THREADS
+     *
+     * @param file - a JSON array of messages
+     * @param threads - parser threads to use
+     * @param into - receives the loaded messages as lazy views, in file order; left
+     *        unchanged if the file is damaged
+     * @return int - number of messages added
+     * @throws IOException - if the file cannot be read or is not a message array
+     */
+    static int load(Path file, int threads, List<Message> into) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread: " + threads);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long runBytes = Math.min(MAX_RUN_BYTES,
+                Math.max(MIN_RUN_BYTES, channel.size() / ((long) threads * RUNS_PER_THREAD)));
+            List<ParseTask> runs = new ArrayList<>();
+            String damage = findRuns(channel, runBytes, pool, runs);
+
+            // Join in file order, stopping where the first damaged run went wrong
+            List<Message> loaded = new ArrayList<>();
+            for (ParseTask run : runs) {
+                run.join();
+                if (run.error != null) {
+                    throw run.error;
+                }
+                loaded.addAll(run.messages);
+            }
+            if (damage != null) {
+                throw new IOException(damage);
+            }
+            into.addAll(loaded);
+            return loaded.size();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits the array body into runs of whole records, starting each run's parse
+     * on the pool as soon as its end is found
+     *
+     * @return String - why the file is not a well-formed array, or null if it is
+     */
+    private static String findRuns(FileChannel channel, long runBytes, ForkJoinPool pool, List<ParseTask> runs)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+        byte[] bytes = buffer.array();
+        long offset = 0;
+        long runStart = -1;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+
+        for (int count; (count = channel.read(buffer.clear(), offset)) > 0; offset += count) {
+            int i = 0;
+            if (escaped) {
+                i = 1; // the escaped character opened this buffer
+                escaped = false;
+            }
+            while (i < count) {
+                if (inString) {
+                    // Most bytes are string contents: skip them without looking at anything else
+                    while (i < count && bytes[i] != '"' && bytes[i] != '\\') {
+                        i++;
+                    }
+                    if (i == count) {
+                        break;
+                    }
+                    if (bytes[i] == '\\') {
+                        i += 2;
+                        escaped = i > count;
+                    } else {
+                        inString = false;
+                        i++;
+                    }
+                    continue;
+                }
+                if (depth > 0) {
+                    // Between strings only brackets, commas and quotes matter
+                    while (i < count && !STRUCTURAL[bytes[i] & 0xFF]) {
+                        i++;
+                    }
+                    if (i == count) {
+                        break;
+                    }
+                }
+                byte b = bytes[i];
+                long at = offset + i++;
+                switch (b) {
+                    case '"':
+                        inString = true;
+                        break;
+                    case '{':
+                    case '[':
+                        if (depth == 0) {
+                            if (b != '[' || runStart >= 0) {
+                                return "Expected '[' at byte " + at;
+                            }
+                            runStart = at + 1;
+                        }
+                        depth++;
+                        break;
+                    case '}':
+                    case ']':
+                        if (--depth == 0) {
+                            startRun(new ParseTask(channel, runStart, at), pool, runs);
+                            return trailingContent(channel, at + 1);
+                        }
+                        if (depth < 0) {
+                            return "Unexpected '" + (char) b + "' at byte " + at;
+                        }
+                        break;
+                    case ',':
+                        // A comma between two records: cut here once the run is long enough
+                        if (depth == 1 && at - runStart >= runBytes) {
+                            startRun(new ParseTask(channel, runStart, at), pool, runs);
+                            runStart = at + 1;
+                        }
+                        break;
+                    case ' ':
+                    case '\n':
+                    case '\r':
+                    case '\t':
+                        break;
+                    default:
+                        if (depth == 0) {
+                            return "Expected '[' at byte " + at;
+                        }
+                        break;
+                }
+            }
+        }
+
+        if (runStart < 0) {
+            return null; // An empty file holds no messages
+        }
+        return "Unexpected end of input at byte " + offset;
+    }
+
+    private static void startRun(ParseTask run, ForkJoinPool pool, List<ParseTask> runs) {
+        runs.add(run);
+        pool.execute(run);
+    }
+
+    private static String trailingContent(FileChannel channel, long from) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+        for (long offset = from; channel.read(buffer.clear(), offset) > 0; offset += buffer.position()) {
+            for (int i = 0; i < buffer.position(); i++) {
+                byte b = buffer.get(i);
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return "Unexpected content after the message array at byte " + (offset + i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a mapped run of the file as a stream, so it is decoded a buffer at a time
+     */
+    private static final class MappedInput extends InputStream {
+        private final ByteBuffer bytes;
+
+        MappedInput(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] into, int offset, int length) {
+            if (!bytes.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, bytes.remaining());
+            bytes.get(into, offset, count);
+            return count;
+        }
+    }
+
+    /**
+     * Parses one run of records into its own arena
+     */
+    @SuppressWarnings("serial") // holds an open FileChannel; only ever run in this process
+    private static final class ParseTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final List<Message> messages = new ArrayList<>();
+        private IOException error;
+
+        ParseTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("A run of records over 2 GB cannot be mapped");
+                }
+                ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                MessageArena arena = new MessageArena();
+                try (MessageJsonReader reader = new MessageJsonReader(
+                        new InputStreamReader(new MappedInput(bytes), StandardCharsets.UTF_8), true)) {
+                    Message message;
+                    while ((message = reader.readMessage()) != null) {
+                        messages.add(arena.add(message));
+                    }
+                }
+                arena.trim();
+            } catch (IOException e) {
+                error = new IOException(e.getMessage() + " of the records starting at byte " + start, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * PASSWORD HASHER
+ * Salted PBKDF2-HMAC-SHA256 password hashes with a tunable iteration count. Hashes
+ * are stored as "PBKDF2WithHmacSHA256:iterations:salt:hash" (Base64), so raising the
+ * cost later still verifies older hashes at the cost they were made with.
+ *
+ * Each hash deliberately costs milliseconds of CPU, so verifyAsync() runs them on a
+ * fixed pool with a bounded queue: callers never block, and a login flood is
+ * rejected instead of growing an unbounded backlog. Hashes are compared with
+ * MessageDigest.isEqual, whose running time does not depend on where they differ.
+ *
+ * Defaults come from -Dchatapp.password.iterations (100000),
+ * -Dchatapp.password.threads (one per core) and -Dchatapp.password.queue (1024).
+ * @author Chumisa Haya
+ */
+public class PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    public static final int DEFAULT_ITERATIONS = Integer.getInteger("chatapp.password.iterations", 100_000);
+
+    private static volatile PasswordHasher defaultHasher;
+
+    private final int iterations;
+    private final ThreadPoolExecutor pool;
+    private final SecureRandom random = new SecureRandom();
+
+    // Hash of an unguessable password, checked for unknown usernames so they take as long as known ones
+    private final String decoyHash;
+
+    /**
+     * @param iterations - PBKDF2 iterations for new hashes
+     * @param threads - threads verifying in the background
+     * @param queueCapacity - verifications allowed to wait for a thread
+     */
+    public PasswordHasher(int iterations, int threads, int queueCapacity) {
+        if (iterations < 1 || threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Iterations, threads and queue capacity must be positive");
+        }
+        this.iterations = iterations;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), task -> {
+                Thread thread = new Thread(task, "password-verifier-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        byte[] decoy = new byte[SALT_BYTES];
+        random.nextBytes(decoy);
+        this.decoyHash = encode(Base64.getEncoder().encodeToString(decoy));
+    }
+
+    /**
+     * @return PasswordHasher - the shared hasher configured from system properties
+     */
+    public static PasswordHasher getDefault() {
+        PasswordHasher hasher = defaultHasher;
+        if (hasher == null) {
+            synchronized (PasswordHasher.class) {
+                hasher = defaultHasher;
+                if (hasher == null) {
+                    hasher = new PasswordHasher(DEFAULT_ITERATIONS,
+                        Integer.getInteger("chatapp.password.threads", Runtime.getRuntime().availableProcessors()),
+                        Integer.getInteger("chatapp.password.queue", 1024));
+                    defaultHasher = hasher;
+                }
+            }
+        }
+        return hasher;
+    }
+
+    /**
+     * HASHES A NEW PASSWORD
+     * Runs on the calling thread
+     *
+     * @param password - the plain password
+     * @return String - the encoded salted hash to store instead of the password
+     */
+    public String hash(String password) {
+        return encode(password);
+    }
+
+    // Private so the constructor can build the decoy hash without calling an overridable method
+    private String encode(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+
+        Base64.Encoder base64 = Base64.getEncoder();
+        return ALGORITHM + ":" + iterations + ":" + base64.encodeToString(salt) + ":" + base64.encodeToString(hash);
+    }
+
+    /**
+     * VERIFIES A PASSWORD
+     * Runs on the calling thread
+     *
+     * @param password - the password entered at login
+     * @param encodedHash - a hash from hash(), or null for an unknown user
+     * @return boolean - true if the password produces the stored hash
+     */
+    public boolean verify(String password, String encodedHash) {
+        boolean known = encodedHash != null;
+        String[] parts = (known ? encodedHash : decoyHash).split(":");
+        if (parts.length != 4 || !ALGORITHM.equals(parts[0])) {
+            return false;
+        }
+
+        try {
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] expected = base64.decode(parts[3]);
+            byte[] actual = pbkdf2(password, base64.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual) && known;
+        } catch (IllegalArgumentException e) {
+            // Damaged Base64 or iteration count
+            return false;
+        }
+    }
+
+    /**
+     * VERIFIES A PASSWORD ON THE VERIFICATION POOL
+     * The future fails with RejectedExecutionException if the queue is full
+     *
+     * @param password - the password entered at login
+     * @param encodedHash - a hash from hash(), or null for an unknown user
+     * @return CompletableFuture<Boolean> - completes with the verify() result
+     */
+    public CompletableFuture<Boolean> verifyAsync(String password, String encodedHash) {
+        try {
+            return CompletableFuture.supplyAsync(() -> verify(password, encodedHash), pool);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @param encodedHash - a hash from hash()
+     * @return int - the iteration count it was made with, or -1 if unreadable
+     */
+    public static int iterationsOf(String encodedHash) {
+        String[] parts = encodedHash.split(":");
+        try {
+            return parts.length == 4 ? Integer.parseInt(parts[1]) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public int getIterations() { return iterations; }
+    public int getPoolSize() { return pool.getMaximumPoolSize(); }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // Every Java SE runtime must provide PBKDF2WithHmacSHA256
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongPredicate;
+
+/**
+ * RANDOM MESSAGE ID GENERATOR
+ * Draws IDs from each thread's own ThreadLocalRandom, so threads never contend on a
+ * shared seed the way Math.random() does, and redraws any ID the index already holds.
+ * @author Chumisa Haya
+ */
+public class RandomMessageIDGenerator implements MessageIDGenerator {
+    private final LongPredicate inUse;
+
+    /**
+     * @param inUse - returns true for IDs that already exist; called once per draw
+     */
+    public RandomMessageIDGenerator(LongPredicate inUse) {
+        this.inUse = inUse;
+    }
+
+    @Override
+    public long nextID() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        do {
+            id = random.nextLong(MIN_ID, MAX_ID + 1);
+        } while (inUse.test(id));
+        return id;
+    }
+}
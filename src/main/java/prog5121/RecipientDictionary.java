@@ -0,0 +1,111 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RECIPIENT DICTIONARY
+ * Gives every distinct recipient number a small int code, so a message keeps a
+ * 4-byte code instead of its own copy of the number. A chat has a few thousand
+ * recipients spread over up to millions of messages; each number is stored once
+ * here and every message (eager, arena-packed or read from a segment) shares it.
+ *
+ * Codes are handed out in first-seen order and never reused, so a code stays valid
+ * for the life of the process. Codes are not stable between runs: files keep the
+ * numbers themselves (MessageSegment stores its own table of them).
+ *
+ * Because codes are never freed, the dictionary is bounded: once it holds capacity
+ * numbers, code() answers UNSHARED for any new one and the caller keeps that number
+ * itself. SHARED holds up to "chatapp.recipients.max" numbers (65,536 by default).
+ *
+ * Lookups in both directions are lock-free; only adding a new recipient locks.
+ * @author Chumisa Haya
+ */
+final class RecipientDictionary {
+    static final int NONE = -1; // code for a null recipient
+    static final int UNSHARED = -2; // code for a new recipient once the dictionary is full
+
+    // The one dictionary every message shares
+    static final RecipientDictionary SHARED =
+        new RecipientDictionary(Integer.getInteger("chatapp.recipients.max", 1 << 16));
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private final int capacity;
+    private volatile String[] names;
+    private int size = 0; // guarded by this
+
+    /**
+     * @param capacity - most distinct recipients to hold
+     */
+    RecipientDictionary(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.names = new String[Math.min(capacity, 1024)];
+    }
+
+    /**
+     * @param recipient - a recipient number, or null
+     * @return int - its code, added if the recipient is new; NONE for null; UNSHARED if
+     *         the recipient is new and the dictionary is full
+     */
+    int code(String recipient) {
+        if (recipient == null) {
+            return NONE;
+        }
+        Integer code = codes.get(recipient);
+        return code != null ? code : add(recipient);
+    }
+
+    /**
+     * @param code - a code from code() other than UNSHARED
+     * @return String - the shared copy of the recipient it stands for; null for NONE
+     */
+    String name(int code) {
+        return code == NONE ? null : names[code];
+    }
+
+    /**
+     * @param recipient - a recipient number, or null
+     * @return String - the shared copy of an equal number, or recipient itself if the
+     *         dictionary is full
+     */
+    String canonical(String recipient) {
+        int code = code(recipient);
+        return code == UNSHARED ? recipient : name(code);
+    }
+
+    /**
+     * @return int - number of distinct recipients seen
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return int - most distinct recipients the dictionary will hold
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    private synchronized int add(String recipient) {
+        Integer existing = codes.get(recipient);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == capacity) {
+            return UNSHARED;
+        }
+        String[] grown = size == names.length ? Arrays.copyOf(names, Math.min(size * 2, capacity)) : names;
+        grown[size] = recipient;
+        names = grown; // publishes the new entry before its code can be seen
+        codes.put(recipient, size);
+        return size++;
+    }
+}
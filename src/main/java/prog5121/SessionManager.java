@@ -0,0 +1,196 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * SESSION MANAGER
+ * Issues an opaque token when a user logs in and remembers it, so later actions are
+ * authorised by one map lookup instead of another password hash. Sessions expire
+ * after a period without use (sliding TTL), and when the cache is full the least
+ * recently used session is evicted. Hits, misses, expiries and evictions are counted.
+ * @author Chumisa Haya
+ */
+public class SessionManager {
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * One logged-in user's session
+     */
+    private static final class Session {
+        final String username;
+        long lastUsedNanos;
+
+        Session(String username, long lastUsedNanos) {
+            this.username = username;
+            this.lastUsedNanos = lastUsedNanos;
+        }
+    }
+
+    private final int maxSessions;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+
+    // Access order: the eldest entry is always the least recently used session
+    private final LinkedHashMap<String, Session> sessions;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long expirations = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxSessions - sessions kept before the least recently used is evicted
+     * @param ttl - how long a session stays valid without being used
+     * @param unit - unit of ttl
+     */
+    public SessionManager(int maxSessions, long ttl, TimeUnit unit) {
+        this(maxSessions, ttl, unit, System::nanoTime);
+    }
+
+    /**
+     * @param maxSessions - sessions kept before the least recently used is evicted
+     * @param ttl - how long a session stays valid without being used
+     * @param unit - unit of ttl
+     * @param clock - nanosecond time source (replaceable for tests)
+     */
+    SessionManager(int maxSessions, long ttl, TimeUnit unit, LongSupplier clock) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be positive: " + maxSessions);
+        }
+        this.maxSessions = maxSessions;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.clock = clock;
+        this.sessions = new LinkedHashMap<>(Math.min(maxSessions, 1 << 16) * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                if (size() > SessionManager.this.maxSessions) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * STARTS A SESSION
+     * Call only after the user's credentials have been verified
+     *
+     * @param username - the authenticated user
+     * @return String - the new session token
+     */
+    public synchronized String createSession(String username) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(username, clock.getAsLong()));
+        return token;
+    }
+
+    /**
+     * LOOKS UP A SESSION
+     * A valid lookup also renews the session's TTL and marks it recently used
+     *
+     * @param token - a token from createSession, or null
+     * @return String - the session's username, or null if the token is unknown or expired
+     */
+    public synchronized String lookup(String token) {
+        if (token == null) {
+            misses++;
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            misses++;
+            return null;
+        }
+
+        long now = clock.getAsLong();
+        if (now - session.lastUsedNanos >= ttlNanos) {
+            sessions.remove(token);
+            expirations++;
+            misses++;
+            return null;
+        }
+        session.lastUsedNanos = now;
+        hits++;
+        return session.username;
+    }
+
+    /**
+     * CHECKS A SESSION WITHOUT USING IT
+     * For displays: does not renew the TTL, count as a hit or miss, or remove an
+     * expired session (only its place in the eviction order is refreshed)
+     *
+     * @param token - a token from createSession, or null
+     * @return String - the session's username, or null if the token is unknown or expired
+     */
+    public synchronized String peek(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        if (session == null || clock.getAsLong() - session.lastUsedNanos >= ttlNanos) {
+            return null;
+        }
+        return session.username;
+    }
+
+    /**
+     * ENDS A SESSION
+     *
+     * @param token - the token to invalidate
+     * @return boolean - true if the session existed
+     */
+    public synchronized boolean invalidate(String token) {
+        return token != null && sessions.remove(token) != null;
+    }
+
+    /**
+     * Drops every expired session
+     *
+     * @return int - number of sessions removed
+     */
+    public synchronized int removeExpired() {
+        long now = clock.getAsLong();
+        int removed = 0;
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().lastUsedNanos >= ttlNanos) {
+                it.remove();
+                removed++;
+            }
+        }
+        expirations += removed;
+        return removed;
+    }
+
+    public synchronized int size() { return sessions.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getExpirations() { return expirations; }
+    public synchronized long getEvictions() { return evictions; }
+
+    /**
+     * @return double - fraction of lookups that found a valid session (0 if none yet)
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return String - a one-line summary of the cache statistics
+     */
+    public synchronized String describeStats() {
+        return String.format("%d/%d sessions | hit rate %.1f%% (%d hits, %d misses) | %d expired | %d evicted",
+            sessions.size(), maxSessions, getHitRate() * 100, hits, misses, expirations, evictions);
+    }
+}
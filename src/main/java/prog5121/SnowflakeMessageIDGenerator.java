@@ -0,0 +1,84 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongPredicate;
+
+/**
+ * SNOWFLAKE-STYLE MESSAGE ID GENERATOR
+ * Builds each ID from time, node and sequence bits packed into the 9e9 values a
+ * 10-digit ID can hold (33 bits above MIN_ID):
+ *
+ *   | 21 bits seconds | 2 bits node | 2 bits stripe | 8 bits sequence |
+ *
+ * Threads are spread over four stripes, each with its own sequence counter, so they
+ * rarely contend on the same word. A stripe that uses up its 256 IDs in one second
+ * borrows the next second instead of waiting.
+ *
+ * The time bits alone do not make IDs unique: the seconds field wraps after about
+ * 24 days, and a restart within the same second starts the sequences again. Every
+ * candidate is therefore checked against inUse and a taken one is skipped, the same
+ * way the random generator redraws.
+ * @author Chumisa Haya
+ */
+public class SnowflakeMessageIDGenerator implements MessageIDGenerator {
+    private static final int SEQUENCE_BITS = 8;
+    private static final int STRIPE_BITS = 2;
+    private static final int NODE_BITS = 2;
+    private static final int TIME_BITS = 21;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+
+    // Each stripe's last issued (seconds << SEQUENCE_BITS | sequence), padded onto its own cache line
+    private static final int PADDING = 8;
+    private final AtomicLongArray lastIssued = new AtomicLongArray(STRIPES * PADDING);
+    private final int node;
+    private final LongPredicate inUse;
+
+    /**
+     * @param node - this generator's node number (0-3)
+     * @param inUse - returns true for IDs that already exist; called once per candidate
+     */
+    public SnowflakeMessageIDGenerator(int node, LongPredicate inUse) {
+        if (node < 0 || node >= (1 << NODE_BITS)) {
+            throw new IllegalArgumentException("Node must be between 0 and " + ((1 << NODE_BITS) - 1));
+        }
+        this.node = node;
+        this.inUse = inUse;
+    }
+
+    @Override
+    public long nextID() {
+        int stripe = (int) (Thread.currentThread().threadId() & (STRIPES - 1));
+        long id;
+        do {
+            id = candidate(stripe);
+        } while (inUse.test(id));
+        return id;
+    }
+
+    private long candidate(int stripe) {
+        int index = stripe * PADDING;
+        long now = ((System.currentTimeMillis() - EPOCH_MILLIS) / 1000) << SEQUENCE_BITS;
+
+        long issued;
+        long last;
+        do {
+            last = lastIssued.get(index);
+            // Start a fresh second when the clock has moved on, otherwise take the next sequence
+            issued = Math.max(now, last + 1);
+        } while (!lastIssued.compareAndSet(index, last, issued));
+
+        long seconds = (issued >>> SEQUENCE_BITS) & TIME_MASK;
+        long sequence = issued & ((1L << SEQUENCE_BITS) - 1);
+        long bits = (seconds << (NODE_BITS + STRIPE_BITS + SEQUENCE_BITS))
+                  | ((long) node << (STRIPE_BITS + SEQUENCE_BITS))
+                  | ((long) stripe << SEQUENCE_BITS)
+                  | sequence;
+        return MIN_ID + bits;
+    }
+}
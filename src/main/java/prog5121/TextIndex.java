@@ -0,0 +1,569 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * FULL-TEXT MESSAGE INDEX
+ * An inverted index over message text, kept current as a MessageStore listener.
+ * Words are split exactly as createMessageHash splits them (on whitespace) and
+ * upper-cased, so "Tonight?" is indexed as "TONIGHT?".
+ *
+ * Each word has a compressed posting list: for every message containing it, the
+ * gap from the previous message number, the number of occurrences and the gaps
+ * between word positions, all as variable-length integers (one byte below 128).
+ * Every SKIP_INTERVAL messages a skip pointer records where the list stands, so an
+ * AND query led by a rare word jumps through a common word's list instead of
+ * decoding all of it.
+ * Deleted messages are marked in a tombstone set and skipped; once they outnumber
+ * the live ones the index is rebuilt from the live messages. Each indexed message
+ * object maps to its document number, so a delete finds it without reading text.
+ *
+ * Query syntax:
+ *   dinner tonight          messages containing both words (AND)
+ *   dinner OR lunch         messages matching either side
+ *   "join us for dinner"    the words next to each other, in order
+ * Terms and phrases can be mixed, e.g.  "see you" tomorrow OR "call me"
+ *
+ * All methods are synchronized, so messages may be added from many threads while
+ * another searches.
+ * @author Chumisa Haya
+ */
+public class TextIndex implements MessageStore.Listener {
+    private static final int MIN_TOMBSTONES_FOR_REBUILD = 1024;
+    private static final int SKIP_INTERVAL = 128;
+
+    /**
+     * Compressed posting list of one word
+     */
+    private static final class Postings {
+        byte[] data = new byte[8];
+        int length = 0;
+        int lastDoc = -1;
+        int docCount = 0;
+        int[] skips = new int[0]; // pairs of {last document before the block, offset of the block}
+        int skipCount = 0;
+
+        void startDocument() {
+            if (docCount > 0 && docCount % SKIP_INTERVAL == 0) {
+                if (2 * skipCount + 2 > skips.length) {
+                    skips = Arrays.copyOf(skips, Math.max(8, skips.length * 2));
+                }
+                skips[2 * skipCount] = lastDoc;
+                skips[2 * skipCount + 1] = length;
+                skipCount++;
+            }
+        }
+
+        void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * SEARCH RESULT
+     * The first matching messages (in the order they were added) and the total count
+     */
+    public static final class Result {
+        private final List<Message> messages;
+        private final int totalMatches;
+
+        Result(List<Message> messages, int totalMatches) {
+            this.messages = messages;
+            this.totalMatches = totalMatches;
+        }
+
+        public List<Message> getMessages() { return messages; }
+        public int getTotalMatches() { return totalMatches; }
+    }
+
+    /**
+     * PARSED QUERY
+     * Checks text that is not in the index (such as archived messages) with the same
+     * rules as search()
+     */
+    static final class Query {
+        private final List<List<String[]>> clauses;
+
+        Query(String query) {
+            this.clauses = parse(query);
+        }
+
+        /**
+         * @param hasWord - whether some texts might contain an (upper-cased) word
+         * @return boolean - false if none of those texts can match
+         */
+        boolean mightMatch(Predicate<String> hasWord) {
+            clauses:
+            for (List<String[]> clause : clauses) {
+                for (String[] phrase : clause) {
+                    for (String word : phrase) {
+                        if (!hasWord.test(word)) {
+                            continue clauses;
+                        }
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @param text - a message text
+         * @return boolean - true if the text matches the query
+         */
+        boolean matches(String text) {
+            List<String> words = tokenize(text);
+            clauses:
+            for (List<String[]> clause : clauses) {
+                for (String[] phrase : clause) {
+                    if (Collections.indexOfSubList(words, Arrays.asList(phrase)) < 0) {
+                        continue clauses;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private Message[] docs = new Message[1024];
+    private final Map<Message, Integer> docNumbers = new IdentityHashMap<>();
+    private int docCount = 0;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount = 0;
+    private long postingBytes = 0;
+
+    @Override
+    public synchronized void messageAdded(Message message) {
+        index(message);
+    }
+
+    @Override
+    public synchronized void messageRemoved(Message message) {
+        forget(message);
+        rebuildIfMostlyDeleted();
+    }
+
+    @Override
+    public synchronized void messagesRemoved(Collection<? extends Message> messages) {
+        for (Message message : messages) {
+            forget(message);
+        }
+        rebuildIfMostlyDeleted();
+    }
+
+    @Override
+    public synchronized void storeCleared() {
+        postings.clear();
+        docs = new Message[1024];
+        docNumbers.clear();
+        docCount = 0;
+        deleted.clear();
+        deletedCount = 0;
+        postingBytes = 0;
+    }
+
+    /**
+     * RUNS A QUERY
+     *
+     * @param query - words, "quoted phrases" and OR, as described above
+     * @param limit - most messages to return
+     * @return Result - matching messages in the order they were added, and the total
+     */
+    public synchronized Result search(String query, int limit) {
+        List<List<String[]>> clauses = parse(query);
+        int[] matches = new int[0];
+        for (List<String[]> clause : clauses) {
+            matches = union(matches, matchClause(clause));
+        }
+
+        List<Message> messages = new ArrayList<>(Math.min(limit, matches.length));
+        for (int i = 0; i < matches.length && messages.size() < limit; i++) {
+            messages.add(docs[matches[i]]);
+        }
+        return new Result(messages, matches.length);
+    }
+
+    public synchronized int size() { return docCount - deletedCount; }
+    public synchronized int getTermCount() { return postings.size(); }
+    public synchronized long getPostingBytes() { return postingBytes; }
+
+    /**
+     * @return String - a one-line summary of the index size
+     */
+    public synchronized String describe() {
+        return String.format("%,d messages | %,d distinct words | %,d KB of postings | %,d deleted awaiting rebuild",
+            docCount - deletedCount, postings.size(), postingBytes / 1024, deletedCount);
+    }
+
+    // Indexing
+
+    private void index(Message message) {
+        String text = message.getMessageText();
+        List<String> words = tokenize(text);
+        if (words.isEmpty()) {
+            return; // Nothing any query could match
+        }
+        if (docCount == docs.length) {
+            docs = Arrays.copyOf(docs, docs.length * 2);
+        }
+        int doc = docCount++;
+        docs[doc] = message;
+        docNumbers.put(message, doc);
+
+        // Group the positions of each distinct word
+        Map<String, int[]> positions = new HashMap<>();
+        for (int position = 0; position < words.size(); position++) {
+            int[] list = positions.get(words.get(position));
+            if (list == null) {
+                list = new int[] {0, 0, 0, 0, 0};
+                positions.put(words.get(position), list);
+            } else if (list[0] + 1 == list.length) {
+                list = Arrays.copyOf(list, list.length * 2);
+                positions.put(words.get(position), list);
+            }
+            list[++list[0]] = position; // list[0] holds the count
+        }
+
+        for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+            Postings list = postings.computeIfAbsent(entry.getKey(), word -> new Postings());
+            int before = list.length;
+            list.startDocument();
+            int[] wordPositions = entry.getValue();
+            list.writeVarint(doc - list.lastDoc);
+            list.writeVarint(wordPositions[0]);
+            int previous = 0;
+            for (int i = 1; i <= wordPositions[0]; i++) {
+                list.writeVarint(wordPositions[i] - previous);
+                previous = wordPositions[i];
+            }
+            list.lastDoc = doc;
+            list.docCount++;
+            postingBytes += list.length - before;
+        }
+    }
+
+    /**
+     * Marks a message's document deleted; messages that were never indexed are ignored
+     */
+    private void forget(Message message) {
+        Integer doc = docNumbers.remove(message);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        docs[doc] = null;
+        deletedCount++;
+    }
+
+    private void rebuildIfMostlyDeleted() {
+        if (deletedCount >= MIN_TOMBSTONES_FOR_REBUILD && deletedCount > docCount - deletedCount) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Re-indexes the live messages under new document numbers
+     */
+    private void rebuild() {
+        Message[] live = new Message[docCount - deletedCount];
+        int count = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (docs[doc] != null) {
+                live[count++] = docs[doc];
+            }
+        }
+        storeCleared();
+        docs = new Message[Math.max(1024, Integer.highestOneBit(Math.max(1, count)) * 2)];
+        for (Message message : live) {
+            index(message);
+        }
+    }
+
+    /**
+     * SPLITS TEXT INTO INDEX WORDS
+     * Whitespace separates words as in createMessageHash; words are upper-cased
+     *
+     * @param text - the text to split
+     * @return List<String> - the words in order
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && isSeparator(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isSeparator(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words.add(text.substring(start, i).toUpperCase(Locale.ROOT));
+            }
+        }
+        return words;
+    }
+
+    static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // Queries
+
+    /**
+     * Splits a query into OR clauses; each clause is a list of phrases (one-word
+     * phrases are plain terms) that must all match
+     */
+    private static List<List<String[]>> parse(String query) {
+        List<List<String[]>> clauses = new ArrayList<>();
+        List<String[]> clause = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                int close = query.indexOf('"', i + 1);
+                if (close < 0) {
+                    close = query.length();
+                }
+                List<String> phrase = tokenize(query.substring(i + 1, close));
+                if (!phrase.isEmpty()) {
+                    clause.add(phrase.toArray(new String[0]));
+                }
+                i = close + 1;
+            } else if (isSeparator(c)) {
+                i++;
+            } else {
+                int start = i;
+                while (i < query.length() && !isSeparator(query.charAt(i)) && query.charAt(i) != '"') {
+                    i++;
+                }
+                String word = query.substring(start, i);
+                if (word.equals("OR")) {
+                    if (!clause.isEmpty()) {
+                        clauses.add(clause);
+                    }
+                    clause = new ArrayList<>();
+                } else {
+                    clause.add(new String[] {word.toUpperCase(Locale.ROOT)});
+                }
+            }
+        }
+        if (!clause.isEmpty()) {
+            clauses.add(clause);
+        }
+        return clauses;
+    }
+
+    /**
+     * Documents containing every word of the clause, then checked for each phrase
+     */
+    private int[] matchClause(List<String[]> clause) {
+        Map<String, Cursor> cursorsByWord = new HashMap<>();
+        for (String[] phrase : clause) {
+            for (String word : phrase) {
+                Postings list = postings.get(word);
+                if (list == null) {
+                    return new int[0];
+                }
+                cursorsByWord.computeIfAbsent(word, w -> new Cursor(list));
+            }
+        }
+        boolean hasPhrase = false;
+        for (String[] phrase : clause) {
+            hasPhrase |= phrase.length > 1;
+        }
+        Cursor[] cursors = cursorsByWord.values().toArray(new Cursor[0]);
+        Arrays.sort(cursors, Comparator.comparingInt(cursor -> cursor.postings.docCount));
+
+        int[] matches = new int[Math.min(16, cursors[0].postings.docCount)];
+        int count = 0;
+        Cursor lead = cursors[0];
+        candidates:
+        while (lead.next()) {
+            int doc = lead.doc;
+            for (int c = 1; c < cursors.length; c++) {
+                if (!cursors[c].advance(doc)) {
+                    break candidates;
+                }
+                if (cursors[c].doc != doc) {
+                    continue candidates;
+                }
+            }
+            if (deleted.get(doc) || (hasPhrase && !phrasesMatch(clause, cursorsByWord))) {
+                continue;
+            }
+            if (count == matches.length) {
+                matches = Arrays.copyOf(matches, Math.max(16, count * 2));
+            }
+            matches[count++] = doc;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * All cursors sit on the same document: checks every phrase appears in order
+     */
+    private static boolean phrasesMatch(List<String[]> clause, Map<String, Cursor> cursorsByWord) {
+        for (String[] phrase : clause) {
+            if (phrase.length == 1) {
+                continue;
+            }
+            int[][] positions = new int[phrase.length][];
+            for (int w = 0; w < phrase.length; w++) {
+                positions[w] = cursorsByWord.get(phrase[w]).positions();
+            }
+            boolean found = false;
+            for (int start : positions[0]) {
+                boolean inOrder = true;
+                for (int w = 1; w < phrase.length && inOrder; w++) {
+                    inOrder = Arrays.binarySearch(positions[w], start + w) >= 0;
+                }
+                if (inOrder) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            merged[count++] = next;
+        }
+        return Arrays.copyOf(merged, count);
+    }
+
+    /**
+     * Walks one posting list document by document
+     */
+    private static final class Cursor {
+        final Postings postings;
+        private int offset = 0;
+        private int positionsOffset;
+        private int frequency;
+        private int nextSkip = 0; // first skip pointer not yet passed
+        int doc = -1;
+
+        Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        /**
+         * @return boolean - false once the list is exhausted
+         */
+        boolean next() {
+            if (offset >= postings.length) {
+                doc = Integer.MAX_VALUE;
+                return false;
+            }
+            doc += readVarint();
+            frequency = readVarint();
+            positionsOffset = offset;
+            for (int i = 0; i < frequency; i++) {
+                while ((postings.data[offset++] & 0x80) != 0) {
+                    // skip the rest of this position
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Moves to the first document at or after target
+         *
+         * @return boolean - false once the list is exhausted
+         */
+        boolean advance(int target) {
+            // Jump to the last block that starts before target, if it is ahead of us
+            int block = -1;
+            while (nextSkip < postings.skipCount && postings.skips[2 * nextSkip] < target) {
+                block = nextSkip++;
+            }
+            if (block >= 0 && postings.skips[2 * block] > doc) {
+                doc = postings.skips[2 * block];
+                offset = postings.skips[2 * block + 1];
+            }
+            while (doc < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return int[] - word positions in the current document, ascending
+         */
+        int[] positions() {
+            int saved = offset;
+            offset = positionsOffset;
+            int[] positions = new int[frequency];
+            int position = 0;
+            for (int i = 0; i < frequency; i++) {
+                position += readVarint();
+                positions[i] = position;
+            }
+            offset = saved;
+            return positions;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings.data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
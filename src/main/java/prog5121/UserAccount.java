@@ -0,0 +1,36 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+/**
+ * USER ACCOUNT
+ * One registered user's details. Only a salted hash of the password is kept (see
+ * PasswordHasher). Accounts are immutable so the registry can hand them to any
+ * thread without copying or locking.
+ * @author Chumisa Haya
+ */
+public final class UserAccount {
+    private final String username;
+    private final String passwordHash;
+    private final String cellPhoneNumber;
+    private final String firstName;
+    private final String lastName;
+
+    public UserAccount(String username, String passwordHash, String cellPhoneNumber,
+                       String firstName, String lastName) {
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.cellPhoneNumber = cellPhoneNumber;
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
+    // Getter methods
+    public String getUsername() { return username; }
+    public String getPasswordHash() { return passwordHash; }
+    public String getCellPhoneNumber() { return cellPhoneNumber; }
+    public String getFirstName() { return firstName; }
+    public String getLastName() { return lastName; }
+}
@@ -0,0 +1,135 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package prog5121;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * USER REGISTRY
+ * Holds every registered account, keyed by username, with a secondary index from cell
+ * number to username. Both maps are ConcurrentHashMaps: reads take no locks and
+ * writes lock only the one hash bin they touch, so registrations and logins for
+ * different users proceed in parallel on every core.
+ *
+ * A registration claims the cell number first and then the username, and releases
+ * the cell claim if the username is taken, so two accounts can never share either.
+ * Passwords are checked against the account's hash with the registry's PasswordHasher.
+ * @author Chumisa Haya
+ */
+public class UserRegistry {
+
+    /**
+     * Outcome of a registration attempt
+     */
+    public enum Result { REGISTERED, USERNAME_TAKEN, CELL_NUMBER_TAKEN }
+
+    private final ConcurrentHashMap<String, UserAccount> accountsByUsername;
+    private final ConcurrentHashMap<String, String> usernamesByCell;
+    private final PasswordHasher passwordHasher;
+
+    public UserRegistry() {
+        this(16, PasswordHasher.getDefault());
+    }
+
+    /**
+     * @param expectedUsers - number of accounts to hold without resizing
+     * @param passwordHasher - hashes and verifies this registry's passwords
+     */
+    public UserRegistry(int expectedUsers, PasswordHasher passwordHasher) {
+        this.passwordHasher = passwordHasher;
+        int writers = Runtime.getRuntime().availableProcessors();
+        this.accountsByUsername = new ConcurrentHashMap<>(expectedUsers, 0.75f, writers);
+        this.usernamesByCell = new ConcurrentHashMap<>(expectedUsers, 0.75f, writers);
+    }
+
+    /**
+     * REGISTERS AN ACCOUNT
+     * The account must already have passed Login's format checks
+     *
+     * @param account - the account to add
+     * @return Result - REGISTERED, or which unique field is already in use
+     */
+    public Result register(UserAccount account) {
+        String cell = account.getCellPhoneNumber();
+        String username = account.getUsername();
+
+        if (usernamesByCell.putIfAbsent(cell, username) != null) {
+            return Result.CELL_NUMBER_TAKEN;
+        }
+        if (accountsByUsername.putIfAbsent(username, account) != null) {
+            // Roll back the cell claim made above
+            usernamesByCell.remove(cell, username);
+            return Result.USERNAME_TAKEN;
+        }
+        return Result.REGISTERED;
+    }
+
+    /**
+     * AUTHENTICATES A USER
+     * Runs the password check on the calling thread
+     *
+     * @param username - username entered at login
+     * @param password - password entered at login
+     * @return UserAccount - the matching account, or null if the credentials are wrong
+     */
+    public UserAccount authenticate(String username, String password) {
+        UserAccount account = accountsByUsername.get(username);
+        // Unknown usernames are still hashed so they cannot be told apart by timing
+        boolean matches = passwordHasher.verify(password, account == null ? null : account.getPasswordHash());
+        return matches ? account : null;
+    }
+
+    /**
+     * AUTHENTICATES A USER ON THE VERIFICATION POOL
+     *
+     * @param username - username entered at login
+     * @param password - password entered at login
+     * @return CompletableFuture<UserAccount> - the matching account, or null if the credentials are wrong
+     */
+    public CompletableFuture<UserAccount> authenticateAsync(String username, String password) {
+        UserAccount account = accountsByUsername.get(username);
+        return passwordHasher.verifyAsync(password, account == null ? null : account.getPasswordHash())
+            .thenApply(matches -> matches ? account : null);
+    }
+
+    /**
+     * @param username - the username to find
+     * @return UserAccount - the account, or null if none
+     */
+    public UserAccount findByUsername(String username) {
+        return accountsByUsername.get(username);
+    }
+
+    /**
+     * @param cellPhoneNumber - the cell number to find
+     * @return UserAccount - the account registered with it, or null if none
+     */
+    public UserAccount findByCellPhoneNumber(String cellPhoneNumber) {
+        String username = usernamesByCell.get(cellPhoneNumber);
+        // A claim whose registration is still in progress (or was rolled back) has no account
+        return username == null ? null : accountsByUsername.get(username);
+    }
+
+    /**
+     * REMOVES AN ACCOUNT
+     *
+     * @param username - the account to remove
+     * @return boolean - true if it existed
+     */
+    public boolean remove(String username) {
+        UserAccount account = accountsByUsername.remove(username);
+        if (account == null) {
+            return false;
+        }
+        usernamesByCell.remove(account.getCellPhoneNumber(), username);
+        return true;
+    }
+
+    public boolean containsUsername(String username) { return accountsByUsername.containsKey(username); }
+    public boolean containsCellPhoneNumber(String cellPhoneNumber) { return usernamesByCell.containsKey(cellPhoneNumber); }
+    public int size() { return accountsByUsername.size(); }
+    public PasswordHasher getPasswordHasher() { return passwordHasher; }
+}